@@ -21,6 +21,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
 import org.djodjo.json.JsonElement;
 import org.djodjo.json.JsonString;
+import org.djodjo.json.JsonType;
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.wrapper.TypedJsonObject;
 
@@ -48,22 +49,25 @@ public class DynamoDb2Item extends TypedJsonObject<AttributeValue> {
     @Override
     protected AttributeValue get(JsonElement el, String key) {
         AttributeValue atVal = new AttributeValue();
-        if(el.isNumber()) {
-            atVal.withN(el.toString());
-        } else if(el.isJsonArray()) {
-            boolean isNumberArr = true;
-            ArrayList<String> attrList =  new ArrayList<String>();
-            for (JsonElement arrEl : el.asJsonArray()) {
-                if (isNumberArr && !arrEl.isNumber()) isNumberArr = false;
-                attrList.add(arrEl.toString());
-            }
-            if(isNumberArr) {
-                atVal.withNS(attrList);
-            } else {
-                atVal.withSS(attrList);
-            }
-        } else {
-            atVal.withS(el.toString());
+        switch (el.type()) {
+            case NUMBER:
+                atVal.withN(el.toString());
+                break;
+            case ARRAY:
+                boolean isNumberArr = true;
+                ArrayList<String> attrList =  new ArrayList<String>(el.asJsonArray().size());
+                for (JsonElement arrEl : el.asJsonArray()) {
+                    if (isNumberArr && arrEl.type() != JsonType.NUMBER) isNumberArr = false;
+                    attrList.add(arrEl.toString());
+                }
+                if(isNumberArr) {
+                    atVal.withNS(attrList);
+                } else {
+                    atVal.withSS(attrList);
+                }
+                break;
+            default:
+                atVal.withS(el.toString());
         }
 
         return atVal;
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.util.ByteBufferPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Writer} that encodes chars as UTF-8 into pooled direct
+ * {@link ByteBuffer ByteBuffers} and hands the filled buffers over to a
+ * {@link Sink}, for example a {@link GatheringByteChannel}, whenever its
+ * {@link FlushPolicy} says so.
+ *
+ * <p>When wrapped in a {@link JsonWriter} the policy is also consulted each
+ * time an element of the top level array or object has been completely
+ * written, so that a streamed response can be flushed per element.
+ * Deadlines are only checked while writing; call {@link #flush()} to push
+ * pending data while the producer is idle.
+ *
+ * <p>Instances of this class are not thread safe.
+ */
+public final class ByteBufferWriter extends Writer {
+
+    private final ByteBufferPool pool;
+    private final Sink sink;
+    private final FlushPolicy policy;
+
+    private ByteBuffer current;
+    private ByteBuffer[] completed = new ByteBuffer[4];
+    private int completedCount;
+
+    private long pendingBytes;
+    private long pendingSince;
+    private char highSurrogate;
+    private boolean closed;
+
+    public ByteBufferWriter(ByteBufferPool pool, Sink sink, FlushPolicy policy) {
+        if (pool == null) {
+            throw new NullPointerException("pool == null");
+        }
+        if (sink == null) {
+            throw new NullPointerException("sink == null");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy == null");
+        }
+        this.pool = pool;
+        this.sink = sink;
+        this.policy = policy;
+    }
+
+    public ByteBufferWriter(ByteBufferPool pool, GatheringByteChannel channel, FlushPolicy policy) {
+        this(pool, channelSink(channel), policy);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        checkNotClosed();
+        encode((char) c);
+        maybeFlush(false);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        checkNotClosed();
+        for (int i = off, end = off + len; i < end; i++) {
+            encode(cbuf[i]);
+        }
+        maybeFlush(false);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        checkNotClosed();
+        for (int i = off, end = off + len; i < end; i++) {
+            encode(str.charAt(i));
+        }
+        maybeFlush(false);
+    }
+
+    /**
+     * Called by {@link JsonWriter} after an element of the top level array or
+     * object, or the whole document, has been written.
+     */
+    void onTopLevelElement() throws IOException {
+        maybeFlush(true);
+    }
+
+    /**
+     * Hands all pending bytes over to the sink regardless of the flush policy.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        send();
+    }
+
+    /**
+     * Flushes all pending bytes and closes the sink.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            send();
+        } finally {
+            closed = true;
+            if (current != null) {
+                pool.release(current);
+                current = null;
+            }
+            sink.close();
+        }
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ByteBuffer buffer = ensure(4);
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                pending(4);
+                return;
+            }
+            // unpaired high surrogate
+            ensure(1).put((byte) '?');
+            pending(1);
+        }
+        if (c < 0x80) {
+            ensure(1).put((byte) c);
+            pending(1);
+        } else if (c < 0x800) {
+            ByteBuffer buffer = ensure(2);
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+            pending(2);
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            // unpaired low surrogate
+            ensure(1).put((byte) '?');
+            pending(1);
+        } else {
+            ByteBuffer buffer = ensure(3);
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+            pending(3);
+        }
+    }
+
+    private void pending(int bytes) {
+        if (pendingBytes == 0 && policy.needsTime()) {
+            pendingSince = System.nanoTime();
+        }
+        pendingBytes += bytes;
+    }
+
+    /**
+     * Returns a buffer with at least {@code bytes} remaining, completing the
+     * current one if it is too full.
+     */
+    private ByteBuffer ensure(int bytes) {
+        if (current == null) {
+            current = pool.acquire();
+        } else if (current.remaining() < bytes) {
+            complete();
+            current = pool.acquire();
+        }
+        return current;
+    }
+
+    private void complete() {
+        current.flip();
+        if (completedCount == completed.length) {
+            completed = Arrays.copyOf(completed, completedCount * 2);
+        }
+        completed[completedCount++] = current;
+        current = null;
+    }
+
+    private void maybeFlush(boolean elementCompleted) throws IOException {
+        if (pendingBytes > 0 && policy.shouldFlush(pendingBytes, pendingSince, elementCompleted)) {
+            send();
+        }
+    }
+
+    private void send() throws IOException {
+        if (current != null && current.position() > 0) {
+            complete();
+        }
+        if (completedCount == 0) {
+            return;
+        }
+        int count = completedCount;
+        completedCount = 0;
+        pendingBytes = 0;
+        try {
+            sink.write(completed, count, pool);
+        } finally {
+            Arrays.fill(completed, 0, count, null);
+        }
+    }
+
+    /**
+     * Returns a sink which writes the buffers to {@code channel} with a gathering
+     * write and gives them back to the pool once they are fully written. The
+     * channel is expected to be in blocking mode.
+     */
+    public static Sink channelSink(final GatheringByteChannel channel) {
+        if (channel == null) {
+            throw new NullPointerException("channel == null");
+        }
+        return new Sink() {
+            @Override
+            public void write(ByteBuffer[] buffers, int count, ByteBufferPool pool) throws IOException {
+                try {
+                    int first = 0;
+                    while (first < count) {
+                        channel.write(buffers, first, count - first);
+                        while (first < count && !buffers[first].hasRemaining()) {
+                            first++;
+                        }
+                    }
+                } finally {
+                    for (int i = 0; i < count; i++) {
+                        pool.release(buffers[i]);
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * Receives filled buffers from a {@link ByteBufferWriter}.
+     */
+    public interface Sink extends Closeable {
+
+        /**
+         * Takes ownership of the first {@code count} buffers, which are flipped
+         * and ready to be read. The array itself is reused by the writer and must
+         * not be retained. Each buffer should be given back to {@code pool} once
+         * it has been consumed; an asynchronous sink may do so later from
+         * another thread.
+         */
+        void write(ByteBuffer[] buffers, int count, ByteBufferPool pool) throws IOException;
+    }
+
+    /**
+     * Decides when pending bytes are handed over to the {@link Sink}.
+     */
+    public static abstract class FlushPolicy {
+
+        /**
+         * @param pendingBytes the number of bytes written since the last flush.
+         * @param pendingSince the {@link System#nanoTime()} at which the first of
+         *     those bytes was written; only maintained if {@link #needsTime()}.
+         * @param elementCompleted true if an element of the top level array or
+         *     object has just been completed.
+         */
+        public abstract boolean shouldFlush(long pendingBytes, long pendingSince, boolean elementCompleted);
+
+        /**
+         * Returns true if this policy looks at {@code pendingSince}.
+         */
+        protected boolean needsTime() {
+            return false;
+        }
+
+        /**
+         * Flushes once at least {@code bytes} are pending.
+         */
+        public static FlushPolicy bySize(final long bytes) {
+            return new FlushPolicy() {
+                @Override
+                public boolean shouldFlush(long pendingBytes, long pendingSince, boolean elementCompleted) {
+                    return pendingBytes >= bytes;
+                }
+            };
+        }
+
+        /**
+         * Flushes after each element of the top level array or object.
+         */
+        public static FlushPolicy byTopLevelElement() {
+            return new FlushPolicy() {
+                @Override
+                public boolean shouldFlush(long pendingBytes, long pendingSince, boolean elementCompleted) {
+                    return elementCompleted;
+                }
+            };
+        }
+
+        /**
+         * Flushes once the oldest pending byte has waited for at least {@code delay}.
+         */
+        public static FlushPolicy byDeadline(long delay, TimeUnit unit) {
+            final long delayNanos = unit.toNanos(delay);
+            return new FlushPolicy() {
+                @Override
+                public boolean shouldFlush(long pendingBytes, long pendingSince, boolean elementCompleted) {
+                    return System.nanoTime() - pendingSince >= delayNanos;
+                }
+
+                @Override
+                protected boolean needsTime() {
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Flushes as soon as any of {@code policies} wants to.
+         */
+        public static FlushPolicy anyOf(final FlushPolicy... policies) {
+            boolean time = false;
+            for (FlushPolicy policy : policies) {
+                time |= policy.needsTime();
+            }
+            final boolean needsTime = time;
+            return new FlushPolicy() {
+                @Override
+                public boolean shouldFlush(long pendingBytes, long pendingSince, boolean elementCompleted) {
+                    for (FlushPolicy policy : policies) {
+                        if (policy.shouldFlush(pendingBytes, pendingSince, elementCompleted)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                protected boolean needsTime() {
+                    return needsTime;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.util.Arrays;
+
+/**
+ * Numbers distinct strings densely in the order they are added, and looks
+ * them up by any {@link CharSequence}, so that the text a {@link JsonHandler}
+ * receives need not be made into a string unless it is new.
+ */
+final class CharTable {
+
+    private String[] keys = new String[8];
+    /** Open addressing table of ids plus one; 0 for an empty slot. */
+    private int[] slots = new int[16];
+    private int size;
+
+    /** Returns the hash {@link String#hashCode()} would for {@code chars}. */
+    static int hash(CharSequence chars) {
+        if (chars instanceof String) {
+            return chars.hashCode();
+        }
+        int h = 0;
+        for (int i = 0, n = chars.length(); i < n; i++) {
+            h = 31 * h + chars.charAt(i);
+        }
+        return h;
+    }
+
+    static boolean contentEquals(String s, CharSequence chars) {
+        int length = s.length();
+        if (chars.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String key(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Returns the id of {@code key}, or -1 if it was not added.
+     */
+    int get(CharSequence key) {
+        int mask = slots.length - 1;
+        for (int i = hash(key) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (contentEquals(keys[slots[i] - 1], key)) {
+                return slots[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the id of {@code key}, adding it first if it is new.
+     */
+    int add(CharSequence key) {
+        int mask = slots.length - 1;
+        int i = hash(key) & mask;
+        for (; slots[i] != 0; i = (i + 1) & mask) {
+            if (contentEquals(keys[slots[i] - 1], key)) {
+                return slots[i] - 1;
+            }
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key.toString();
+        slots[i] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = keys[id].hashCode() & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link JsonHandler} which counts the values at each path of the
+ * documents it is given and sums up the numbers among them, keeping their
+ * minimum and maximum. The elements of an array share one path, in which
+ * {@code *} stands for the index, as in {@code /users/*}{@code /age}.
+ *
+ * <p>Paths are kept in a tree which is looked up with the names as they are
+ * read, so once every path has been seen no more memory is allocated.
+ */
+public final class JsonAggregator implements JsonHandler {
+
+    /**
+     * The values seen at one path.
+     */
+    public static final class Stats {
+        private final String path;
+        private long count;
+        private long numbers;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        Stats(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the number of values of any type.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of values which are numbers.
+         */
+        public long getNumberCount() {
+            return numbers;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the smallest number, or {@link Double#NaN} if there is none.
+         */
+        public double getMin() {
+            return numbers == 0 ? Double.NaN : min;
+        }
+
+        /**
+         * Returns the largest number, or {@link Double#NaN} if there is none.
+         */
+        public double getMax() {
+            return numbers == 0 ? Double.NaN : max;
+        }
+
+        /**
+         * Returns the average of the numbers, or {@link Double#NaN} if there
+         * are none.
+         */
+        public double getAverage() {
+            return numbers == 0 ? Double.NaN : sum / numbers;
+        }
+
+        void number(double value) {
+            numbers++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject().put("count", count);
+            if (numbers > 0) {
+                json.put("numbers", numbers).put("sum", sum).put("min", min).put("max", max);
+            }
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + toJson();
+        }
+    }
+
+    /**
+     * A path, with its children looked up by name as it is read.
+     */
+    private final class Node {
+        final Stats stats;
+        private final CharTable names = new CharTable();
+        private Node[] children = new Node[0];
+        private Node element;
+
+        Node(String path) {
+            stats = new Stats(path);
+            all.add(stats);
+        }
+
+        Node child(CharSequence name) {
+            int id = names.get(name);
+            if (id >= 0) {
+                return children[id];
+            }
+            id = names.add(name);
+            if (id == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, id * 2));
+            }
+            Node child = new Node(stats.path + "/" + JsonPointer.escape(names.key(id)));
+            children[id] = child;
+            return child;
+        }
+
+        Node element() {
+            if (element == null) {
+                element = new Node(stats.path + "/*");
+            }
+            return element;
+        }
+    }
+
+    private final ArrayList<Stats> all = new ArrayList<Stats>();
+    private final Node root = new Node("");
+
+    /** The open containers, and whether each is an array. */
+    private Node[] stack = new Node[16];
+    private boolean[] isArray = new boolean[16];
+    private int depth;
+    /** The node of the member whose name was read last. */
+    private Node named;
+
+    /**
+     * Returns the stats of the values seen at {@code path}, or null if there
+     * were none.
+     */
+    public Stats get(String path) {
+        for (Stats stats : all) {
+            if (stats.path.equals(path)) {
+                return stats.count > 0 ? stats : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the stats of every path with values, in the order the paths
+     * were first seen.
+     */
+    public Map<String, Stats> getStats() {
+        LinkedHashMap<String, Stats> result = new LinkedHashMap<String, Stats>();
+        for (Stats stats : all) {
+            if (stats.count > 0) {
+                result.put(stats.path, stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the stats as an object mapping each path to its count and, if
+     * there were numbers, their count, sum, minimum and maximum.
+     */
+    public JsonObject toJson() {
+        JsonObject result = new JsonObject();
+        for (Stats stats : all) {
+            if (stats.count > 0) {
+                result.put(stats.path, stats.toJson());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node of the value which starts now, having counted it.
+     */
+    private Node node() {
+        Node node;
+        if (depth == 0) {
+            node = root;
+        } else if (isArray[depth - 1]) {
+            node = stack[depth - 1].element();
+        } else {
+            node = named;
+        }
+        node.stats.count++;
+        return node;
+    }
+
+    private Stats value() {
+        return node().stats;
+    }
+
+    private void push(boolean array) {
+        Node node = node();
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            isArray = Arrays.copyOf(isArray, depth * 2);
+        }
+        stack[depth] = node;
+        isArray[depth] = array;
+        depth++;
+    }
+
+    @Override
+    public void startObject() {
+        push(false);
+    }
+
+    @Override
+    public void name(CharSequence name) {
+        named = stack[depth - 1].child(name);
+    }
+
+    @Override
+    public void endObject() {
+        stack[--depth] = null;
+    }
+
+    @Override
+    public void startArray() {
+        push(true);
+    }
+
+    @Override
+    public void endArray() {
+        stack[--depth] = null;
+    }
+
+    @Override
+    public void stringValue(CharSequence value) {
+        value();
+    }
+
+    @Override
+    public void numberValue(long value) {
+        value().number(value);
+    }
+
+    @Override
+    public void numberValue(double value, CharSequence raw) {
+        value().number(value);
+    }
+
+    @Override
+    public void booleanValue(boolean value) {
+        value();
+    }
+
+    @Override
+    public void nullValue() {
+        value();
+    }
+}
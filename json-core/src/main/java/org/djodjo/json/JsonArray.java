@@ -19,12 +19,14 @@ package org.djodjo.json;
 
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.util.Freezable;
+import org.djodjo.json.util.PersistentVector;
 import org.djodjo.json.util.Util;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -52,15 +54,40 @@ import java.util.ListIterator;
 public final class JsonArray extends JsonElement implements List<JsonElement>, Freezable<JsonArray> {
 
     private volatile boolean frozen = false;
-    private final List<JsonElement> values;
+    private volatile boolean deepFrozen = false;
+
+    /**
+     * True while objects and arrays in this array may be deep frozen containers
+     * shared with another tree, see {@link #copyOnWrite()}.
+     */
+    private boolean sharesChildren = false;
+    /**
+     * The values; a {@link PrimitiveList} for arrays parsed as all numbers or all booleans.
+     */
+    private List<JsonElement> values;
+
+    /** Set while the changes to this array are recorded, see {@link JsonJournal}. */
+    JsonJournal.Node journalNode;
+
+    /** Cached {@link #serializedLength()}, only kept once deep frozen; -1 if not computed. */
+    private int serializedLength = -1;
+
+    /** Cached {@link #hashCode()}, only kept once deep frozen; 0 if not computed. */
+    private int hash;
 
     /**
      * Creates a {@code JsonArray} with no values.
      */
     public JsonArray() {
+        super(JsonType.ARRAY);
         values = new ArrayList<JsonElement>();
     }
 
+    JsonArray(List<JsonElement> values) {
+        super(JsonType.ARRAY);
+        this.values = values;
+    }
+
     /**
      * Creates a new {@code JsonArray} by copying all values from the given
      * collection.
@@ -84,6 +111,7 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
      * Creates a new {@code JsonArray} with values from the given primitive array.
      */
     public JsonArray(Object array) throws JsonException {
+        super(JsonType.ARRAY);
         if (!array.getClass().isArray()) {
             throw new JsonException("Not a primitive array: " + array.getClass());
         }
@@ -107,7 +135,7 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
      * @return this array.
      */
     public JsonArray put(boolean value) {
-        return put(new JsonBoolean(value));
+        return put(JsonBoolean.valueOf(value));
     }
 
     /**
@@ -136,7 +164,7 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
      * @return this array.
      */
     public JsonArray put(long value) {
-        return put(new JsonNumber(value));
+        return put(JsonNumber.valueOf(value));
     }
 
     /**
@@ -154,13 +182,80 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
     }
 
     public JsonArray put(JsonElement value) {
+        checkIfFrozen();
         if (value != null) {
             values.add(value);
+            settle();
+            if (journalNode != null) {
+                journalNode.added(values.size() - 1, value);
+            }
         }
 
         return this;
     }
 
+    /**
+     * Appends a number token as read by {@link JsonReader}.
+     */
+    void addNumber(String text) {
+        PrimitiveList.addNumber(values, text);
+        settle();
+    }
+
+    /**
+     * Drops the primitive representation once it has moved its values to a more general list.
+     */
+    private void settle() {
+        if (values instanceof PrimitiveList) {
+            values = ((PrimitiveList) values).current();
+        }
+    }
+
+    /**
+     * Returns the element at {@code index} as it is stored, without copying
+     * it if it is shared.
+     */
+    JsonElement rawAt(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Returns the index of {@code element} itself in this array, searching
+     * outwards from {@code hint}, or -1 if it is not in this array.
+     */
+    int identityIndexOf(JsonElement element, int hint) {
+        int size = values.size();
+        for (int d = 0; d < size; d++) {
+            int after = hint + d;
+            if (after < size && after >= 0 && values.get(after) == element) {
+                return after;
+            }
+            int before = hint - d - 1;
+            if (before >= 0 && before < size && values.get(before) == element) {
+                return before;
+            }
+            if (after >= size && before < 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the primitive array backed values, or null if the values are
+     * kept as elements; also when the primitive list was inflated through a view.
+     */
+    PrimitiveList primitives() {
+        List<JsonElement> list = values;
+        if (list instanceof PrimitiveList) {
+            list = ((PrimitiveList) list).current();
+            if (list instanceof PrimitiveList) {
+                return (PrimitiveList) list;
+            }
+        }
+        return null;
+    }
+
     /**
      * Sets the value at {@code index} to {@code value}, null padding this array
      * to the required length if necessary. If a value already exists at {@code
@@ -219,11 +314,21 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
      * @return this array.
      */
     public JsonArray put(int index, Object value) throws JsonException {
-
+        checkIfFrozen();
+        int size = values.size();
         while (values.size() <= index) {
-            values.add(new JsonNull());
+            values.add(JsonNull.INSTANCE);
+        }
+        JsonElement element = wrap(value);
+        JsonElement old = values.set(index, element);
+        settle();
+        if (journalNode != null) {
+            if (index < size) {
+                journalNode.set(index, old, element);
+            } else {
+                journalNode.rewritten();
+            }
         }
-        values.set(index, wrap(value));
         return this;
     }
 
@@ -232,8 +337,8 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
      * is the {@code null} reference .
      */
     public boolean isNull(int index) {
-        Object value = opt(index);
-        return value == null || value.equals(new JsonNull());
+        JsonElement value = opt(index);
+        return value == null || value.isNull();
     }
 
     /**
@@ -247,24 +352,33 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         try {
             JsonElement value = values.get(index);
             if (value == null) {
-                throw new JsonException("Value at " + index + " is null.");
+                throw JsonException.stackless("Value at ", index, " is null.");
             }
-            return value;
+            return sharesChildren ? unshareChild(index, value) : value;
         } catch (IndexOutOfBoundsException e) {
-            throw new JsonException("Index " + index + " out of range [0.." + values.size() + ")");
+            throw JsonException.stackless("Index ", index, " out of range [0..", values.size(), ")");
         }
     }
 
     @Override
     public JsonElement set(int i, JsonElement jsonElement) {
         checkIfFrozen();
-        return values.set(i, jsonElement);
+        JsonElement old = values.set(i, jsonElement);
+        settle();
+        if (journalNode != null) {
+            journalNode.set(i, old, jsonElement);
+        }
+        return old;
     }
 
     @Override
     public void add(int i, JsonElement jsonElement) {
         checkIfFrozen();
         values.add(i, jsonElement);
+        settle();
+        if (journalNode != null) {
+            journalNode.added(i, jsonElement);
+        }
     }
 
     /**
@@ -275,7 +389,8 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         if (index < 0 || index >= values.size()) {
             return null;
         }
-        return values.get(index);
+        JsonElement value = values.get(index);
+        return sharesChildren && value != null ? unshareChild(index, value) : value;
     }
 
     /**
@@ -287,7 +402,11 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         if (index < 0 || index >= values.size()) {
             return null;
         }
-        return values.remove(index);
+        JsonElement old = values.remove(index);
+        if (journalNode != null) {
+            journalNode.removed(index, old);
+        }
+        return old;
     }
 
     @Override
@@ -302,16 +421,24 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
 
     @Override
     public ListIterator<JsonElement> listIterator() {
-        return values.listIterator();
+        return listIterator(0);
     }
 
     @Override
     public ListIterator<JsonElement> listIterator(int i) {
+        unshareChildren();
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableList(values).listIterator(i);
+        }
         return values.listIterator(i);
     }
 
     @Override
     public List<JsonElement> subList(int i, int i2) {
+        unshareChildren();
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableList(values).subList(i, i2);
+        }
         return values.subList(i, i2);
     }
 
@@ -526,6 +653,70 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         }
     }
 
+    /**
+     * Returns the value at {@code index} as an int if it is a number, or
+     * {@code fallback} otherwise. Unlike {@link #optInt(int, Integer)} this
+     * neither boxes the result nor throws and catches internally, and numbers
+     * kept in a primitive array are read without creating an element.
+     */
+    public int getIntValue(int index, int fallback) {
+        PrimitiveList numbers = numbers();
+        if (numbers != null) {
+            return index >= 0 && index < numbers.size() ? numbers.intAt(index) : fallback;
+        }
+        JsonElement el = opt(index);
+        return el != null && el.isNumber() ? el.asInt() : fallback;
+    }
+
+    /**
+     * Returns the value at {@code index} as a long if it is a number, or
+     * {@code fallback} otherwise.
+     *
+     * @see #getIntValue(int, int)
+     */
+    public long getLongValue(int index, long fallback) {
+        PrimitiveList numbers = numbers();
+        if (numbers != null) {
+            return index >= 0 && index < numbers.size() ? numbers.longAt(index) : fallback;
+        }
+        JsonElement el = opt(index);
+        return el != null && el.isNumber() ? el.asLong() : fallback;
+    }
+
+    /**
+     * Returns the value at {@code index} as a double if it is a number, or
+     * {@code fallback} otherwise.
+     *
+     * @see #getIntValue(int, int)
+     */
+    public double getDoubleValue(int index, double fallback) {
+        PrimitiveList numbers = numbers();
+        if (numbers != null) {
+            return index >= 0 && index < numbers.size() ? numbers.doubleAt(index) : fallback;
+        }
+        JsonElement el = opt(index);
+        return el != null && el.isNumber() ? el.asDouble() : fallback;
+    }
+
+    /**
+     * Returns the value at {@code index} if it is a boolean, or {@code fallback}
+     * otherwise.
+     *
+     * @see #getIntValue(int, int)
+     */
+    public boolean getBooleanValue(int index, boolean fallback) {
+        JsonElement el = opt(index);
+        return el != null && el.isBoolean() ? el.asBoolean() : fallback;
+    }
+
+    /**
+     * Returns the primitive array backed values if they are numbers, or null.
+     */
+    private PrimitiveList numbers() {
+        PrimitiveList primitives = primitives();
+        return primitives instanceof PrimitiveList.OfBoolean ? null : primitives;
+    }
+
     /**
      * Returns the value at {@code index} if it exists, coercing it if
      * necessary.
@@ -666,6 +857,40 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         return res;
     }
 
+    /**
+     * Returns the values of this array of numbers as doubles.
+     *
+     * @throws UnsupportedOperationException if a value is not a number.
+     */
+    public double[] toDoubleArray() {
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            return primitives.toDoubleArray();
+        }
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).asDouble();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of this array of numbers as longs.
+     *
+     * @throws UnsupportedOperationException if a value is not a number.
+     */
+    public long[] toLongArray() {
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            return primitives.toLongArray();
+        }
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).asLong();
+        }
+        return result;
+    }
+
     public boolean isOnlyStrings() {
         for(JsonElement el:values) {
             if(!el.isString()) return false;
@@ -702,17 +927,45 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
     }
 
     @Override
-    public void write( JsonWriter writer ) throws IOException {
-        writer.beginArray();
-        for (JsonElement e : this) {
-            e.write(writer);
+    int knownSerializedLength() {
+        // once deep frozen the length is computed only once
+        return deepFrozen ? serializedLength() : -1;
+    }
+
+    @Override
+    public int serializedLength() {
+        int length = serializedLength;
+        if (length >= 0) {
+            return length;
         }
-        writer.endArray();
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            length = primitives.serializedLength();
+        } else {
+            length = values.isEmpty() ? 2 : values.size() + 1;
+            for (JsonElement e : values) {
+                length += e.serializedLength();
+            }
+        }
+        if (deepFrozen) {
+            serializedLength = length;
+        }
+        return length;
     }
 
     @Override
-    public boolean isJsonArray() {
-        return true;
+    public void write( JsonWriter writer ) throws IOException {
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            primitives.write(writer);
+            return;
+        }
+        writer.beginArray();
+        // the slots as they are, so that shared children stay shared
+        for (int i = 0, n = values.size(); i < n; i++) {
+            values.get(i).write(writer);
+        }
+        writer.endArray();
     }
 
     @Override
@@ -720,13 +973,65 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         return this;
     }
 
+    /**
+     * Arrays are equal if they hold equal elements in the same order. Deep
+     * frozen arrays compare their cached hashes first.
+     */
     @Override public boolean equals(Object o) {
-        return o instanceof JsonArray && ((JsonArray) o).values.equals(values);
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof JsonArray)) {
+            return false;
+        }
+        JsonArray other = (JsonArray) o;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        int size = values.size();
+        if (size != other.values.size()) {
+            return false;
+        }
+        PrimitiveList primitives = primitives();
+        PrimitiveList otherPrimitives = other.primitives();
+        if (primitives != null && otherPrimitives != null
+                && primitives.getClass() == otherPrimitives.getClass()) {
+            return primitives.sameValues(otherPrimitives);
+        }
+        for (int i = 0; i < size; i++) {
+            JsonElement element = values.get(i);
+            JsonElement otherElement = other.values.get(i);
+            if (element == null ? otherElement != null : !element.equals(otherElement)) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Returns a hash over the elements in order, which is cached once the
+     * array is deep frozen.
+     */
     @Override public int hashCode() {
         // diverge from the original, which doesn't implement hashCode
-        return values.hashCode();
+        int h = hash;
+        if (h == 0) {
+            PrimitiveList primitives = primitives();
+            if (primitives != null) {
+                h = primitives.elementsHash();
+            } else {
+                h = 1;
+                for (int i = 0, size = values.size(); i < size; i++) {
+                    JsonElement element = values.get(i);
+                    h = 31 * h + (element == null ? 0 : element.hashCode());
+                }
+            }
+            h = mix(h);
+            if (deepFrozen) {
+                hash = h;
+            }
+        }
+        return h;
     }
 
     @Override
@@ -746,26 +1051,43 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
 
     @Override
     public Iterator<JsonElement> iterator() {
+        unshareChildren();
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableList(values).iterator();
+        }
         return values.iterator();
     }
 
     @Override
     public Object[] toArray() {
+        unshareChildren();
         return values.toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] ts) {
+        unshareChildren();
         return values.toArray(ts);
     }
 
     @Override
     public boolean add(JsonElement jsonElement) {
-        return values.add(jsonElement);
+        checkIfFrozen();
+        boolean result = values.add(jsonElement);
+        settle();
+        if (journalNode != null) {
+            journalNode.added(values.size() - 1, jsonElement);
+        }
+        return result;
     }
 
     @Override
     public boolean remove(Object o) {
+        checkIfFrozen();
+        if (journalNode != null) {
+            int index = values.indexOf(o);
+            return index >= 0 && remove(index) != null;
+        }
         return values.remove(o);
     }
 
@@ -776,7 +1098,16 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
 
     @Override
     public boolean addAll(Collection<? extends JsonElement> jsonElements) {
-        return values.addAll(jsonElements);
+        checkIfFrozen();
+        int size = values.size();
+        boolean result = values.addAll(jsonElements);
+        settle();
+        if (journalNode != null) {
+            for (int i = size, n = values.size(); i < n; i++) {
+                journalNode.added(i, values.get(i));
+            }
+        }
+        return result;
     }
 
     @Override
@@ -786,17 +1117,32 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
 
     @Override
     public boolean removeAll(Collection<?> objects) {
-        return values.removeAll(objects);
+        checkIfFrozen();
+        boolean result = values.removeAll(objects);
+        if (result && journalNode != null) {
+            journalNode.rewritten();
+        }
+        return result;
     }
 
     @Override
     public boolean retainAll(Collection<?> objects) {
-        return values.retainAll(objects);
+        checkIfFrozen();
+        boolean result = values.retainAll(objects);
+        if (result && journalNode != null) {
+            journalNode.rewritten();
+        }
+        return result;
     }
 
     @Override
     public void clear() {
+        checkIfFrozen();
+        boolean changed = !values.isEmpty();
         values.clear();
+        if (changed && journalNode != null) {
+            journalNode.rewritten();
+        }
     }
 
     @Override
@@ -815,14 +1161,249 @@ public final class JsonArray extends JsonElement implements List<JsonElement>, F
         return this;
     }
 
+    /**
+     * Freezes this array and, recursively, every object and array it contains.
+     *
+     * @return this array.
+     * @see JsonObject#deepFreeze()
+     */
+    @Override
+    public JsonArray deepFreeze() {
+        return deepFreeze(false);
+    }
+
+    /**
+     * Deep freezes this array and, if {@code compact} is true, trims it and
+     * every object and array in it to their exact size.
+     *
+     * @return this array.
+     * @see JsonObject#deepFreeze(boolean)
+     */
+    @Override
+    public JsonArray deepFreeze(boolean compact) {
+        if (deepFrozen) {
+            return this;
+        }
+        settle();
+        PrimitiveList primitives = primitives();
+        if (primitives == null) {
+            for (JsonElement e : values) {
+                if (e != null) {
+                    e.deepFreeze(compact);
+                }
+            }
+        }
+        if (compact) {
+            if (primitives != null) {
+                primitives.trimToSize();
+            } else if (values instanceof ArrayList) {
+                ((ArrayList<JsonElement>) values).trimToSize();
+            }
+        }
+        // shared children are deep frozen already, and so may be handed out
+        sharesChildren = false;
+        frozen = true;
+        deepFrozen = true;
+        return this;
+    }
+
+    /**
+     * Returns a mutable deep copy of this array. Strings, numbers, booleans
+     * and nulls are immutable and shared with this array.
+     */
     @Override
     public JsonArray cloneAsThawed() {
-        try {
-            return JsonElement.readFrom(this.toString()).asJsonArray();
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new JsonException("Cannot Recreate Json Array", e);
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            return new JsonArray(primitives.copy());
+        }
+        ArrayList<JsonElement> copy = new ArrayList<JsonElement>(values.size());
+        for (int i = 0, n = values.size(); i < n; i++) {
+            JsonElement e = values.get(i);
+            copy.add(e == null ? null : e.thaw());
+        }
+        return new JsonArray(copy);
+    }
+
+    /**
+     * Returns a mutable copy of this array which shares its deep frozen
+     * objects and arrays with this one until they are accessed.
+     *
+     * @see JsonObject#copyOnWrite()
+     */
+    public JsonArray copyOnWrite() {
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            return new JsonArray(primitives.copy());
+        }
+        ArrayList<JsonElement> copy = new ArrayList<JsonElement>(values.size());
+        for (int i = 0, n = values.size(); i < n; i++) {
+            JsonElement e = values.get(i);
+            copy.add(e == null ? null : e.thawShared());
+        }
+        JsonArray result = new JsonArray(copy);
+        result.sharesChildren = true;
+        return result;
+    }
+
+    @Override
+    JsonArray thaw() {
+        return cloneAsThawed();
+    }
+
+    @Override
+    JsonElement thawShared() {
+        return deepFrozen ? this : copyOnWrite();
+    }
+
+    @Override
+    JsonArray frozen() {
+        return deepFrozen ? this : copyOnWrite().deepFreeze();
+    }
+
+    boolean isDeepFrozen() {
+        return deepFrozen;
+    }
+
+    /**
+     * Returns a new version of this array with {@code value} at {@code index},
+     * leaving this array unchanged. The new array is
+     * {@link #deepFreeze() deep frozen}; if this array or {@code value} is not,
+     * a deep frozen copy of it is used and the original stays mutable. The new
+     * array keeps its values in a {@link PersistentVector}: the first update of
+     * an array copies it, every further update of a version costs O(log n) and
+     * shares all but the path to the changed value.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     * @throws JsonException if {@code index} is out of range.
+     * @see JsonObject#with(String, JsonElement)
+     */
+    public JsonArray withIndex(int index, JsonElement value) throws JsonException {
+        PersistentVector<JsonElement> vector = toPersistent();
+        if (index < 0 || index >= vector.size()) {
+            throw new JsonException("Index " + index + " out of range [0.." + vector.size() + ")");
+        }
+        return new JsonArray(vector.with(index, value == null ? JsonNull.INSTANCE : value.frozen())).markDeepFrozen();
+    }
+
+    /**
+     * Returns a new version of this array with {@code value} appended.
+     *
+     * @see #withIndex(int, JsonElement)
+     */
+    public JsonArray withAppended(JsonElement value) {
+        PersistentVector<JsonElement> vector = toPersistent();
+        return new JsonArray(vector.plus(value == null ? JsonNull.INSTANCE : value.frozen())).markDeepFrozen();
+    }
+
+    private PersistentVector<JsonElement> toPersistent() {
+        return PersistentVector.from(frozen().values);
+    }
+
+    /**
+     * Returns this array, or a deep frozen copy if any of its elements was
+     * replaced by its canonical instance.
+     */
+    JsonArray internElements(JsonInterner interner) {
+        if (primitives() != null) {
+            return this;
+        }
+        ArrayList<JsonElement> copy = null;
+        for (int i = 0, n = values.size(); i < n; i++) {
+            JsonElement e = values.get(i);
+            JsonElement canonical = interner.canonical(e);
+            if (canonical != e) {
+                if (copy == null) {
+                    copy = new ArrayList<JsonElement>(values);
+                }
+                copy.set(i, canonical);
+            }
+        }
+        return copy == null ? this : new JsonArray(copy).markDeepFrozen();
+    }
+
+    /**
+     * Returns a hash of the identities of the elements in order, or of their
+     * values if they are kept in a primitive array.
+     */
+    int identityHash() {
+        PrimitiveList primitives = primitives();
+        if (primitives != null) {
+            return primitives.elementsHash();
+        }
+        int h = 1;
+        for (int i = 0, n = values.size(); i < n; i++) {
+            h = 31 * h + System.identityHashCode(values.get(i));
+        }
+        return h;
+    }
+
+    /**
+     * Returns true if {@code other} holds the very same elements in the same
+     * order, or primitive values which serialize the same.
+     */
+    boolean sameElements(JsonArray other) {
+        PrimitiveList primitives = primitives();
+        PrimitiveList otherPrimitives = other.primitives();
+        if (primitives != null || otherPrimitives != null) {
+            return primitives != null && otherPrimitives != null
+                    && primitives.sameSerializedForm(otherPrimitives);
+        }
+        int size = values.size();
+        if (size != other.values.size()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (values.get(i) != other.values.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JsonArray markDeepFrozen() {
+        frozen = true;
+        deepFrozen = true;
+        return this;
+    }
+
+    /**
+     * Replaces the shared child at {@code index} with a copy on write copy
+     * before it is handed out.
+     */
+    private JsonElement unshareChild(int index, JsonElement value) {
+        if (value.isJsonObject() || value.isJsonArray()) {
+            JsonElement copy = JsonObject.unshare(value);
+            if (copy != value) {
+                values.set(index, copy);
+                if (journalNode != null) {
+                    journalNode.unshared(null, copy);
+                }
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Replaces all shared deep frozen children with copy on write copies
+     * before they are handed out.
+     */
+    private void unshareChildren() {
+        if (!sharesChildren) {
+            return;
+        }
+        for (int i = 0, n = values.size(); i < n; i++) {
+            JsonElement e = values.get(i);
+            if (e != null && (e.isJsonObject() || e.isJsonArray())) {
+                JsonElement copy = JsonObject.unshare(e);
+                values.set(i, copy);
+                if (journalNode != null && copy != e) {
+                    journalNode.unshared(null, copy);
+                }
+            }
         }
+        sharesChildren = false;
     }
 
     public void checkIfFrozen() {
@@ -22,15 +22,19 @@ import java.io.IOException;
 
 public final class JsonBoolean extends JsonElement {
 
+    /** Shared instances; booleans are immutable, so there is no need for more. */
+    public static final JsonBoolean TRUE = new JsonBoolean(true);
+    public static final JsonBoolean FALSE = new JsonBoolean(false);
+
     private final boolean value;
 
-    public JsonBoolean(boolean value) {
-        this.value = value;
+    public static JsonBoolean valueOf(boolean value) {
+        return value ? TRUE : FALSE;
     }
 
-    @Override
-    public boolean isBoolean() {
-        return true;
+    public JsonBoolean(boolean value) {
+        super(JsonType.BOOLEAN);
+        this.value = value;
     }
 
     @Override
@@ -49,6 +53,11 @@ public final class JsonBoolean extends JsonElement {
         || (o !=null && o.equals(value));
    }
 
+    @Override
+    public int serializedLength() {
+        return value ? 4 : 5;
+    }
+
     @Override
     public void write( JsonWriter writer ) throws IOException {
         writer.value(value);
@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Documents kept in memory under generated ids, with secondary indexes on the
+ * values at {@link JsonPointer pointer} paths in them, so that documents can
+ * be found by the value of a member without scanning them all.
+ *
+ * <p>Documents are {@link JsonObject#deepFreeze() deep frozen} when they are
+ * inserted, so they are handed out without copying, and replaced as a whole
+ * by {@link #update}. A {@link IndexType#HASH hash} index finds documents by
+ * equal values; a {@link IndexType#SORTED sorted} one also by ranges of
+ * strings, numbers or booleans. Queries on a path without an index scan the
+ * documents.
+ *
+ * <p>A collection may be used from any number of threads. Reads take no
+ * locks and never wait; they see each document either as it was before or as
+ * it is after a concurrent write, and only return documents which match the
+ * query as they are returned. Writes lock one of a number of stripes chosen
+ * by id, so writes to different documents mostly proceed in parallel.
+ */
+public final class JsonCollection {
+
+    /**
+     * How a path is indexed.
+     */
+    public enum IndexType {
+        /** Finds equal values. */
+        HASH,
+        /** Finds equal values and ranges of values, in order. */
+        SORTED
+    }
+
+    /**
+     * Orders null before booleans, numbers and strings, each by value.
+     * Objects and arrays are not ordered and are not put in sorted indexes.
+     */
+    static final Comparator<JsonElement> ORDER = new Comparator<JsonElement>() {
+        @Override
+        public int compare(JsonElement a, JsonElement b) {
+            int result = rank(a) - rank(b);
+            if (result != 0) {
+                return result;
+            }
+            switch (a.type()) {
+                case BOOLEAN:
+                    return (a.asBoolean() ? 1 : 0) - (b.asBoolean() ? 1 : 0);
+                case NUMBER:
+                    double x = ((JsonNumber) a).doubleValue();
+                    double y = ((JsonNumber) b).doubleValue();
+                    // unlike Double.compare, -0.0 == 0.0 as in JsonNumber.equals
+                    return x < y ? -1 : (x > y ? 1 : 0);
+                case STRING:
+                    return a.asString().compareTo(b.asString());
+                default:
+                    return 0;
+            }
+        }
+    };
+
+    /** The least value of each rank, which bounds ranges with one bound. */
+    private static final JsonElement[] FIRST_OF_RANK = {
+            JsonNull.INSTANCE, JsonBoolean.FALSE, new JsonNumber("-Infinity"), new JsonString("")
+    };
+
+    private final ConcurrentHashMap<Long, JsonObject> documents;
+    private final AtomicLong nextId = new AtomicLong();
+    private final ReentrantLock[] stripes;
+    /** The indexes by path, replaced as a whole while every stripe is locked. */
+    private volatile Map<String, Index> indexes = Collections.emptyMap();
+
+    public JsonCollection() {
+        this(16);
+    }
+
+    /**
+     * @param concurrency the number of writes expected to run at once.
+     */
+    public JsonCollection(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency < 1");
+        }
+        int count = Integer.highestOneBit(concurrency * 2 - 1);
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        documents = new ConcurrentHashMap<Long, JsonObject>(16, 0.75f, count);
+    }
+
+    /**
+     * Returns the number of documents.
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the document with {@code id}, or null if there is none.
+     */
+    public JsonObject get(long id) {
+        return documents.get(id);
+    }
+
+    /**
+     * Deep freezes {@code document} and adds it under a new id.
+     *
+     * @return the id of the document.
+     */
+    public long insert(JsonObject document) {
+        checkDocument(document);
+        long id = nextId.getAndIncrement();
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            documents.put(id, document);
+            for (Index index : indexes.values()) {
+                index.add(id, document);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return id;
+    }
+
+    /**
+     * Deep freezes {@code document} and replaces the document with {@code id}
+     * by it, if there is one.
+     *
+     * @return the replaced document, or null if there was none and nothing
+     * changed.
+     */
+    public JsonObject update(long id, JsonObject document) {
+        checkDocument(document);
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            JsonObject old = documents.replace(id, document);
+            if (old != null) {
+                for (Index index : indexes.values()) {
+                    index.update(id, old, document);
+                }
+            }
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the document with {@code id}.
+     *
+     * @return the removed document, or null if there was none.
+     */
+    public JsonObject remove(long id) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            JsonObject old = documents.remove(id);
+            if (old != null) {
+                for (Index index : indexes.values()) {
+                    index.remove(id, old);
+                }
+            }
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indexes the values at {@code path} in every document, replacing the
+     * index on the path if there is one of another type. Writes wait while
+     * the documents there are already are indexed.
+     *
+     * @throws JsonException if {@code path} is not a valid pointer.
+     */
+    public void createIndex(String path, IndexType type) throws JsonException {
+        if (type == null) {
+            throw new NullPointerException("type == null");
+        }
+        JsonPointer pointer = JsonPointer.compile(path);
+        lockAll();
+        try {
+            Index existing = indexes.get(path);
+            if (existing != null && existing.type == type) {
+                return;
+            }
+            Index index = new Index(pointer, type);
+            for (Map.Entry<Long, JsonObject> entry : documents.entrySet()) {
+                index.add(entry.getKey(), entry.getValue());
+            }
+            ConcurrentHashMap<String, Index> copy = new ConcurrentHashMap<String, Index>(indexes);
+            copy.put(path, index);
+            indexes = copy;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Drops the index on {@code path}.
+     *
+     * @return true if there was one.
+     */
+    public boolean dropIndex(String path) {
+        lockAll();
+        try {
+            if (!indexes.containsKey(path)) {
+                return false;
+            }
+            ConcurrentHashMap<String, Index> copy = new ConcurrentHashMap<String, Index>(indexes);
+            copy.remove(path);
+            indexes = copy;
+            return true;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns the type of the index on {@code path}, or null if it is not
+     * indexed.
+     */
+    public IndexType getIndexType(String path) {
+        Index index = indexes.get(path);
+        return index == null ? null : index.type;
+    }
+
+    /**
+     * Returns the ids of the documents whose value at {@code path} equals
+     * {@code value}.
+     *
+     * @param value a {@link JsonElement} or anything
+     *              {@link JsonElement#wrap wrap} accepts; null stands for
+     *              {@link JsonNull}.
+     * @throws JsonException if {@code path} is not a valid pointer.
+     */
+    public List<Long> findIds(String path, Object value) throws JsonException {
+        JsonElement key = value == null ? JsonNull.INSTANCE : JsonElement.wrap(value);
+        Index index = indexes.get(path);
+        ArrayList<Long> result = new ArrayList<Long>();
+        if (index == null) {
+            JsonPointer pointer = JsonPointer.compile(path);
+            for (Map.Entry<Long, JsonObject> entry : documents.entrySet()) {
+                if (key.equals(valueAt(pointer, entry.getValue()))) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+        Set<Long> ids = index.postings.get(key);
+        if (ids != null) {
+            for (Long id : ids) {
+                JsonObject document = documents.get(id);
+                // the document may have changed since the posting was read
+                if (document != null && index.matches(key, document)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the documents whose value at {@code path} equals {@code value}.
+     *
+     * @see #findIds(String, Object)
+     */
+    public List<JsonObject> find(String path, Object value) throws JsonException {
+        return documents(findIds(path, value));
+    }
+
+    /**
+     * Returns the ids of the documents whose value at {@code path} is between
+     * {@code from} and {@code to}, ordered by that value if {@code path} has a
+     * {@link IndexType#SORTED sorted} index. Values are ordered null first,
+     * then booleans, numbers and strings, each by value; objects and arrays
+     * are in no range. A range with one bound only holds values of the same
+     * type as that bound, so numbers from 10 up do not include strings.
+     *
+     * @param from the lower bound, or null for none.
+     * @param to   the upper bound, or null for none.
+     * @throws JsonException if {@code path} is not a valid pointer.
+     */
+    public List<Long> rangeIds(String path, Object from, boolean fromInclusive, Object to, boolean toInclusive)
+            throws JsonException {
+        JsonElement low = from == null ? null : JsonElement.wrap(from);
+        JsonElement high = to == null ? null : JsonElement.wrap(to);
+        if (low != null && high == null) {
+            int rank = rank(low) + 1;
+            if (rank < FIRST_OF_RANK.length) {
+                high = FIRST_OF_RANK[rank];
+                toInclusive = false;
+            }
+        } else if (high != null && low == null) {
+            low = FIRST_OF_RANK[rank(high)];
+            fromInclusive = true;
+        }
+        Index index = indexes.get(path);
+        ArrayList<Long> result = new ArrayList<Long>();
+        if (index == null || index.type != IndexType.SORTED) {
+            JsonPointer pointer = index == null ? JsonPointer.compile(path) : index.pointer;
+            for (Map.Entry<Long, JsonObject> entry : documents.entrySet()) {
+                if (inRange(valueAt(pointer, entry.getValue()), low, fromInclusive, high, toInclusive)) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+        ConcurrentNavigableMap<JsonElement, Set<Long>> sorted =
+                (ConcurrentNavigableMap<JsonElement, Set<Long>>) index.postings;
+        if (low != null && high != null) {
+            if (ORDER.compare(low, high) > 0) {
+                return result;
+            }
+            sorted = sorted.subMap(low, fromInclusive, high, toInclusive);
+        } else if (low != null) {
+            sorted = sorted.tailMap(low, fromInclusive);
+        } else if (high != null) {
+            sorted = sorted.headMap(high, toInclusive);
+        }
+        for (Set<Long> ids : sorted.values()) {
+            for (Long id : ids) {
+                JsonObject document = documents.get(id);
+                if (document != null
+                        && inRange(valueAt(index.pointer, document), low, fromInclusive, high, toInclusive)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the documents whose value at {@code path} is between
+     * {@code from} and {@code to}.
+     *
+     * @see #rangeIds(String, Object, boolean, Object, boolean)
+     */
+    public List<JsonObject> range(String path, Object from, boolean fromInclusive, Object to, boolean toInclusive)
+            throws JsonException {
+        return documents(rangeIds(path, from, fromInclusive, to, toInclusive));
+    }
+
+    private List<JsonObject> documents(List<Long> ids) {
+        ArrayList<JsonObject> result = new ArrayList<JsonObject>(ids.size());
+        for (Long id : ids) {
+            JsonObject document = documents.get(id);
+            if (document != null) {
+                result.add(document);
+            }
+        }
+        return result;
+    }
+
+    private static boolean inRange(JsonElement value, JsonElement low, boolean lowInclusive,
+                                   JsonElement high, boolean highInclusive) {
+        if (value == null || !isOrdered(value)) {
+            return false;
+        }
+        if (low != null) {
+            int c = ORDER.compare(value, low);
+            if (c < 0 || (c == 0 && !lowInclusive)) {
+                return false;
+            }
+        }
+        if (high != null) {
+            int c = ORDER.compare(value, high);
+            if (c > 0 || (c == 0 && !highInclusive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOrdered(JsonElement value) {
+        return value.type() != JsonType.OBJECT && value.type() != JsonType.ARRAY;
+    }
+
+    private static int rank(JsonElement value) {
+        switch (value.type()) {
+            case NULL:
+                return 0;
+            case BOOLEAN:
+                return 1;
+            case NUMBER:
+                return 2;
+            case STRING:
+                return 3;
+            default:
+                throw new IllegalArgumentException("Cannot order " + value.type());
+        }
+    }
+
+    /**
+     * Returns the value at {@code pointer} in {@code document}, or null if
+     * there is none.
+     */
+    static JsonElement valueAt(JsonPointer pointer, JsonObject document) {
+        return pointer.opt(document);
+    }
+
+    private static void checkDocument(JsonObject document) {
+        if (document == null) {
+            throw new NullPointerException("document == null");
+        }
+        document.deepFreeze();
+    }
+
+    private ReentrantLock stripe(long id) {
+        int h = (int) (id ^ (id >>> 32));
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The ids of the documents by their value at one path. Writers to
+     * different documents may share a value, so each value's ids are changed
+     * under a lock chosen by the value's hash; a sorted index hashes numbers
+     * by their double, as {@link #ORDER} compares them.
+     */
+    private static final class Index {
+        final JsonPointer pointer;
+        final IndexType type;
+        final ConcurrentMap<JsonElement, Set<Long>> postings;
+        private final Object[] locks = new Object[64];
+
+        Index(JsonPointer pointer, IndexType type) {
+            this.pointer = pointer;
+            this.type = type;
+            if (type == IndexType.SORTED) {
+                postings = new ConcurrentSkipListMap<JsonElement, Set<Long>>(ORDER);
+            } else {
+                postings = new ConcurrentHashMap<JsonElement, Set<Long>>();
+            }
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        /**
+         * Returns the value of {@code document} this index holds, or null if
+         * it holds none.
+         */
+        JsonElement key(JsonObject document) {
+            JsonElement value = valueAt(pointer, document);
+            if (value == null || (type == IndexType.SORTED && !isOrdered(value))) {
+                return null;
+            }
+            return value;
+        }
+
+        boolean matches(JsonElement key, JsonObject document) {
+            JsonElement value = key(document);
+            if (value == null) {
+                return false;
+            }
+            return type == IndexType.SORTED ? ORDER.compare(key, value) == 0 : key.equals(value);
+        }
+
+        private Object lock(JsonElement key) {
+            int h = type == IndexType.SORTED && key.type() == JsonType.NUMBER
+                    ? JsonNumber.hash(((JsonNumber) key).doubleValue()) : key.hashCode();
+            return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
+        }
+
+        void add(long id, JsonObject document) {
+            JsonElement key = key(document);
+            if (key == null) {
+                return;
+            }
+            synchronized (lock(key)) {
+                Set<Long> ids = postings.get(key);
+                if (ids == null) {
+                    ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>(2));
+                    postings.put(key, ids);
+                }
+                ids.add(id);
+            }
+        }
+
+        void remove(long id, JsonObject document) {
+            JsonElement key = key(document);
+            if (key == null) {
+                return;
+            }
+            synchronized (lock(key)) {
+                Collection<Long> ids = postings.get(key);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(key);
+                    }
+                }
+            }
+        }
+
+        void update(long id, JsonObject old, JsonObject document) {
+            JsonElement before = key(old);
+            JsonElement after = key(document);
+            if (before != null && after != null
+                    && (type == IndexType.SORTED ? ORDER.compare(before, after) == 0 : before.equals(after))) {
+                return;
+            }
+            remove(id, old);
+            add(id, document);
+        }
+    }
+}
@@ -0,0 +1,983 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The elements of an array, typically objects of the same shape, shredded
+ * into one {@link Column} per path, with the values of each leaf path in a
+ * primitive array, so that they can be aggregated in tight loops without a
+ * {@link JsonElement} per value:
+ * <ul>
+ *   <li>integers in a {@code long[]} and other numbers in a {@code double[]};
+ *   <li>strings as {@code int} codes into a dictionary of distinct strings;
+ *   <li>booleans in a bitmap;
+ *   <li>objects as one column per member name;
+ *   <li>arrays as offsets into one column of all their elements, so that
+ *       nested arrays cost no more than a level of offsets.
+ * </ul>
+ * Each column has a bitmap of the entries which are present and one of those
+ * which are not null, so that missing members, nulls and values can all be
+ * told apart and the elements {@link #get reassembled} as they were. A path
+ * whose values are not all of one kind, other than integers among other
+ * numbers, keeps them as {@link JsonElement JsonElements}. Numbers which are
+ * not integers that fit in a long are kept as doubles, so digits beyond a
+ * double's precision are lost.
+ *
+ * <p>Paths are {@link JsonPointer JSON pointers} into an element, in which
+ * {@code *} stands for any element of an array, as in {@code /tags/*}.
+ */
+public final class JsonColumns {
+
+    /**
+     * What a column holds.
+     */
+    public enum Type {
+        /** Only nulls, or nothing, so far. */
+        NULL,
+        LONG,
+        DOUBLE,
+        STRING,
+        BOOLEAN,
+        OBJECT,
+        ARRAY,
+        /** Values of different kinds, kept as {@link JsonElement JsonElements}. */
+        MIXED
+    }
+
+    private final Column root;
+
+    private JsonColumns(Column root) {
+        this.root = root;
+    }
+
+    /**
+     * Shreds the elements of {@code array}.
+     */
+    public static JsonColumns shred(JsonArray array) {
+        if (array == null) {
+            throw new NullPointerException("array == null");
+        }
+        try {
+            return shred(new JsonTreeReader(array));
+        } catch (IOException e) {
+            // the tree reader does not read any text
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads the next value, which must be an array, and shreds its elements
+     * as they are read, without building a tree.
+     *
+     * @throws JsonException if the next value is not an array.
+     */
+    public static JsonColumns shred(JsonReader reader) throws IOException, JsonException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new JsonException("Expected an array to shred but was " + reader.peek());
+        }
+        Shredder shredder = new Shredder();
+        reader.parse(shredder);
+        return new JsonColumns(shredder.root);
+    }
+
+    /**
+     * Returns the number of elements shredded.
+     */
+    public int size() {
+        return root.size;
+    }
+
+    /**
+     * Returns the column of the elements themselves, at the empty path.
+     */
+    public Column root() {
+        return root;
+    }
+
+    /**
+     * Returns the column at {@code path}, or null if no element has values
+     * there.
+     *
+     * @throws JsonException if {@code path} is not a valid pointer.
+     */
+    public Column column(String path) throws JsonException {
+        JsonPointer pointer = JsonPointer.compile(path);
+        Column column = root;
+        for (int i = 0; i < pointer.depth() && column != null; i++) {
+            String token = pointer.token(i);
+            if (column.type == Type.ARRAY && token.equals("*")) {
+                column = column.element;
+            } else if (column.type == Type.OBJECT) {
+                int id = column.names.get(token);
+                column = id < 0 ? null : column.fields[id];
+            } else {
+                column = null;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Returns the paths of the columns of values, those which are neither
+     * objects nor arrays, in the order they were first seen.
+     */
+    public List<String> paths() {
+        ArrayList<String> paths = new ArrayList<String>();
+        root.collectPaths(paths);
+        return paths;
+    }
+
+    /**
+     * Reassembles the element at {@code index}.
+     */
+    public JsonElement get(int index) {
+        JsonElement result = root.get(index);
+        return result == null ? JsonNull.INSTANCE : result;
+    }
+
+    /**
+     * Reassembles all elements.
+     */
+    public JsonArray toJsonArray() {
+        JsonArray result = new JsonArray();
+        for (int i = 0; i < root.size; i++) {
+            result.put(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * The entries at one path, one for each value at the path's parent: one
+     * per element for the root, one per entry of the parent object column,
+     * and one per element of the arrays of the parent array column.
+     */
+    public static final class Column {
+        private final String path;
+        private Type type = Type.NULL;
+        private int size;
+        private int capacity = 16;
+        /** Entries which are present, even if null. */
+        private long[] present = new long[1];
+        /** Entries which are present and not null. */
+        private long[] valid = new long[1];
+
+        private long[] longs;
+        private double[] doubles;
+        private int[] codes;
+        private CharTable dictionary;
+        private long[] booleans;
+        private JsonElement[] elements;
+        private CharTable names;
+        private Column[] fields;
+        /** The start of each entry's elements in {@link #element}, and their end. */
+        private int[] offsets;
+        private Column element;
+
+        Column(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Type type() {
+            return type;
+        }
+
+        /**
+         * Returns the number of entries.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns true if entry {@code i} is present, even if it is null;
+         * false for members missing from their object.
+         */
+        public boolean isPresent(int i) {
+            checkIndex(i);
+            return bit(present, i);
+        }
+
+        /**
+         * Returns true if entry {@code i} is present and not null.
+         */
+        public boolean isValid(int i) {
+            checkIndex(i);
+            return bit(valid, i);
+        }
+
+        /**
+         * Returns the number of entries which are present and not null.
+         */
+        public int count() {
+            int count = 0;
+            for (int w = 0, n = words(size); w < n; w++) {
+                count += Long.bitCount(valid[w]);
+            }
+            return count;
+        }
+
+        /**
+         * Returns the values of a {@link Type#LONG} column, 0 where there is
+         * none.
+         */
+        public long[] longs() {
+            checkType(Type.LONG);
+            return Arrays.copyOf(longs, size);
+        }
+
+        /**
+         * Returns the values of a {@link Type#DOUBLE} column, 0 where there is
+         * none.
+         */
+        public double[] doubles() {
+            checkType(Type.DOUBLE);
+            return Arrays.copyOf(doubles, size);
+        }
+
+        /**
+         * Returns the codes of the values of a {@link Type#STRING} column
+         * into its {@link #dictionary()}, -1 where there is none.
+         */
+        public int[] codes() {
+            checkType(Type.STRING);
+            return Arrays.copyOf(codes, size);
+        }
+
+        /**
+         * Returns the distinct strings of a {@link Type#STRING} column, in
+         * the order they were first seen.
+         */
+        public String[] dictionary() {
+            checkType(Type.STRING);
+            String[] result = new String[dictionary.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = dictionary.key(i);
+            }
+            return result;
+        }
+
+        /**
+         * Returns how many times each string of the {@link #dictionary()}
+         * occurs in a {@link Type#STRING} column.
+         */
+        public int[] counts() {
+            checkType(Type.STRING);
+            int[] counts = new int[dictionary.size()];
+            for (int i = 0; i < size; i++) {
+                int code = codes[i];
+                if (code >= 0) {
+                    counts[code]++;
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Returns the value of entry {@code i} of a {@link Type#BOOLEAN}
+         * column, false where there is none.
+         */
+        public boolean booleanAt(int i) {
+            checkType(Type.BOOLEAN);
+            checkIndex(i);
+            return bit(booleans, i);
+        }
+
+        /**
+         * Returns the member names of an {@link Type#OBJECT} column, in the
+         * order they were first seen.
+         */
+        public List<String> fieldNames() {
+            checkType(Type.OBJECT);
+            ArrayList<String> result = new ArrayList<String>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                result.add(names.key(i));
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * Returns the column of member {@code name} of an {@link Type#OBJECT}
+         * column, or null if no entry has it.
+         */
+        public Column field(String name) {
+            checkType(Type.OBJECT);
+            int id = names.get(name);
+            return id < 0 ? null : fields[id];
+        }
+
+        /**
+         * Returns the {@code size() + 1} offsets of an {@link Type#ARRAY}
+         * column: the elements of entry {@code i} are entries
+         * {@code offsets[i]} to {@code offsets[i + 1]} of {@link #elements()}.
+         */
+        public int[] offsets() {
+            checkType(Type.ARRAY);
+            return Arrays.copyOf(offsets, size + 1);
+        }
+
+        /**
+         * Returns the column of the elements of the arrays of an
+         * {@link Type#ARRAY} column, or null if they are all empty.
+         */
+        public Column elements() {
+            checkType(Type.ARRAY);
+            return element;
+        }
+
+        /**
+         * Returns the sum of the values of a {@link Type#LONG} or
+         * {@link Type#DOUBLE} column.
+         */
+        public double sum() {
+            if (type == Type.LONG) {
+                // entries without a value are 0
+                long sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += longs[i];
+                }
+                return sum;
+            }
+            checkType(Type.DOUBLE);
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += doubles[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Returns the smallest value of a {@link Type#LONG} or
+         * {@link Type#DOUBLE} column, or {@link Double#NaN} if it has none.
+         */
+        public double min() {
+            return extreme(false);
+        }
+
+        /**
+         * Returns the largest value of a {@link Type#LONG} or
+         * {@link Type#DOUBLE} column, or {@link Double#NaN} if it has none.
+         */
+        public double max() {
+            return extreme(true);
+        }
+
+        private double extreme(boolean max) {
+            if (type != Type.LONG) {
+                checkType(Type.DOUBLE);
+            }
+            boolean found = false;
+            double result = 0;
+            for (int w = 0, n = words(size); w < n; w++) {
+                long word = valid[w];
+                int base = w << 6;
+                if (word == -1L) {
+                    // a full word, no bitmap test per value
+                    double extreme = type == Type.LONG
+                            ? extreme(longs, base, base + 64, max) : extreme(doubles, base, base + 64, max);
+                    if (!found || (max ? extreme > result : extreme < result)) {
+                        result = extreme;
+                    }
+                    found = true;
+                    continue;
+                }
+                for (; word != 0; word &= word - 1) {
+                    int i = base + Long.numberOfTrailingZeros(word);
+                    double value = type == Type.LONG ? longs[i] : doubles[i];
+                    if (!found || (max ? value > result : value < result)) {
+                        result = value;
+                    }
+                    found = true;
+                }
+            }
+            return found ? result : Double.NaN;
+        }
+
+        private static double extreme(long[] values, int from, int to, boolean max) {
+            long result = values[from];
+            if (max) {
+                for (int i = from + 1; i < to; i++) {
+                    result = Math.max(result, values[i]);
+                }
+            } else {
+                for (int i = from + 1; i < to; i++) {
+                    result = Math.min(result, values[i]);
+                }
+            }
+            return result;
+        }
+
+        private static double extreme(double[] values, int from, int to, boolean max) {
+            double result = values[from];
+            if (max) {
+                for (int i = from + 1; i < to; i++) {
+                    result = Math.max(result, values[i]);
+                }
+            } else {
+                for (int i = from + 1; i < to; i++) {
+                    result = Math.min(result, values[i]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Reassembles entry {@code i}: null if it is missing,
+         * {@link JsonNull#INSTANCE} if it is null.
+         */
+        public JsonElement get(int i) {
+            checkIndex(i);
+            if (!bit(present, i)) {
+                return null;
+            }
+            if (!bit(valid, i)) {
+                return JsonNull.INSTANCE;
+            }
+            switch (type) {
+                case LONG:
+                    return JsonNumber.valueOf(longs[i]);
+                case DOUBLE:
+                    double d = doubles[i];
+                    return JsonNumber.isLong(d) ? JsonNumber.valueOf((long) d) : new JsonNumber(Double.valueOf(d));
+                case STRING:
+                    return new JsonString(dictionary.key(codes[i]));
+                case BOOLEAN:
+                    return JsonBoolean.valueOf(bit(booleans, i));
+                case OBJECT:
+                    JsonObject object = new JsonObject();
+                    for (int id = 0; id < names.size(); id++) {
+                        JsonElement value = fields[id].get(i);
+                        if (value != null) {
+                            object.put(names.key(id), value);
+                        }
+                    }
+                    return object;
+                case ARRAY:
+                    JsonArray array = new JsonArray();
+                    for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                        JsonElement value = element.get(k);
+                        array.put(value == null ? JsonNull.INSTANCE : value);
+                    }
+                    return array;
+                case MIXED:
+                    return elements[i];
+                default:
+                    throw new AssertionError(type);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + type + "[" + size + "]";
+        }
+
+        private void checkIndex(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+            }
+        }
+
+        private void checkType(Type expected) {
+            if (type != expected) {
+                throw new IllegalStateException("Column " + path + " is " + type + ", not " + expected);
+            }
+        }
+
+        private void collectPaths(List<String> paths) {
+            if (type == Type.OBJECT) {
+                for (int id = 0; id < names.size(); id++) {
+                    fields[id].collectPaths(paths);
+                }
+            } else if (type == Type.ARRAY) {
+                if (element != null) {
+                    element.collectPaths(paths);
+                }
+            } else {
+                paths.add(path);
+            }
+        }
+
+        // ------------------------------------------------------------ building
+
+        private static int words(int bits) {
+            return (bits + 63) >> 6;
+        }
+
+        private static boolean bit(long[] bits, int i) {
+            return (bits[i >> 6] & (1L << i)) != 0;
+        }
+
+        private static void set(long[] bits, int i) {
+            bits[i >> 6] |= 1L << i;
+        }
+
+        /**
+         * Makes room for one more entry and returns its index.
+         */
+        private int append() {
+            if (size == capacity) {
+                capacity *= 2;
+                present = Arrays.copyOf(present, words(capacity));
+                valid = Arrays.copyOf(valid, words(capacity));
+                if (longs != null) {
+                    longs = Arrays.copyOf(longs, capacity);
+                }
+                if (doubles != null) {
+                    doubles = Arrays.copyOf(doubles, capacity);
+                }
+                if (codes != null) {
+                    codes = Arrays.copyOf(codes, capacity);
+                }
+                if (booleans != null) {
+                    booleans = Arrays.copyOf(booleans, words(capacity));
+                }
+                if (elements != null) {
+                    elements = Arrays.copyOf(elements, capacity);
+                }
+                if (offsets != null) {
+                    offsets = Arrays.copyOf(offsets, capacity + 1);
+                }
+            }
+            return size++;
+        }
+
+        /** Appends an entry for a missing member. */
+        void addMissing() {
+            int i = append();
+            afterEmpty(i);
+        }
+
+        void addNull() {
+            int i = append();
+            set(present, i);
+            afterEmpty(i);
+        }
+
+        private void afterEmpty(int i) {
+            if (codes != null) {
+                codes[i] = -1;
+            } else if (offsets != null) {
+                offsets[i + 1] = offsets[i];
+            } else if (fields != null) {
+                padFields();
+            }
+        }
+
+        private int addValue() {
+            int i = append();
+            set(present, i);
+            set(valid, i);
+            return i;
+        }
+
+        void addLong(long value) {
+            if (type == Type.NULL) {
+                become(Type.LONG);
+            } else if (type == Type.DOUBLE) {
+                addDouble(value, null);
+                return;
+            } else if (type != Type.LONG) {
+                addElement(JsonNumber.valueOf(value));
+                return;
+            }
+            int i = addValue();
+            longs[i] = value;
+        }
+
+        void addDouble(double value, CharSequence raw) {
+            if (type == Type.NULL) {
+                become(Type.DOUBLE);
+            } else if (type == Type.LONG) {
+                become(Type.DOUBLE);
+            } else if (type != Type.DOUBLE) {
+                addElement(raw != null ? JsonNumber.parse(raw.toString()) : new JsonNumber(Double.valueOf(value)));
+                return;
+            }
+            int i = addValue();
+            doubles[i] = value;
+        }
+
+        void addString(CharSequence value) {
+            if (type == Type.NULL) {
+                become(Type.STRING);
+            } else if (type != Type.STRING) {
+                addElement(new JsonString(value.toString()));
+                return;
+            }
+            int i = addValue();
+            codes[i] = dictionary.add(value);
+        }
+
+        void addBoolean(boolean value) {
+            if (type == Type.NULL) {
+                become(Type.BOOLEAN);
+            } else if (type != Type.BOOLEAN) {
+                addElement(JsonBoolean.valueOf(value));
+                return;
+            }
+            int i = addValue();
+            if (value) {
+                set(booleans, i);
+            }
+        }
+
+        /**
+         * Appends {@code value} to this column, which becomes a
+         * {@link Type#MIXED} one if it is not already.
+         */
+        void addElement(JsonElement value) {
+            if (type != Type.MIXED) {
+                become(Type.MIXED);
+            }
+            int i = addValue();
+            elements[i] = value;
+        }
+
+        /**
+         * Starts an entry for an object, returning false if this column does
+         * not hold objects and so the object is to be appended as a whole.
+         */
+        boolean beginObject() {
+            if (type == Type.NULL) {
+                become(Type.OBJECT);
+            } else if (type != Type.OBJECT) {
+                if (type != Type.MIXED) {
+                    become(Type.MIXED);
+                }
+                return false;
+            }
+            addValue();
+            return true;
+        }
+
+        /**
+         * Returns the column of member {@code name} for the entry being
+         * appended, creating it if it is new.
+         */
+        Column field(CharSequence name) throws JsonException {
+            int id = names.get(name);
+            if (id < 0) {
+                id = names.add(name);
+                if (id == fields.length) {
+                    fields = Arrays.copyOf(fields, Math.max(4, id * 2));
+                }
+                Column field = new Column(path + "/" + JsonPointer.escape(names.key(id)));
+                // the member was missing from every entry before this one
+                for (int i = 0; i < size - 1; i++) {
+                    field.addMissing();
+                }
+                fields[id] = field;
+            }
+            Column field = fields[id];
+            if (field.size == size) {
+                throw new JsonException("Duplicate name " + name + " in " + path);
+            }
+            return field;
+        }
+
+        /** Gives the fields which the last entry did not have missing entries. */
+        void padFields() {
+            for (int id = 0; id < names.size(); id++) {
+                Column field = fields[id];
+                if (field.size < size) {
+                    field.addMissing();
+                }
+            }
+        }
+
+        /**
+         * Starts an entry for an array, returning false if this column does
+         * not hold arrays and so the array is to be appended as a whole.
+         */
+        boolean beginArray() {
+            if (type == Type.NULL) {
+                become(Type.ARRAY);
+            } else if (type != Type.ARRAY) {
+                if (type != Type.MIXED) {
+                    become(Type.MIXED);
+                }
+                return false;
+            }
+            int i = addValue();
+            offsets[i + 1] = offsets[i];
+            return true;
+        }
+
+        /**
+         * Returns the column of the elements for the next element of the
+         * entry being appended.
+         */
+        Column nextElement() {
+            if (element == null) {
+                element = new Column(path + "/*");
+            }
+            offsets[size]++;
+            return element;
+        }
+
+        /**
+         * Changes the type of this column, converting the entries it has.
+         */
+        private void become(Type newType) {
+            if (newType == Type.MIXED) {
+                JsonElement[] values = new JsonElement[capacity];
+                for (int i = 0; i < size; i++) {
+                    values[i] = get(i);
+                }
+                longs = null;
+                doubles = null;
+                codes = null;
+                dictionary = null;
+                booleans = null;
+                names = null;
+                fields = null;
+                offsets = null;
+                element = null;
+                elements = values;
+            } else if (newType == Type.DOUBLE && type == Type.LONG) {
+                doubles = new double[capacity];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = longs[i];
+                }
+                longs = null;
+            } else {
+                // from NULL: the entries so far are all missing or null
+                switch (newType) {
+                    case LONG:
+                        longs = new long[capacity];
+                        break;
+                    case DOUBLE:
+                        doubles = new double[capacity];
+                        break;
+                    case STRING:
+                        codes = new int[capacity];
+                        Arrays.fill(codes, 0, size, -1);
+                        dictionary = new CharTable();
+                        break;
+                    case BOOLEAN:
+                        booleans = new long[words(capacity)];
+                        break;
+                    case OBJECT:
+                        names = new CharTable();
+                        fields = new Column[0];
+                        break;
+                    case ARRAY:
+                        offsets = new int[capacity + 1];
+                        break;
+                    default:
+                        throw new AssertionError(newType);
+                }
+            }
+            type = newType;
+        }
+    }
+
+    /**
+     * Appends the tokens it receives to the columns. Values which go to a
+     * {@link Type#MIXED} column as a whole are built with a
+     * {@link JsonTreeWriter} first.
+     */
+    private static final class Shredder implements JsonHandler {
+        final Column root = new Column("");
+
+        /** The open objects and arrays; null for the shredded array itself. */
+        private Column[] open = new Column[16];
+        /** The column of the member being read, for each open object. */
+        private Column[] member = new Column[16];
+        private int depth;
+
+        private JsonTreeWriter whole;
+        private JsonHandler wholeHandler;
+        private Column wholeColumn;
+        private int wholeDepth;
+
+        /**
+         * Returns the column the value which starts now goes to.
+         */
+        private Column target() {
+            Column parent = open[depth - 1];
+            if (parent == null) {
+                return root;
+            }
+            if (parent.type == Type.ARRAY) {
+                return parent.nextElement();
+            }
+            Column result = member[depth - 1];
+            member[depth - 1] = null;
+            return result;
+        }
+
+        private void push(Column column) {
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+                member = Arrays.copyOf(member, depth * 2);
+            }
+            open[depth++] = column;
+        }
+
+        private Column pop() {
+            Column column = open[--depth];
+            open[depth] = null;
+            return column;
+        }
+
+        private void beginWhole(Column column) {
+            whole = new JsonTreeWriter();
+            wholeHandler = JsonHandlers.writeTo(whole);
+            wholeColumn = column;
+            wholeDepth = 0;
+        }
+
+        /** Appends the value being built once it is complete. */
+        private void endWhole() {
+            if (wholeDepth == 0) {
+                wholeColumn.addElement(whole.get());
+                whole = null;
+                wholeHandler = null;
+                wholeColumn = null;
+            }
+        }
+
+        @Override
+        public void startObject() throws IOException {
+            if (whole != null) {
+                wholeDepth++;
+                wholeHandler.startObject();
+                return;
+            }
+            if (depth == 0) {
+                throw new JsonException("Expected an array to shred but was an object");
+            }
+            Column column = target();
+            if (column.beginObject()) {
+                push(column);
+            } else {
+                beginWhole(column);
+                wholeDepth++;
+                wholeHandler.startObject();
+            }
+        }
+
+        @Override
+        public void name(CharSequence name) throws IOException {
+            if (whole != null) {
+                wholeHandler.name(name);
+                return;
+            }
+            member[depth - 1] = open[depth - 1].field(name);
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            if (whole != null) {
+                wholeDepth--;
+                wholeHandler.endObject();
+                endWhole();
+                return;
+            }
+            pop().padFields();
+        }
+
+        @Override
+        public void startArray() throws IOException {
+            if (whole != null) {
+                wholeDepth++;
+                wholeHandler.startArray();
+                return;
+            }
+            if (depth == 0) {
+                push(null);
+                return;
+            }
+            Column column = target();
+            if (column.beginArray()) {
+                push(column);
+            } else {
+                beginWhole(column);
+                wholeDepth++;
+                wholeHandler.startArray();
+            }
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            if (whole != null) {
+                wholeDepth--;
+                wholeHandler.endArray();
+                endWhole();
+                return;
+            }
+            pop();
+        }
+
+        @Override
+        public void stringValue(CharSequence value) throws IOException {
+            if (whole != null) {
+                wholeHandler.stringValue(value);
+            } else {
+                target().addString(value);
+            }
+        }
+
+        @Override
+        public void numberValue(long value) throws IOException {
+            if (whole != null) {
+                wholeHandler.numberValue(value);
+            } else {
+                target().addLong(value);
+            }
+        }
+
+        @Override
+        public void numberValue(double value, CharSequence raw) throws IOException {
+            if (whole != null) {
+                wholeHandler.numberValue(value, raw);
+            } else {
+                target().addDouble(value, raw);
+            }
+        }
+
+        @Override
+        public void booleanValue(boolean value) throws IOException {
+            if (whole != null) {
+                wholeHandler.booleanValue(value);
+            } else {
+                target().addBoolean(value);
+            }
+        }
+
+        @Override
+        public void nullValue() throws IOException {
+            if (whole != null) {
+                wholeHandler.nullValue();
+            } else {
+                target().addNull();
+            }
+        }
+    }
+}
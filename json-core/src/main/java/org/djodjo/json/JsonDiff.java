@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Computes a {@link JsonPatch} which turns one document into another, so that
+ * only the changes need to be sent to whoever holds the first one.
+ *
+ * <p>Equal subtrees are skipped as a whole: {@link JsonElement#equals} first
+ * compares the hashes deep frozen containers cache, and identical instances,
+ * for example those shared by {@link JsonObject#copyOnWrite()} versions, are
+ * never walked. Objects are diffed member by member. Arrays are aligned on
+ * their longest common subsequence after their common head and tail are cut
+ * off, so that an insertion or removal in the middle becomes a single
+ * operation; if they differ in too many elements for that to be cheap, they
+ * are diffed index by index instead.
+ */
+public final class JsonDiff {
+
+    /**
+     * The largest number of insertions and removals looked for to align two
+     * arrays; aligning takes about 4 * MAX_ARRAY_EDITS^2 bytes at most.
+     */
+    static final int MAX_ARRAY_EDITS = 1024;
+
+    private static final byte KEEP = 0;
+    private static final byte REMOVE = 1;
+    private static final byte INSERT = 2;
+
+    private final JsonPatch patch = new JsonPatch();
+    private final StringBuilder path = new StringBuilder();
+
+    private JsonDiff() {
+    }
+
+    /**
+     * Returns a patch which, {@link JsonPatch#apply applied} to a copy of
+     * {@code source}, makes it equal to {@code target}. The patch is empty if
+     * the two are equal already.
+     */
+    public static JsonPatch diff(JsonElement source, JsonElement target) {
+        if (source == null) {
+            throw new NullPointerException("source == null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target == null");
+        }
+        JsonDiff diff = new JsonDiff();
+        diff.diffValues(source, target);
+        return diff.patch;
+    }
+
+    private void diffValues(JsonElement source, JsonElement target) {
+        if (source == target || source.equals(target)) {
+            return;
+        }
+        if (source.type() == JsonType.OBJECT && target.type() == JsonType.OBJECT) {
+            diffObjects((JsonObject) source, (JsonObject) target);
+        } else if (source.type() == JsonType.ARRAY && target.type() == JsonType.ARRAY) {
+            diffArrays((JsonArray) source, (JsonArray) target);
+        } else {
+            patch.replace(path.toString(), target);
+        }
+    }
+
+    private void diffObjects(JsonObject source, JsonObject target) {
+        int length = path.length();
+        for (Map.Entry<String, JsonElement> entry : source) {
+            String name = entry.getKey();
+            path.append('/').append(JsonPointer.escape(name));
+            JsonElement value = target.opt(name);
+            if (value == null) {
+                patch.remove(path.toString());
+            } else {
+                diffValues(entry.getValue(), value);
+            }
+            path.setLength(length);
+        }
+        for (Map.Entry<String, JsonElement> entry : target) {
+            String name = entry.getKey();
+            if (!source.has(name)) {
+                path.append('/').append(JsonPointer.escape(name));
+                patch.add(path.toString(), entry.getValue());
+                path.setLength(length);
+            }
+        }
+    }
+
+    private void diffArrays(JsonArray source, JsonArray target) {
+        int sourceSize = source.size();
+        int targetSize = target.size();
+        int head = 0;
+        while (head < sourceSize && head < targetSize && source.opt(head).equals(target.opt(head))) {
+            head++;
+        }
+        int tail = 0;
+        while (tail < sourceSize - head && tail < targetSize - head
+                && source.opt(sourceSize - 1 - tail).equals(target.opt(targetSize - 1 - tail))) {
+            tail++;
+        }
+        int n = sourceSize - head - tail;
+        int m = targetSize - head - tail;
+        diffMiddle(source, target, head, n, m);
+    }
+
+    /**
+     * Diffs the {@code n} elements of {@code source} and the {@code m}
+     * elements of {@code target} from {@code head} on along their longest
+     * common subsequence, found with Myers' algorithm, or index by index if
+     * that takes more than {@link #MAX_ARRAY_EDITS} insertions and removals.
+     */
+    private void diffMiddle(JsonArray source, JsonArray target, int head, int n, int m) {
+        JsonElement[] a = new JsonElement[n];
+        JsonElement[] b = new JsonElement[m];
+        int[] hashA = new int[n];
+        int[] hashB = new int[m];
+        for (int i = 0; i < n; i++) {
+            a[i] = source.opt(head + i);
+            hashA[i] = a[i].hashCode();
+        }
+        for (int j = 0; j < m; j++) {
+            b[j] = target.opt(head + j);
+            hashB[j] = b[j].hashCode();
+        }
+        byte[] script = editScript(a, b, hashA, hashB);
+        if (script == null) {
+            diffByIndex(source, target, head, n, m);
+            return;
+        }
+        int length = path.length();
+        int index = head;
+        int i = 0;
+        int j = 0;
+        for (int p = 0; p < script.length; ) {
+            if (script[p] == KEEP) {
+                i++;
+                j++;
+                index++;
+                p++;
+                continue;
+            }
+            int removed = 0;
+            int inserted = 0;
+            for (; p < script.length && script[p] != KEEP; p++) {
+                if (script[p] == REMOVE) {
+                    removed++;
+                } else {
+                    inserted++;
+                }
+            }
+            // a run of removals and insertions; pair them up as changed elements
+            int changed = Math.min(removed, inserted);
+            for (int k = 0; k < changed; k++) {
+                path.append('/').append(index++);
+                diffValues(a[i + k], b[j + k]);
+                path.setLength(length);
+            }
+            for (int k = changed; k < removed; k++) {
+                patch.remove(path.append('/').append(index).toString());
+                path.setLength(length);
+            }
+            for (int k = changed; k < inserted; k++) {
+                patch.add(path.append('/').append(index++).toString(), b[j + k]);
+                path.setLength(length);
+            }
+            i += removed;
+            j += inserted;
+        }
+    }
+
+    /**
+     * Returns the shortest sequence of {@link #KEEP}, {@link #REMOVE} and
+     * {@link #INSERT} steps which turns {@code a} into {@code b}, or null if
+     * it has more than {@link #MAX_ARRAY_EDITS} removals and insertions.
+     * Takes O((n + m) d) time and O(d * d) space for d edits.
+     */
+    private static byte[] editScript(JsonElement[] a, JsonElement[] b, int[] hashA, int[] hashB) {
+        int n = a.length;
+        int m = b.length;
+        int limit = Math.min(n + m, MAX_ARRAY_EDITS);
+        // v[offset + k] is the furthest x reached on diagonal k = x - y
+        int offset = limit + 1;
+        int[] v = new int[2 * limit + 3];
+        int[][] trace = new int[limit + 1][];
+        int edits = -1;
+        for (int d = 0; d <= limit && edits < 0; d++) {
+            trace[d] = Arrays.copyOfRange(v, offset - d - 1, offset + d + 2);
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+                        ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && hashA[x] == hashB[y] && a[x].equals(b[y])) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    edits = d;
+                    break;
+                }
+            }
+        }
+        if (edits < 0) {
+            return null;
+        }
+        byte[] script = new byte[n + m - (n + m - edits) / 2];
+        int p = script.length;
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            int[] previous = trace[d];
+            int k = x - y;
+            boolean down = k == -d || (k != d && previous[k - 1 + d + 1] < previous[k + 1 + d + 1]);
+            int previousK = down ? k + 1 : k - 1;
+            int previousX = previous[previousK + d + 1];
+            int previousY = previousX - previousK;
+            int startX = down ? previousX : previousX + 1;
+            while (x > startX) {
+                script[--p] = KEEP;
+                x--;
+                y--;
+            }
+            script[--p] = down ? INSERT : REMOVE;
+            x = previousX;
+            y = previousY;
+        }
+        while (p > 0) {
+            script[--p] = KEEP;
+        }
+        return script;
+    }
+
+    private void diffByIndex(JsonArray source, JsonArray target, int head, int n, int m) {
+        int length = path.length();
+        for (int k = 0; k < Math.min(n, m); k++) {
+            path.append('/').append(head + k);
+            diffValues(source.opt(head + k), target.opt(head + k));
+            path.setLength(length);
+        }
+        for (int k = m; k < n; k++) {
+            patch.remove(path.append('/').append(head + m).toString());
+            path.setLength(length);
+        }
+        for (int k = n; k < m; k++) {
+            patch.add(path.append('/').append(head + k).toString(), target.opt(head + k));
+            path.setLength(length);
+        }
+    }
+}
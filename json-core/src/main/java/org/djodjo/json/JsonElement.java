@@ -1,18 +1,28 @@
 package org.djodjo.json;
 
 import org.djodjo.json.exception.JsonException;
+import org.djodjo.json.util.Util;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public abstract class JsonElement{
 
+    private final JsonType type;
+
+    JsonElement(JsonType type) {
+        this.type = type;
+    }
+
     public static JsonElement readFrom( JsonReader reader ) throws JsonException, IOException {
         return Adapter.fromJson(reader);
     }
@@ -26,28 +36,37 @@ public abstract class JsonElement{
 
     }
 
-    public boolean isNull() {
-        return false;
+    /**
+     * Returns the type of this element. It is kept in a field, so switching
+     * on it is cheaper than a chain of the {@code isXxx()} methods at call
+     * sites which see all kinds of elements.
+     */
+    public final JsonType type() {
+        return type;
+    }
+
+    public final boolean isNull() {
+        return type == JsonType.NULL;
     }
 
-    public boolean isBoolean() {
-        return false;
+    public final boolean isBoolean() {
+        return type == JsonType.BOOLEAN;
     }
 
-    public boolean isNumber() {
-        return false;
+    public final boolean isNumber() {
+        return type == JsonType.NUMBER;
     }
 
-    public boolean isString() {
-        return false;
+    public final boolean isString() {
+        return type == JsonType.STRING;
     }
 
-    public boolean isJsonObject() {
-        return false;
+    public final boolean isJsonObject() {
+        return type == JsonType.OBJECT;
     }
 
-    public boolean isJsonArray() {
-        return false;
+    public final boolean isJsonArray() {
+        return type == JsonType.ARRAY;
     }
 
     public boolean asBoolean() {
@@ -86,17 +105,139 @@ public abstract class JsonElement{
         write( new JsonWriter( writer ) );
     }
 
+    /**
+     * Writes this element as compact UTF-8 to {@code out}. If this is a large array
+     * or object its elements are serialized in parallel on {@code executor}
+     * and written in their original order.
+     */
+    public void writeTo( OutputStream out, Executor executor ) throws IOException {
+        new ParallelWriter( executor, ParallelWriter.DEFAULT_CHUNK_SIZE, ParallelWriter.DEFAULT_WINDOW ).write( this, out );
+    }
+
+    /**
+     * Writes this element as compact UTF-8 to {@code out}. If this is an array
+     * or object with more than {@code chunkSize} elements they are serialized in
+     * ranges of {@code chunkSize} on {@code executor} and written in their
+     * original order. At most {@code window} serialized ranges are held in memory
+     * at a time.
+     */
+    public void writeTo( OutputStream out, Executor executor, int chunkSize, int window ) throws IOException {
+        new ParallelWriter( executor, chunkSize, window ).write( this, out );
+    }
+
+    /**
+     * Returns the number of chars of the compact serialized form of this element.
+     */
+    public int serializedLength() {
+        CountingWriter counter = new CountingWriter();
+        try {
+            JsonWriter jsonWriter = new JsonWriter( counter );
+            jsonWriter.setLenient( true );
+            write( jsonWriter );
+        } catch( IOException exception ) {
+            // CountingWriter does not throw IOExceptions
+            throw new RuntimeException( exception );
+        }
+        return counter.count;
+    }
+
+    /**
+     * Returns {@link #serializedLength()} if it is cached or cheap to get, or
+     * -1 if it would take a walk over this element.
+     */
+    int knownSerializedLength() {
+        return -1;
+    }
+
     @Override
     public String toString() {
-        StringWriter stringWriter = new StringWriter();
-        JsonWriter jsonWriter = new JsonWriter( stringWriter );
+        return serialize().toString();
+    }
+
+    /**
+     * Returns the compact serialized form of this element encoded in UTF-8.
+     */
+    public byte[] toByteArray() {
+        SizedWriter sizedWriter = serialize();
+        return Util.toUtf8( sizedWriter.buf, sizedWriter.count );
+    }
+
+    /**
+     * Writes the compact form of this element, in a buffer of the exact size
+     * if it is known up front.
+     */
+    private SizedWriter serialize() {
+        int length = knownSerializedLength();
+        SizedWriter sizedWriter = new SizedWriter( length >= 0 ? length : 16 );
+        JsonWriter jsonWriter = new JsonWriter( sizedWriter );
+        jsonWriter.setLenient( true );
         try {
             write( jsonWriter );
         } catch( IOException exception ) {
-            // StringWriter does not throw IOExceptions
+            // SizedWriter does not throw IOExceptions
             throw new RuntimeException( exception );
         }
-        return stringWriter.toString();
+        return sizedWriter;
+    }
+
+    /**
+     * Makes this element and everything it contains immutable, see
+     * {@link JsonObject#deepFreeze()}. Elements other than objects and arrays
+     * are immutable already.
+     *
+     * @return this element.
+     */
+    public JsonElement deepFreeze() {
+        return this;
+    }
+
+    /**
+     * Makes this element and everything it contains immutable like
+     * {@link #deepFreeze()} and, if {@code compact} is true, trims the objects
+     * and arrays being frozen to their exact size first.
+     *
+     * @return this element.
+     * @see JsonObject#deepFreeze(boolean)
+     */
+    public JsonElement deepFreeze(boolean compact) {
+        return this;
+    }
+
+    /**
+     * Spreads the bits of a hash code, see the MurmurHash3 finalizer.
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Returns a mutable deep copy of this element. Leaves are immutable and
+     * returned as they are.
+     */
+    JsonElement thaw() {
+        return this;
+    }
+
+    /**
+     * Returns a mutable copy of this element which shares deep frozen
+     * containers instead of copying them, see {@link JsonObject#copyOnWrite()}.
+     */
+    JsonElement thawShared() {
+        return this;
+    }
+
+    /**
+     * Returns this element if it is deep frozen, or else a deep frozen copy
+     * which shares the deep frozen containers in it. This element is left as
+     * it is either way.
+     */
+    JsonElement frozen() {
+        return this;
     }
 
     @Override
@@ -132,7 +273,7 @@ public abstract class JsonElement{
             return new JsonObject((Map) o);
         }
         if (o instanceof Boolean) {
-            return new JsonBoolean((Boolean)o);
+            return JsonBoolean.valueOf((Boolean)o);
         }
         if (o instanceof Number) {
             return new JsonNumber((Number) o);
@@ -154,6 +295,87 @@ public abstract class JsonElement{
 
     public abstract String getJsonType();
 
+/**
+ * Counts the chars written to it without keeping them.
+ */
+private static final class CountingWriter extends Writer {
+    int count;
+
+    @Override
+    public void write(int c) {
+        count++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        count += len;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
+
+/**
+ * Writes into a char array allocated up front with the expected size.
+ */
+private static final class SizedWriter extends Writer {
+    char[] buf;
+    int count;
+
+    SizedWriter(int size) {
+        buf = new char[size];
+    }
+
+    private void ensure(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        ensure(1);
+        buf[count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensure(len);
+        System.arraycopy(cbuf, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ensure(len);
+        str.getChars(off, off + len, buf, count);
+        count += len;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count);
+    }
+}
+
 private static class Adapter {
     static public void write(JsonWriter out, JsonElement value) throws IOException {
         //TODO should this actually happen??
@@ -180,17 +402,28 @@ private static class Adapter {
             case STRING:
                 return new JsonString(in.nextString());
             case NUMBER:
-                return new JsonNumber(in.nextString());
+                return JsonNumber.parse(in.nextString());
             case BOOLEAN:
-                return new JsonBoolean(in.nextBoolean());
+                return JsonBoolean.valueOf(in.nextBoolean());
             case NULL:
                 in.nextNull();
-                return new JsonNull();
+                return JsonNull.INSTANCE;
             case BEGIN_ARRAY:
-                JsonArray array = new JsonArray();
                 in.beginArray();
+                JsonToken first = in.peek();
+                String firstNumber = first == JsonToken.NUMBER ? in.nextString() : null;
+                // arrays starting with a number or boolean are speculatively kept
+                // in a primitive array, see PrimitiveList
+                JsonArray array = new JsonArray(PrimitiveList.speculate(first, firstNumber));
+                if (firstNumber != null) {
+                    array.addNumber(firstNumber);
+                }
                 while (in.hasNext()) {
-                    array.put(read(in));
+                    if (in.peek() == JsonToken.NUMBER) {
+                        array.addNumber(in.nextString());
+                    } else {
+                        array.put(read(in));
+                    }
                 }
                 in.endArray();
                 return array;
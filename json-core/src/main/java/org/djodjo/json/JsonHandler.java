@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.io.IOException;
+
+/**
+ * Receives the tokens of a document as {@link JsonReader#parse} reads them,
+ * for consumers which only need to look at the values once, such as counting
+ * or summing them, and so need no tree. See {@link JsonHandlers} for handlers
+ * which combine others.
+ *
+ * <p>The {@link CharSequence CharSequences} passed are only valid during the
+ * call and may be reused for the next token; call {@code toString()} on those
+ * which need to be kept.
+ */
+public interface JsonHandler {
+
+    void startObject() throws IOException;
+
+    /**
+     * Receives the name of the next value in the current object.
+     */
+    void name(CharSequence name) throws IOException;
+
+    void endObject() throws IOException;
+
+    void startArray() throws IOException;
+
+    void endArray() throws IOException;
+
+    void stringValue(CharSequence value) throws IOException;
+
+    /**
+     * Receives an integer which fits in a {@code long}.
+     */
+    void numberValue(long value) throws IOException;
+
+    /**
+     * Receives any other number, with its text for those which need more
+     * precision than a {@code double} has.
+     */
+    void numberValue(double value, CharSequence raw) throws IOException;
+
+    void booleanValue(boolean value) throws IOException;
+
+    void nullValue() throws IOException;
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Handlers which combine other {@link JsonHandler JsonHandlers}, so that one
+ * pass over a document can feed several consumers or only the parts they
+ * are interested in.
+ */
+public final class JsonHandlers {
+
+    private JsonHandlers() {
+    }
+
+    /**
+     * Returns a handler which passes every token to each of {@code handlers},
+     * in order.
+     */
+    public static JsonHandler tee(JsonHandler... handlers) {
+        for (JsonHandler handler : handlers) {
+            if (handler == null) {
+                throw new NullPointerException("handler == null");
+            }
+        }
+        return new Tee(handlers.clone());
+    }
+
+    /**
+     * Returns a handler which passes to {@code handler} only the values at
+     * {@code path}, each one a complete value, one after the other. The path
+     * is a {@link JsonPointer} in which a {@code *} segment stands for any
+     * member of an object or element of an array, as in
+     * {@code /users/*}{@code /address}.
+     *
+     * @throws JsonException if {@code path} is not a valid pointer.
+     */
+    public static JsonHandler filter(String path, JsonHandler handler) throws JsonException {
+        if (handler == null) {
+            throw new NullPointerException("handler == null");
+        }
+        return new Filter(JsonPointer.compile(path), handler);
+    }
+
+    /**
+     * Returns a handler which writes the tokens it receives to {@code writer},
+     * for example to re-encode a filtered document, or to build a tree of it
+     * with a {@link JsonTreeWriter}. Numbers other than {@code long}s are
+     * written as their original text.
+     */
+    public static JsonHandler writeTo(JsonWriter writer) {
+        if (writer == null) {
+            throw new NullPointerException("writer == null");
+        }
+        return new WriteTo(writer);
+    }
+
+    private static final class Tee implements JsonHandler {
+        private final JsonHandler[] handlers;
+
+        Tee(JsonHandler[] handlers) {
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void startObject() throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.startObject();
+            }
+        }
+
+        @Override
+        public void name(CharSequence name) throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.name(name);
+            }
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.endObject();
+            }
+        }
+
+        @Override
+        public void startArray() throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.startArray();
+            }
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.endArray();
+            }
+        }
+
+        @Override
+        public void stringValue(CharSequence value) throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.stringValue(value);
+            }
+        }
+
+        @Override
+        public void numberValue(long value) throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.numberValue(value);
+            }
+        }
+
+        @Override
+        public void numberValue(double value, CharSequence raw) throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.numberValue(value, raw);
+            }
+        }
+
+        @Override
+        public void booleanValue(boolean value) throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.booleanValue(value);
+            }
+        }
+
+        @Override
+        public void nullValue() throws IOException {
+            for (JsonHandler handler : handlers) {
+                handler.nullValue();
+            }
+        }
+    }
+
+    /**
+     * Keeps, for each open container, whether the path down to its current
+     * member or element matches the pattern so far.
+     */
+    private static final class Filter implements JsonHandler {
+        private static final String ANY = "*";
+
+        private final String[] segments;
+        /** The segments as array indexes, negative for those which are not. */
+        private final int[] indexes;
+        private final JsonHandler target;
+
+        private boolean[] isArray = new boolean[16];
+        private int[] nextIndex = new int[16];
+        private boolean[] matches = new boolean[16];
+        private int depth;
+        /** The depth of the value being passed on, or -1. */
+        private int passing = -1;
+
+        Filter(JsonPointer path, JsonHandler target) {
+            this.target = target;
+            this.segments = new String[path.depth()];
+            this.indexes = new int[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = path.token(i);
+                indexes[i] = path.index(i);
+            }
+        }
+
+        /**
+         * Returns true if the value which starts now is to be passed on,
+         * either as or in a value at the path.
+         */
+        private boolean beginValue() {
+            if (passing >= 0) {
+                return true;
+            }
+            if (depth == 0) {
+                return segments.length == 0;
+            }
+            int level = depth - 1;
+            if (isArray[level]) {
+                int index = nextIndex[level]++;
+                matches[level] = prefixMatches(level) && level < segments.length
+                        && (segments[level].equals(ANY) || indexes[level] == index);
+            }
+            return matches[level] && depth == segments.length;
+        }
+
+        private boolean prefixMatches(int level) {
+            return level == 0 || matches[level - 1];
+        }
+
+        private void push(boolean array) {
+            if (depth == isArray.length) {
+                isArray = Arrays.copyOf(isArray, depth * 2);
+                nextIndex = Arrays.copyOf(nextIndex, depth * 2);
+                matches = Arrays.copyOf(matches, depth * 2);
+            }
+            isArray[depth] = array;
+            nextIndex[depth] = 0;
+            matches[depth] = false;
+            depth++;
+        }
+
+        private boolean pop() {
+            depth--;
+            if (passing < 0) {
+                return false;
+            }
+            if (passing == depth) {
+                passing = -1;
+            }
+            return true;
+        }
+
+        @Override
+        public void startObject() throws IOException {
+            if (beginValue()) {
+                if (passing < 0) {
+                    passing = depth;
+                }
+                target.startObject();
+            }
+            push(false);
+        }
+
+        @Override
+        public void name(CharSequence name) throws IOException {
+            if (passing >= 0) {
+                target.name(name);
+                return;
+            }
+            int level = depth - 1;
+            matches[level] = prefixMatches(level) && level < segments.length
+                    && (segments[level].equals(ANY) || CharTable.contentEquals(segments[level], name));
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            if (pop()) {
+                target.endObject();
+            }
+        }
+
+        @Override
+        public void startArray() throws IOException {
+            if (beginValue()) {
+                if (passing < 0) {
+                    passing = depth;
+                }
+                target.startArray();
+            }
+            push(true);
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            if (pop()) {
+                target.endArray();
+            }
+        }
+
+        @Override
+        public void stringValue(CharSequence value) throws IOException {
+            if (beginValue()) {
+                target.stringValue(value);
+            }
+        }
+
+        @Override
+        public void numberValue(long value) throws IOException {
+            if (beginValue()) {
+                target.numberValue(value);
+            }
+        }
+
+        @Override
+        public void numberValue(double value, CharSequence raw) throws IOException {
+            if (beginValue()) {
+                target.numberValue(value, raw);
+            }
+        }
+
+        @Override
+        public void booleanValue(boolean value) throws IOException {
+            if (beginValue()) {
+                target.booleanValue(value);
+            }
+        }
+
+        @Override
+        public void nullValue() throws IOException {
+            if (beginValue()) {
+                target.nullValue();
+            }
+        }
+    }
+
+    private static final class WriteTo implements JsonHandler {
+        private final JsonWriter writer;
+
+        WriteTo(JsonWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void startObject() throws IOException {
+            writer.beginObject();
+        }
+
+        @Override
+        public void name(CharSequence name) throws IOException {
+            writer.name(name.toString());
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            writer.endObject();
+        }
+
+        @Override
+        public void startArray() throws IOException {
+            writer.beginArray();
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            writer.endArray();
+        }
+
+        @Override
+        public void stringValue(CharSequence value) throws IOException {
+            writer.value(value.toString());
+        }
+
+        @Override
+        public void numberValue(long value) throws IOException {
+            writer.value(value);
+        }
+
+        @Override
+        public void numberValue(double value, CharSequence raw) throws IOException {
+            writer.jsonValue(raw.toString());
+        }
+
+        @Override
+        public void booleanValue(boolean value) throws IOException {
+            writer.value(value);
+        }
+
+        @Override
+        public void nullValue() throws IOException {
+            writer.nullValue();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares identical subtrees between documents. {@link #intern} deep freezes a
+ * tree and replaces every string, number, boolean, null, object and array in it
+ * which is identical to one interned before by that earlier instance, so that
+ * many documents with the same addresses, attributes or enum-like values keep
+ * only one copy of them.
+ *
+ * <p>Elements are identical if they serialize the same: unlike
+ * {@link JsonElement#equals}, 1 and 1.0 are different, and so are objects
+ * with the same members in a different order. Trees are interned bottom up, so
+ * an object or array is compared by the identity of its already interned
+ * children and each node is visited once.
+ *
+ * <p>Canonical instances are held weakly and vanish once no interned tree
+ * refers to them. An interner may be used from any number of threads.
+ */
+public final class JsonInterner {
+
+    private final ConcurrentHashMap<Entry, Entry> table = new ConcurrentHashMap<Entry, Entry>();
+    private final ReferenceQueue<JsonElement> queue = new ReferenceQueue<JsonElement>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Deep freezes {@code element} and returns its canonical version: either an
+     * identical tree interned before, or {@code element} itself with its
+     * subtrees replaced by their canonical instances. Objects and arrays whose
+     * children were replaced are copied, so use the returned tree and drop the
+     * one passed in.
+     *
+     * @return the canonical tree, or null if {@code element} is null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends JsonElement> T intern(T element) {
+        if (element == null) {
+            return null;
+        }
+        element.deepFreeze();
+        expunge();
+        return (T) canonical(element);
+    }
+
+    /**
+     * Returns the number of canonical instances currently held.
+     */
+    public int size() {
+        expunge();
+        return table.size();
+    }
+
+    /**
+     * Returns how many elements were replaced by a canonical instance so far.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns an estimate of the heap freed by replacing elements with their
+     * canonical instances so far, assuming a 64 bit VM with compressed
+     * references. Only the replaced nodes themselves are counted, their
+     * children are counted when they are replaced in turn.
+     */
+    public long bytesSaved() {
+        return bytesSaved.get();
+    }
+
+    JsonElement canonical(JsonElement element) {
+        if (element == null) {
+            return null;
+        }
+        JsonElement candidate = element;
+        if (element instanceof JsonObject) {
+            candidate = ((JsonObject) element).internValues(this);
+        } else if (element instanceof JsonArray) {
+            candidate = ((JsonArray) element).internElements(this);
+        }
+        Entry entry = new Entry(candidate, queue);
+        for (;;) {
+            Entry existing = table.putIfAbsent(entry, entry);
+            if (existing == null) {
+                return candidate;
+            }
+            JsonElement found = existing.get();
+            if (found != null) {
+                hits.incrementAndGet();
+                bytesSaved.addAndGet(shallowSize(element));
+                return found;
+            }
+            // collected after it was matched, drop it and retry
+            table.remove(existing, existing);
+        }
+    }
+
+    private void expunge() {
+        Reference<? extends JsonElement> ref;
+        while ((ref = queue.poll()) != null) {
+            table.remove(ref, ref);
+        }
+    }
+
+    private static int hash(JsonElement element) {
+        int h;
+        if (element instanceof JsonObject) {
+            h = ((JsonObject) element).identityHash();
+        } else if (element instanceof JsonArray) {
+            h = ((JsonArray) element).identityHash();
+        } else if (element instanceof JsonNumber) {
+            h = element.toString().hashCode();
+        } else {
+            h = element.hashCode();
+        }
+        return JsonElement.mix(31 * element.getClass().hashCode() + h);
+    }
+
+    private static boolean identical(JsonElement a, JsonElement b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass()) {
+            return false;
+        }
+        if (a instanceof JsonObject) {
+            return ((JsonObject) a).sameValues((JsonObject) b);
+        }
+        if (a instanceof JsonArray) {
+            return ((JsonArray) a).sameElements((JsonArray) b);
+        }
+        if (a instanceof JsonNumber) {
+            return a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Estimates the heap taken by {@code element} without its children.
+     */
+    private static long shallowSize(JsonElement element) {
+        if (element instanceof JsonString) {
+            return 16 + stringSize(element.asString().length());
+        }
+        if (element instanceof JsonNumber) {
+            return 24 + stringSize(element.toString().length());
+        }
+        if (element instanceof JsonObject) {
+            // object, map and value array; keys are usually shared with other objects
+            return 32 + 40 + align(16 + 4L * element.asJsonObject().length());
+        }
+        if (element instanceof JsonArray) {
+            JsonArray array = (JsonArray) element;
+            PrimitiveList primitives = array.primitives();
+            long slot = primitives instanceof PrimitiveList.OfBoolean ? 1 : primitives != null ? 8 : 4;
+            return 32 + 24 + align(16 + slot * array.size());
+        }
+        return 16;
+    }
+
+    private static long stringSize(int length) {
+        return 24 + align(16 + 2L * length);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * A weak reference to a canonical element, equal to the entries of
+     * identical elements while both are reachable.
+     */
+    private static final class Entry extends WeakReference<JsonElement> {
+        private final int hash;
+
+        Entry(JsonElement element, ReferenceQueue<JsonElement> queue) {
+            super(element, queue);
+            this.hash = hash(element);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Entry) || ((Entry) o).hash != hash) {
+                return false;
+            }
+            JsonElement element = get();
+            return element != null && identical(element, ((Entry) o).get());
+        }
+    }
+}
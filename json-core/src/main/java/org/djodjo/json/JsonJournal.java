@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Records the changes made to a document. Once {@link #attach attached} to a
+ * root object or array, every {@code put}, {@code remove}, {@code set},
+ * {@code add} and {@code clear} on it or on any object or array in it is
+ * recorded with its path, and {@link #drain} returns the changes since the
+ * last call as a {@link JsonPatch}, ready to be sent to whoever holds the
+ * previous version.
+ *
+ * <p>The journal also keeps the encoded form of the subtrees which did not
+ * change: {@link #toJson()} encodes only the objects and arrays on the paths
+ * of changes and copies the rest from the previous call.
+ *
+ * <p>While attached, the collection views and iterators of the objects and
+ * arrays in the document are read only, so that no change goes unrecorded.
+ * An object or array must not appear more than once in the document. Deep
+ * frozen subtrees cannot change and are not tracked. Like the containers
+ * themselves, a journal is not thread safe.
+ */
+public final class JsonJournal {
+
+    /**
+     * Subtrees which encode to at most this many chars have their encoded
+     * form kept; larger ones are put together from their children each time.
+     */
+    static final int MAX_CACHED_LENGTH = 16 * 1024;
+
+    private final JsonElement root;
+    private JsonPatch changes = new JsonPatch();
+    private boolean attached = true;
+
+    private JsonJournal(JsonElement root) {
+        this.root = root;
+    }
+
+    /**
+     * Starts recording the changes to {@code root}.
+     *
+     * @throws JsonException if {@code root} is not a mutable object or array,
+     *     or is recorded by another journal already.
+     */
+    public static JsonJournal attach(JsonElement root) throws JsonException {
+        if (root == null) {
+            throw new NullPointerException("root == null");
+        }
+        if (!isTracked(root)) {
+            throw new JsonException("Only objects and arrays which are not deep frozen can be journaled");
+        }
+        if (nodeOf(root) != null) {
+            throw new JsonException("The document is journaled already");
+        }
+        JsonJournal journal = new JsonJournal(root);
+        journal.track(root, null, null);
+        return journal;
+    }
+
+    public JsonElement getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of changes recorded since the last {@link #drain}.
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Returns the changes recorded since the last call, or since the journal
+     * was attached, and starts a new patch.
+     */
+    public JsonPatch drain() {
+        JsonPatch result = changes;
+        changes = new JsonPatch();
+        return result;
+    }
+
+    /**
+     * Stops recording and drops the recorded changes and encoded subtrees.
+     */
+    public void detach() {
+        if (attached) {
+            untrack(root);
+            attached = false;
+            changes = new JsonPatch();
+        }
+    }
+
+    /**
+     * Returns the encoded document, like {@code getRoot().toString()}, reusing
+     * the encoded form of the subtrees which did not change since the last call.
+     */
+    public String toJson() {
+        if (!attached) {
+            return root.toString();
+        }
+        try {
+            return encode(root);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private String encode(JsonElement container) throws IOException {
+        Node node = nodeOf(container);
+        if (node != null && node.encoded != null) {
+            return node.encoded;
+        }
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        if (container.type() == JsonType.OBJECT) {
+            JsonObject object = (JsonObject) container;
+            writer.beginObject();
+            for (int i = 0, n = object.length(); i < n; i++) {
+                writer.name(object.keyAt(i));
+                encodeChild(writer, object.valueAt(i));
+            }
+            writer.endObject();
+        } else {
+            JsonArray array = (JsonArray) container;
+            writer.beginArray();
+            for (int i = 0, n = array.size(); i < n; i++) {
+                encodeChild(writer, array.opt(i));
+            }
+            writer.endArray();
+        }
+        String encoded = out.toString();
+        if (node != null && encoded.length() <= MAX_CACHED_LENGTH) {
+            node.encoded = encoded;
+            // the children are only encoded again once this one changes
+            forgetEncodedChildren(container);
+        }
+        return encoded;
+    }
+
+    private void encodeChild(JsonWriter writer, JsonElement child) throws IOException {
+        if (isTracked(child)) {
+            writer.jsonValue(encode(child));
+        } else {
+            child.write(writer);
+        }
+    }
+
+    private static void forgetEncodedChildren(JsonElement container) {
+        if (container.type() == JsonType.OBJECT) {
+            JsonObject object = (JsonObject) container;
+            for (int i = 0, n = object.length(); i < n; i++) {
+                Node child = nodeOf(object.valueAt(i));
+                if (child != null) {
+                    child.encoded = null;
+                }
+            }
+        } else {
+            JsonArray array = (JsonArray) container;
+            for (int i = 0, n = array.size(); i < n; i++) {
+                Node child = nodeOf(array.opt(i));
+                if (child != null) {
+                    child.encoded = null;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------- tracking
+
+    private static boolean isTracked(JsonElement element) {
+        switch (element.type()) {
+            case OBJECT:
+                return !((JsonObject) element).isDeepFrozen();
+            case ARRAY:
+                return !((JsonArray) element).isDeepFrozen();
+            default:
+                return false;
+        }
+    }
+
+    static Node nodeOf(JsonElement element) {
+        if (element == null) {
+            return null;
+        }
+        switch (element.type()) {
+            case OBJECT:
+                return ((JsonObject) element).journalNode;
+            case ARRAY:
+                return ((JsonArray) element).journalNode;
+            default:
+                return null;
+        }
+    }
+
+    private static void setNode(JsonElement container, Node node) {
+        if (container.type() == JsonType.OBJECT) {
+            ((JsonObject) container).journalNode = node;
+        } else {
+            ((JsonArray) container).journalNode = node;
+        }
+    }
+
+    /**
+     * Tracks {@code element} and the objects and arrays in it, if it is an
+     * object or array itself. Children which are still shared copy on write
+     * are tracked once they are copied, see {@link Node#unshared}.
+     */
+    private void track(JsonElement element, Node parent, String name) {
+        if (element == null || !isTracked(element)) {
+            return;
+        }
+        Node node = new Node(this, element, parent, name);
+        setNode(element, node);
+        if (element.type() == JsonType.OBJECT) {
+            JsonObject object = (JsonObject) element;
+            for (int i = 0, n = object.length(); i < n; i++) {
+                track(object.rawValueAt(i), node, object.keyAt(i));
+            }
+        } else {
+            JsonArray array = (JsonArray) element;
+            for (int i = 0, n = array.size(); i < n; i++) {
+                track(array.rawAt(i), node, null);
+            }
+        }
+    }
+
+    private void untrack(JsonElement element) {
+        Node node = nodeOf(element);
+        if (node == null || node.journal != this) {
+            return;
+        }
+        setNode(element, null);
+        if (element.type() == JsonType.OBJECT) {
+            JsonObject object = (JsonObject) element;
+            for (int i = 0, n = object.length(); i < n; i++) {
+                untrack(object.rawValueAt(i));
+            }
+        } else {
+            JsonArray array = (JsonArray) element;
+            for (int i = 0, n = array.size(); i < n; i++) {
+                untrack(array.rawAt(i));
+            }
+        }
+    }
+
+    /**
+     * The journal state of an object or array: where it is in the document
+     * and its encoded form, if it is kept.
+     */
+    static final class Node {
+        final JsonJournal journal;
+        final JsonElement container;
+        final Node parent;
+        /** The name in the parent object, or null in a parent array. */
+        final String name;
+        /** Where this was last found in the parent array. */
+        private int index;
+        String encoded;
+
+        Node(JsonJournal journal, JsonElement container, Node parent, String name) {
+            this.journal = journal;
+            this.container = container;
+            this.parent = parent;
+            this.name = name;
+        }
+
+        /** Records that {@code name} was mapped to {@code value}, replacing {@code old}. */
+        void put(String name, JsonElement old, JsonElement value) {
+            journal.untrack(old);
+            journal.track(value, this, name);
+            String path = path(name);
+            if (path == null) {
+                return;
+            }
+            if (old == null) {
+                journal.changes.add(path, value);
+            } else {
+                journal.changes.replace(path, value);
+            }
+        }
+
+        /** Records that the mapping for {@code name} was removed. */
+        void removed(String name, JsonElement old) {
+            journal.untrack(old);
+            String path = path(name);
+            if (path != null) {
+                journal.changes.remove(path);
+            }
+        }
+
+        /** Records that {@code value} was inserted at {@code index}. */
+        void added(int index, JsonElement value) {
+            journal.track(value, this, null);
+            String path = path(Integer.toString(index));
+            if (path != null) {
+                journal.changes.add(path, value);
+            }
+        }
+
+        /** Records that the element at {@code index} was replaced by {@code value}. */
+        void set(int index, JsonElement old, JsonElement value) {
+            journal.untrack(old);
+            journal.track(value, this, null);
+            String path = path(Integer.toString(index));
+            if (path != null) {
+                journal.changes.replace(path, value);
+            }
+        }
+
+        /** Records that the element {@code old} at {@code index} was removed. */
+        void removed(int index, JsonElement old) {
+            journal.untrack(old);
+            String path = path(Integer.toString(index));
+            if (path != null) {
+                journal.changes.remove(path);
+            }
+        }
+
+        /**
+         * Records a change which is not worth describing in detail, such as a
+         * bulk removal, as a replacement of the whole container.
+         */
+        void rewritten() {
+            String path = path(null);
+            journal.untrack(container);
+            journal.track(container, parent, name);
+            if (path != null) {
+                journal.changes.replace(path, container);
+            }
+        }
+
+        /**
+         * Tracks a copy on write child which was just copied; its content is
+         * the same, so there is nothing to record.
+         */
+        void unshared(String name, JsonElement copy) {
+            journal.track(copy, this, name);
+        }
+
+        /**
+         * Forgets the encoded form of this container and its ancestors and
+         * returns the pointer to {@code child} in this container, or to this
+         * container if {@code child} is null. Returns null if this container
+         * is no longer in the document.
+         */
+        private String path(String child) {
+            StringBuilder path = new StringBuilder();
+            if (!appendPath(path)) {
+                return null;
+            }
+            for (Node node = this; node != null; node = node.parent) {
+                node.encoded = null;
+            }
+            if (child != null) {
+                path.append('/').append(JsonPointer.escape(child));
+            }
+            return path.toString();
+        }
+
+        private boolean appendPath(StringBuilder path) {
+            if (parent == null) {
+                return journal.attached && journal.root == container;
+            }
+            if (!parent.appendPath(path)) {
+                return false;
+            }
+            path.append('/');
+            if (name != null) {
+                if (((JsonObject) parent.container).rawValue(name) != container) {
+                    return false;
+                }
+                path.append(JsonPointer.escape(name));
+            } else {
+                int i = ((JsonArray) parent.container).identityIndexOf(container, index);
+                if (i < 0) {
+                    return false;
+                }
+                index = i;
+                path.append(i);
+            }
+            return true;
+        }
+    }
+}
@@ -19,10 +19,12 @@ package org.djodjo.json;
 import java.io.IOException;
 
 public final class JsonNull extends JsonElement {
-    
-    @Override
-    public boolean isNull() {
-        return true;
+
+    /** A shared instance; all nulls are equal and immutable. */
+    public static final JsonNull INSTANCE = new JsonNull();
+
+    public JsonNull() {
+        super(JsonType.NULL);
     }
 
    @Override
@@ -35,6 +37,11 @@ public final class JsonNull extends JsonElement {
         return o==null || o instanceof JsonNull;
     }
 
+    @Override
+    public int serializedLength() {
+        return 4;
+    }
+
     @Override
     public void write( JsonWriter writer ) throws IOException {
         writer.nullValue();
@@ -19,16 +19,58 @@ package org.djodjo.json;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.NumberFormat;
-import java.text.ParseException;
 
 public class JsonNumber extends JsonElement {
 
     private final String value;
 
+    /** Integers in this range are shared, see {@link #valueOf(long)}. */
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+
     private Number numValue = null;
 
+    /**
+     * Returns a number for {@code value}. Small values are shared instances.
+     */
+    public static JsonNumber valueOf(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return SmallIntegers.CACHE[(int) value - CACHE_LOW];
+        }
+        return new JsonNumber(value);
+    }
+
+    /**
+     * Returns a number for the number token {@code text}, a shared instance if
+     * it is a small integer written as {@link Long#toString(long)} would.
+     */
+    static JsonNumber parse(String text) {
+        int length = text.length();
+        if (length > 0 && length <= 4) {
+            boolean negative = text.charAt(0) == '-';
+            int start = negative ? 1 : 0;
+            if (start < length && (text.charAt(start) != '0' || (length == 1))) {
+                int value = 0;
+                for (int i = start; i < length; i++) {
+                    char c = text.charAt(i);
+                    if (c < '0' || c > '9') {
+                        return new JsonNumber(text);
+                    }
+                    value = value * 10 + (c - '0');
+                }
+                if (negative) {
+                    value = -value;
+                }
+                if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+                    return SmallIntegers.CACHE[value - CACHE_LOW];
+                }
+            }
+        }
+        return new JsonNumber(text);
+    }
+
    public JsonNumber( String string ) {
+        super(JsonType.NUMBER);
         if( string == null ) {
             throw new NullPointerException("value is null" );
         }
@@ -36,6 +78,7 @@ public class JsonNumber extends JsonElement {
     }
 
     public JsonNumber( Number value ) {
+        super(JsonType.NUMBER);
         if( value == null ) {
             throw new NullPointerException( "value is null" );
         }
@@ -56,21 +99,80 @@ public class JsonNumber extends JsonElement {
         return value;
     }
 
-    @Override
-    public boolean isNumber() {
-        return true;
+    private static final class SmallIntegers {
+        static final JsonNumber[] CACHE = new JsonNumber[CACHE_HIGH - CACHE_LOW + 1];
+
+        static {
+            for (int i = 0; i < CACHE.length; i++) {
+                CACHE[i] = new JsonNumber(Long.valueOf(i + CACHE_LOW));
+            }
+        }
     }
 
 
-    private Number asNumber(){
+    Number asNumber(){
         if(numValue==null) {
+            numValue = parseNumber(value);
+        }
+        return numValue;
+    }
+
+    /**
+     * Parses number text the way {@link PrimitiveList} does, whatever the
+     * default locale: integers which fit in a long, and other numbers whose
+     * value does (as {@code 1e3} or {@code 2.0}), are Longs, numbers too large
+     * for a double (as {@code 1e400}) are BigDecimals, anything else is a
+     * Double.
+     *
+     * @throws NumberFormatException if {@code text} is not a number.
+     */
+    static Number parseNumber(String text) {
+        if (isInteger(text)) {
             try {
-                numValue = NumberFormat.getNumberInstance().parse(value);
-            } catch (ParseException ex) {
-                numValue = new BigDecimal(value);
+                long value = Long.parseLong(text);
+                // -0 is a double
+                if (value != 0 || text.charAt(0) != '-') {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // too large for a long
             }
         }
-        return numValue;
+        double value = Double.parseDouble(text);
+        if (Double.isInfinite(value)) {
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                // a lenient Infinity literal
+            }
+        }
+        return isLong(value) ? (Number) (long) value : (Number) value;
+    }
+
+    /**
+     * Returns true if {@code text} is an optionally negative run of digits.
+     */
+    static boolean isInteger(String text) {
+        int length = text.length();
+        int i = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        if (i == length) {
+            return false;
+        }
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the number is integral and fits a long, in which case it
+     * is serialized without a fraction.
+     */
+    static boolean isLong(double d) {
+        return d == (long) d && Math.abs(d) < 0x1p63 && (d != 0 || 1 / d > 0);
     }
 
     @Override
@@ -98,19 +200,73 @@ public class JsonNumber extends JsonElement {
         return asNumber().doubleValue();
     }
 
+    /**
+     * Returns the value of the text as a double, without boxing it. Equality
+     * and hashing go through here, so they do not depend on whether
+     * {@link #asNumber()} has cached a value yet.
+     */
+    double doubleValue() {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return asNumber().doubleValue();
+        }
+    }
+
+    /**
+     * Returns the hash of a number by its value, so that for example 1, 1.0
+     * and 1e0 hash alike.
+     */
+    static int hash(double value) {
+        if (value == 0) {
+            // -0.0 == 0.0
+            return 0;
+        }
+        long bits = Double.doubleToLongBits(value);
+        return mix((int) (bits ^ (bits >>> 32)));
+    }
+
     @Override
     public int hashCode() {
-        return value.hashCode();
+        return hash(doubleValue());
     }
 
+    /**
+     * Numbers are equal if they have the same value, regardless of how they
+     * are written.
+     */
     @Override
     public boolean equals( Object o ) {
-        return
-                (o instanceof JsonNumber && ((JsonNumber) o).value.equals(value))
-                        ||
-                        (  o !=null && asNumber().equals(o))
-                ;
+        if (o instanceof JsonNumber) {
+            return o == this || sameValue((JsonNumber) o);
+        }
+        return o != null && asNumber().equals(o);
+    }
 
+    private boolean sameValue(JsonNumber other) {
+        if (value.equals(other.value)) {
+            return true;
+        }
+        double a = doubleValue();
+        if (a != other.doubleValue()) {
+            return false;
+        }
+        // up to 15 significant digits different decimals are different doubles,
+        // unless they overflow or fall below the normal range
+        if (value.length() <= 15 && other.value.length() <= 15
+                && Math.abs(a) >= Double.MIN_NORMAL && !Double.isInfinite(a)) {
+            return true;
+        }
+        try {
+            return new BigDecimal(value).compareTo(new BigDecimal(other.value)) == 0;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public int serializedLength() {
+        return asNumber().toString().length();
     }
 
     @Override
@@ -20,7 +20,7 @@ package org.djodjo.json;
 
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.util.Freezable;
-import org.djodjo.json.util.LinkedTreeMap;
+import org.djodjo.json.util.CompactLinkedMap;
 import org.djodjo.json.util.Util;
 
 import java.io.IOException;
@@ -83,13 +83,35 @@ import java.util.*;
 public final class JsonObject extends JsonElement implements Iterable<Map.Entry<String,JsonElement>>, Freezable<JsonObject> {
 
     private volatile boolean frozen = false;
-    private final LinkedTreeMap<String, JsonElement> nameValuePairs = new LinkedTreeMap<String, JsonElement>();
+    private volatile boolean deepFrozen = false;
+
+    /**
+     * True while objects and arrays in this object may be deep frozen containers
+     * shared with another tree, see {@link #copyOnWrite()}.
+     */
+    private boolean sharesChildren = false;
+    private final CompactLinkedMap<String, JsonElement> nameValuePairs;
+
+    /** Set while the changes to this object are recorded, see {@link JsonJournal}. */
+    JsonJournal.Node journalNode;
+
+    /** Cached {@link #serializedLength()}, only kept once deep frozen; -1 if not computed. */
+    private int serializedLength = -1;
+
+    /** Cached {@link #hashCode()}, only kept once deep frozen; 0 if not computed. */
+    private int hash;
 
     /**
      * Creates a {@code JsonObject} with no name/value mappings.
      */
     public JsonObject() {
+        super(JsonType.OBJECT);
+        nameValuePairs = new CompactLinkedMap<String, JsonElement>();
+    }
 
+    private JsonObject(CompactLinkedMap<String, JsonElement> nameValuePairs) {
+        super(JsonType.OBJECT);
+        this.nameValuePairs = nameValuePairs;
     }
 
 
@@ -134,7 +156,7 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      * @return this object.
      */
     public JsonObject put(String name, boolean value) throws JsonException {
-        return put(name, new JsonBoolean(value));
+        return put(name, JsonBoolean.valueOf(value));
     }
 
     /**
@@ -166,7 +188,7 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      * @return this object.
      */
     public JsonObject put(String name, long value) throws JsonException {
-        return put(name, new JsonNumber(value));
+        return put(name, JsonNumber.valueOf(value));
     }
 
     /**
@@ -198,9 +220,12 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
     public JsonObject put(String name, JsonElement value) throws JsonException {
         checkIfFrozen();
         if (value == null) {
-            value = new JsonNull();
+            value = JsonNull.INSTANCE;
+        }
+        JsonElement old = nameValuePairs.put(checkName(name), value);
+        if (journalNode != null) {
+            journalNode.put(name, old, value);
         }
-        nameValuePairs.put(checkName(name), value);
         return this;
     }
 
@@ -238,6 +263,7 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
     // unhidden.
     public JsonObject accumulate(String name, Object value) throws JsonException {
         checkIfFrozen();
+        unshareChildren();
         Object current = nameValuePairs.get(checkName(name));
         if (current == null) {
             return put(name, value);
@@ -250,7 +276,10 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
             JsonArray array = new JsonArray();
             array.put(current);
             array.put(value);
-            nameValuePairs.put(name, array);
+            JsonElement old = nameValuePairs.put(name, array);
+            if (journalNode != null) {
+                journalNode.put(name, old, array);
+            }
         }
         return this;
     }
@@ -268,6 +297,7 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      */
     public JsonObject append(String name, Object value) throws JsonException {
         checkIfFrozen();
+        unshareChildren();
         Object current = nameValuePairs.get(checkName(name));
 
         final JsonArray array;
@@ -276,6 +306,9 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
         } else if (current == null) {
             JsonArray newArray = new JsonArray();
             nameValuePairs.put(name, newArray);
+            if (journalNode != null) {
+                journalNode.put(name, null, newArray);
+            }
             array = newArray;
         } else {
             throw new JsonException("Key " + name + " is not a JsonArray");
@@ -301,7 +334,11 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      */
     public Object remove(String name) {
         checkIfFrozen();
-        return nameValuePairs.remove(name);
+        JsonElement old = nameValuePairs.remove(name);
+        if (old != null && journalNode != null) {
+            journalNode.removed(name, old);
+        }
+        return old;
     }
 
     /**
@@ -329,9 +366,9 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
     public JsonElement get(String name) throws JsonException {
         JsonElement result = nameValuePairs.get(name);
         if (result == null) {
-            throw new JsonException("No value for " + name + ", in: " + this.toString());
+            throw JsonException.stackless("No value for ", name, ", in: ", this);
         }
-        return result;
+        return sharesChildren ? unshareChild(name, result) : result;
     }
 
     /**
@@ -339,9 +376,55 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      * exists.
      */
     public JsonElement opt(String name) {
+        JsonElement result = nameValuePairs.get(name);
+        return sharesChildren && result != null ? unshareChild(name, result) : result;
+    }
+
+    /**
+     * Returns the value mapped by {@code name}, or null if no such mapping
+     * exists. Objects with the same keys in the same order share a layout, so
+     * {@code name} remembers where it found its value and repeated lookups on
+     * such objects skip the hash search.
+     */
+    public JsonElement find(JsonWriter.SerializedName name) {
+        return find(name.key, name.getValue());
+    }
+
+    JsonElement find(CompactLinkedMap.Key key, String name) {
+        JsonElement result = nameValuePairs.get(key);
+        return sharesChildren && result != null ? unshareChild(name, result) : result;
+    }
+
+    /**
+     * Returns the value of the {@code index}th mapping in insertion order.
+     */
+    JsonElement valueAt(int index) {
+        JsonElement result = nameValuePairs.valueAt(index);
+        return sharesChildren ? unshareChild(nameValuePairs.keyAt(index), result) : result;
+    }
+
+    /**
+     * Returns the name of the {@code index}th mapping in insertion order.
+     */
+    String keyAt(int index) {
+        return nameValuePairs.keyAt(index);
+    }
+
+    /**
+     * Returns the value mapped by {@code name} as it is stored, without
+     * copying it if it is shared.
+     */
+    JsonElement rawValue(String name) {
         return nameValuePairs.get(name);
     }
 
+    /**
+     * Returns the value of the {@code index}th mapping as it is stored.
+     */
+    JsonElement rawValueAt(int index) {
+        return nameValuePairs.valueAt(index);
+    }
+
     /**
      * Returns the value mapped by {@code name} if it exists and is a boolean or
      * can be coerced to a boolean, or throws otherwise.
@@ -561,6 +644,49 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
         }
     }
 
+    /**
+     * Returns the value mapped by {@code name} as an int if it is a number, or
+     * {@code fallback} otherwise. Unlike {@link #optInt(String, Integer)} this
+     * neither boxes the result nor throws and catches internally.
+     */
+    public int getIntValue(String name, int fallback) {
+        JsonElement el = opt(name);
+        return el != null && el.isNumber() ? el.asInt() : fallback;
+    }
+
+    /**
+     * Returns the value mapped by {@code name} as a long if it is a number, or
+     * {@code fallback} otherwise.
+     *
+     * @see #getIntValue(String, int)
+     */
+    public long getLongValue(String name, long fallback) {
+        JsonElement el = opt(name);
+        return el != null && el.isNumber() ? el.asLong() : fallback;
+    }
+
+    /**
+     * Returns the value mapped by {@code name} as a double if it is a number, or
+     * {@code fallback} otherwise.
+     *
+     * @see #getIntValue(String, int)
+     */
+    public double getDoubleValue(String name, double fallback) {
+        JsonElement el = opt(name);
+        return el != null && el.isNumber() ? el.asDouble() : fallback;
+    }
+
+    /**
+     * Returns the value mapped by {@code name} if it is a boolean, or
+     * {@code fallback} otherwise.
+     *
+     * @see #getIntValue(String, int)
+     */
+    public boolean getBooleanValue(String name, boolean fallback) {
+        JsonElement el = opt(name);
+        return el != null && el.isBoolean() ? el.asBoolean() : fallback;
+    }
+
     /**
      * Returns the value mapped by {@code name} if it exists, coercing it if
      * necessary, or throws if no such mapping exists.
@@ -701,7 +827,7 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      * undefined. The order of the keys is undefined.
      */
     public Iterator<String> keys() {
-        return nameValuePairs.keySet().iterator();
+        return keySet().iterator();
     }
 
     /**
@@ -715,11 +841,17 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
      * @hide.
      */
     public Set<String> keySet() {
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableSet(nameValuePairs.keySet());
+        }
         return nameValuePairs.keySet();
     }
 
     public Collection<JsonElement> valuesSet() {
-        if(isFrozen()) Collections.unmodifiableCollection(nameValuePairs.values());
+        unshareChildren();
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableCollection(nameValuePairs.values());
+        }
         return nameValuePairs.values();
     }
     /**
@@ -733,18 +865,35 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
     }
 
     @Override
-    public void write( JsonWriter writer ) throws IOException {
-        writer.beginObject();
-        for (Map.Entry<String, JsonElement> e : nameValuePairs.entrySet()) {
-            writer.name(e.getKey());
-            e.getValue().write(writer);
+    int knownSerializedLength() {
+        // once deep frozen the length is computed only once
+        return deepFrozen ? serializedLength() : -1;
+    }
+
+    @Override
+    public int serializedLength() {
+        int length = serializedLength;
+        if (length >= 0) {
+            return length;
         }
-        writer.endObject();
+        length = nameValuePairs.isEmpty() ? 2 : nameValuePairs.size() + 1;
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            length += JsonWriter.quotedLength(nameValuePairs.keyAt(i)) + 1 + nameValuePairs.valueAt(i).serializedLength();
+        }
+        if (deepFrozen) {
+            serializedLength = length;
+        }
+        return length;
     }
 
     @Override
-    public boolean isJsonObject() {
-        return true;
+    public void write( JsonWriter writer ) throws IOException {
+        writer.beginObject();
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            writer.name(nameValuePairs.keyAt(i));
+            nameValuePairs.valueAt(i).write(writer);
+        }
+        writer.endObject();
     }
 
     @Override
@@ -752,11 +901,60 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
         return this;
     }
 
+    /**
+     * Objects are equal if they have the same names mapped to equal values,
+     * in any order. Deep frozen objects compare their cached hashes first.
+     */
     @Override
     public boolean equals( Object o ) {
-        return o instanceof JsonObject && ((JsonObject) o).nameValuePairs.equals(nameValuePairs);
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof JsonObject)) {
+            return false;
+        }
+        JsonObject other = (JsonObject) o;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        CompactLinkedMap<String, JsonElement> otherPairs = other.nameValuePairs;
+        int size = nameValuePairs.size();
+        if (size != otherPairs.size()) {
+            return false;
+        }
+        CompactLinkedMap.Shape shape = nameValuePairs.getShape();
+        boolean sameKeys = shape != null && shape == otherPairs.getShape();
+        for (int i = 0; i < size; i++) {
+            JsonElement otherValue = sameKeys
+                    ? otherPairs.valueAt(i)
+                    : otherPairs.get(nameValuePairs.keyAt(i));
+            if (otherValue == null || !nameValuePairs.valueAt(i).equals(otherValue)) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Returns a hash over the name/value pairs which does not depend on their
+     * order. It is cached once the object is deep frozen.
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+                h += mix(31 * nameValuePairs.keyAt(i).hashCode() + nameValuePairs.valueAt(i).hashCode());
+            }
+            h = mix(h);
+            if (deepFrozen) {
+                hash = h;
+            }
+        }
+        return h;
+    }
+
+
     @Override
     public String getJsonType() {
         return "object";
@@ -764,6 +962,10 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
 
     @Override
     public Iterator<Map.Entry<String, JsonElement>> iterator() {
+        unshareChildren();
+        if (frozen || journalNode != null) {
+            return Collections.unmodifiableMap(nameValuePairs).entrySet().iterator();
+        }
         return nameValuePairs.entrySet().iterator();
     }
 
@@ -791,7 +993,12 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
     }
 
     public JsonObject clear() {
+        checkIfFrozen();
+        boolean changed = !nameValuePairs.isEmpty();
         nameValuePairs.clear();
+        if (changed && journalNode != null) {
+            journalNode.rewritten();
+        }
         return this;
     }
 
@@ -807,15 +1014,251 @@ public final class JsonObject extends JsonElement implements Iterable<Map.Entry<
         return this;
     }
 
+    /**
+     * Freezes this object and, recursively, every object and array it contains.
+     * Unlike {@link #freeze()}, which leaves the children mutable, this makes
+     * the whole tree immutable: every mutator and every view of a frozen
+     * container throws {@link UnsupportedOperationException}. The serialized
+     * length, and the hash code of arrays, of a deep frozen container are
+     * computed once and cached.
+     *
+     * <p>Children are frozen before their parent and the frozen flags are
+     * volatile, so a thread which sees this object as {@link #isFrozen() frozen}
+     * also sees the complete tree. Once published, a deep frozen tree may be
+     * read from any number of threads without copying or locking.
+     *
+     * @return this object.
+     */
+    @Override
+    public JsonObject deepFreeze() {
+        return deepFreeze(false);
+    }
+
+    /**
+     * Deep freezes this object like {@link #deepFreeze()}. If {@code compact}
+     * is true, every object and array being frozen is compacted first: spare
+     * capacity is dropped and objects whose keys are no longer shared with
+     * other objects of the same layout, for example after a removal, share
+     * them again. This is meant for trees which are kept around for long,
+     * such as in caches. Containers which are deep frozen already are not
+     * compacted, as other threads may be reading them.
+     *
+     * @return this object.
+     */
+    @Override
+    public JsonObject deepFreeze(boolean compact) {
+        if (deepFrozen) {
+            return this;
+        }
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            nameValuePairs.valueAt(i).deepFreeze(compact);
+        }
+        if (compact) {
+            nameValuePairs.trimToSize();
+        }
+        // shared children are deep frozen already, and so may be handed out
+        sharesChildren = false;
+        frozen = true;
+        deepFrozen = true;
+        return this;
+    }
+
+    /**
+     * Returns a mutable deep copy of this object. Strings, numbers, booleans
+     * and nulls are immutable and shared with this object.
+     */
     @Override
     public JsonObject cloneAsThawed() {
-        try {
-            return JsonElement.readFrom(this.toString()).asJsonObject();
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new JsonException("Cannot Recreate Json Object", e);
+        JsonObject copy = new JsonObject();
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            copy.nameValuePairs.put(nameValuePairs.keyAt(i), nameValuePairs.valueAt(i).thaw());
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a mutable copy of this object which shares its
+     * {@link #deepFreeze() deep frozen} objects and arrays with this one
+     * instead of copying them. A shared child is copied, one level at a time,
+     * only once it is accessed through the copy, so that subtrees which are
+     * never touched are never copied. Copying a frozen template and changing a
+     * few values thus costs in proportion to the paths changed rather than the
+     * size of the template.
+     *
+     * <p>Children which are not deep frozen are copied right away.
+     */
+    public JsonObject copyOnWrite() {
+        JsonObject copy = new JsonObject();
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            copy.nameValuePairs.put(nameValuePairs.keyAt(i), nameValuePairs.valueAt(i).thawShared());
+        }
+        copy.sharesChildren = true;
+        return copy;
+    }
+
+    @Override
+    JsonObject thaw() {
+        return cloneAsThawed();
+    }
+
+    @Override
+    JsonElement thawShared() {
+        return deepFrozen ? this : copyOnWrite();
+    }
+
+    @Override
+    JsonObject frozen() {
+        return deepFrozen ? this : copyOnWrite().deepFreeze();
+    }
+
+    boolean isDeepFrozen() {
+        return deepFrozen;
+    }
+
+    /**
+     * Returns a new version of this object with {@code name} mapped to
+     * {@code value}, leaving this object unchanged. The new object is
+     * {@link #deepFreeze() deep frozen}; if this object or {@code value} is
+     * not, a deep frozen copy of it is used and the original stays mutable.
+     * The new object shares every value but the replaced one with this object,
+     * or with its copy. Only the value array of this object is copied, as
+     * objects with the same keys share their key layout, so updating a path
+     * costs in proportion to the size of the objects and arrays along it.
+     *
+     * <p>Versions are immutable and can be handed to concurrent readers as
+     * snapshots.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     */
+    public JsonObject with(String name, JsonElement value) throws JsonException {
+        checkName(name);
+        if (value == null) {
+            value = JsonNull.INSTANCE;
         }
+        CompactLinkedMap<String, JsonElement> copy = frozen().nameValuePairs.copy();
+        copy.put(name, value.frozen());
+        return new JsonObject(copy).markDeepFrozen();
     }
+
+    /**
+     * Returns a new version of this object without the mapping for {@code name}.
+     *
+     * @see #with(String, JsonElement)
+     */
+    public JsonObject without(String name) {
+        JsonObject base = frozen();
+        if (name == null || !base.nameValuePairs.containsKey(name)) {
+            return base;
+        }
+        CompactLinkedMap<String, JsonElement> copy = base.nameValuePairs.copy();
+        copy.remove(name);
+        return new JsonObject(copy).markDeepFrozen();
+    }
+
+    /**
+     * Returns this object, or a deep frozen copy if any of its values was
+     * replaced by its canonical instance.
+     */
+    JsonObject internValues(JsonInterner interner) {
+        CompactLinkedMap<String, JsonElement> copy = null;
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            JsonElement value = nameValuePairs.valueAt(i);
+            JsonElement canonical = interner.canonical(value);
+            if (canonical != value) {
+                if (copy == null) {
+                    copy = nameValuePairs.copy();
+                }
+                copy.setValueAt(i, canonical);
+            }
+        }
+        return copy == null ? this : new JsonObject(copy).markDeepFrozen();
+    }
+
+    /**
+     * Returns a hash of the names in order and the identities of the values.
+     */
+    int identityHash() {
+        int h = 1;
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            h = 31 * h + nameValuePairs.keyAt(i).hashCode();
+            h = 31 * h + System.identityHashCode(nameValuePairs.valueAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Returns true if {@code other} has the same names in the same order,
+     * mapped to the very same values.
+     */
+    boolean sameValues(JsonObject other) {
+        CompactLinkedMap<String, JsonElement> otherPairs = other.nameValuePairs;
+        int size = nameValuePairs.size();
+        if (size != otherPairs.size()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (nameValuePairs.valueAt(i) != otherPairs.valueAt(i)
+                    || !nameValuePairs.keyAt(i).equals(otherPairs.keyAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JsonObject markDeepFrozen() {
+        frozen = true;
+        deepFrozen = true;
+        return this;
+    }
+
+    /**
+     * Replaces the shared child {@code value} mapped by {@code name} with a
+     * copy on write copy before it is handed out.
+     */
+    private JsonElement unshareChild(String name, JsonElement value) {
+        if (value.isJsonObject() || value.isJsonArray()) {
+            JsonElement copy = unshare(value);
+            if (copy != value) {
+                nameValuePairs.put(name, copy);
+                if (journalNode != null) {
+                    journalNode.unshared(name, copy);
+                }
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Replaces all shared deep frozen children with copy on write copies
+     * before they are handed out.
+     */
+    private void unshareChildren() {
+        if (!sharesChildren) {
+            return;
+        }
+        for (int i = 0, n = nameValuePairs.size(); i < n; i++) {
+            JsonElement value = nameValuePairs.valueAt(i);
+            if (value.isJsonObject() || value.isJsonArray()) {
+                JsonElement copy = unshare(value);
+                nameValuePairs.setValueAt(i, copy);
+                if (journalNode != null && copy != value) {
+                    journalNode.unshared(nameValuePairs.keyAt(i), copy);
+                }
+            }
+        }
+        sharesChildren = false;
+    }
+
+    static JsonElement unshare(JsonElement value) {
+        if (value.isJsonObject()) {
+            JsonObject object = value.asJsonObject();
+            return object.deepFrozen ? object.copyOnWrite() : object;
+        }
+        JsonArray array = value.asJsonArray();
+        return array.isDeepFrozen() ? array.copyOnWrite() : array;
+    }
+
     public void checkIfFrozen() {
         if (isFrozen()) {
             throw new UnsupportedOperationException(
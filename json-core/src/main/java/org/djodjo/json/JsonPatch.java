@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.util.ArrayList;
+
+/**
+ * A JSON Patch (RFC 6902): a sequence of add, remove, replace, move, copy and
+ * test operations on the values {@link JsonPointer pointers} refer to. Build
+ * one operation by operation, parse it with {@link #fromJson}, or compute it
+ * with {@link JsonDiff#diff}.
+ *
+ * <p>Pointers are compiled when an operation is added and values are kept
+ * {@link JsonElement#deepFreeze() deep frozen}, so a patch may be applied to
+ * any number of documents, from any number of threads. Applying inserts
+ * {@link JsonObject#copyOnWrite() copy on write} versions of the values, which
+ * copy nothing until they are modified.
+ */
+public final class JsonPatch {
+
+    private enum Op {
+        ADD, REMOVE, REPLACE, MOVE, COPY, TEST;
+
+        final String jsonName = name().toLowerCase();
+    }
+
+    private static final class Operation {
+        final Op op;
+        final JsonPointer path;
+        final JsonPointer from;
+        final JsonElement value;
+
+        Operation(Op op, JsonPointer path, JsonPointer from, JsonElement value) {
+            this.op = op;
+            this.path = path;
+            this.from = from;
+            this.value = value;
+        }
+    }
+
+    private final ArrayList<Operation> operations = new ArrayList<Operation>();
+
+    /**
+     * Parses a patch from its JSON form, an array of operation objects.
+     *
+     * @throws JsonException if {@code patch} is not a valid JSON Patch.
+     */
+    public static JsonPatch fromJson(JsonArray patch) throws JsonException {
+        JsonPatch result = new JsonPatch();
+        for (JsonElement element : patch) {
+            if (!element.isJsonObject()) {
+                throw new JsonException("Invalid JSON Patch operation: " + element);
+            }
+            JsonObject operation = element.asJsonObject();
+            String op = operation.getString("op");
+            String path = operation.getString("path");
+            if ("add".equals(op)) {
+                result.add(path, operation.get("value"));
+            } else if ("remove".equals(op)) {
+                result.remove(path);
+            } else if ("replace".equals(op)) {
+                result.replace(path, operation.get("value"));
+            } else if ("move".equals(op)) {
+                result.move(operation.getString("from"), path);
+            } else if ("copy".equals(op)) {
+                result.copy(operation.getString("from"), path);
+            } else if ("test".equals(op)) {
+                result.test(path, operation.get("value"));
+            } else {
+                throw new JsonException("Unknown JSON Patch operation: " + op);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds {@code value} at {@code path}, inserting it into an array or
+     * replacing an existing member of an object.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     */
+    public JsonPatch add(String path, JsonElement value) throws JsonException {
+        return append(Op.ADD, path, null, value);
+    }
+
+    /**
+     * Removes the value at {@code path}, which must exist.
+     */
+    public JsonPatch remove(String path) throws JsonException {
+        return append(Op.REMOVE, path, null, null);
+    }
+
+    /**
+     * Replaces the value at {@code path}, which must exist, with {@code value}.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     */
+    public JsonPatch replace(String path, JsonElement value) throws JsonException {
+        return append(Op.REPLACE, path, null, value);
+    }
+
+    /**
+     * Removes the value at {@code from} and adds it at {@code path}.
+     */
+    public JsonPatch move(String from, String path) throws JsonException {
+        return append(Op.MOVE, path, from, null);
+    }
+
+    /**
+     * Adds a copy of the value at {@code from} at {@code path}.
+     */
+    public JsonPatch copy(String from, String path) throws JsonException {
+        return append(Op.COPY, path, from, null);
+    }
+
+    /**
+     * Checks that the value at {@code path} equals {@code value}, failing
+     * the patch otherwise.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     */
+    public JsonPatch test(String path, JsonElement value) throws JsonException {
+        return append(Op.TEST, path, null, value);
+    }
+
+    /**
+     * Returns the number of operations in this patch.
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Applies this patch to {@code target} in place and returns the patched
+     * document, which is {@code target} itself unless an operation replaced
+     * the whole document.
+     *
+     * <p>Operations are applied one by one, so if one fails those before it
+     * stay applied; apply the patch to a copy where that matters.
+     *
+     * @throws JsonException if an operation cannot be applied or a test fails.
+     */
+    public JsonElement apply(JsonElement target) throws JsonException {
+        JsonElement document = target;
+        for (int i = 0, n = operations.size(); i < n; i++) {
+            Operation operation = operations.get(i);
+            JsonPointer path = operation.path;
+            switch (operation.op) {
+                case ADD:
+                    document = add(document, path, writable(operation.value));
+                    break;
+                case REMOVE:
+                    path.remove(document);
+                    break;
+                case REPLACE:
+                    path.get(document);
+                    if (path.isRoot()) {
+                        document = writable(operation.value);
+                    } else {
+                        path.set(document, writable(operation.value));
+                    }
+                    break;
+                case MOVE:
+                    if (!path.toString().equals(operation.from.toString())) {
+                        document = add(document, path, operation.from.remove(document));
+                    }
+                    break;
+                case COPY:
+                    document = add(document, path, writable(operation.from.get(document)));
+                    break;
+                case TEST:
+                    if (!path.get(document).equals(operation.value)) {
+                        throw new JsonException("Test failed, value at " + path + " is not " + operation.value);
+                    }
+                    break;
+                default:
+                    throw new AssertionError(operation.op);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Returns the JSON form of this patch, an array of operation objects.
+     */
+    public JsonArray toJson() {
+        JsonArray result = new JsonArray();
+        for (Operation operation : operations) {
+            JsonObject json = new JsonObject();
+            json.put("op", operation.op.jsonName);
+            if (operation.from != null) {
+                json.put("from", operation.from.toString());
+            }
+            json.put("path", operation.path.toString());
+            if (operation.value != null) {
+                json.put("value", operation.value);
+            }
+            result.put(json);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    private JsonPatch append(Op op, String path, String from, JsonElement value) throws JsonException {
+        JsonPointer fromPointer = null;
+        if (from != null) {
+            fromPointer = JsonPointer.compile(from);
+            if (op == Op.MOVE && path.startsWith(from + "/")) {
+                throw new JsonException("Cannot move " + from + " into its own child " + path);
+            }
+        }
+        if (op == Op.ADD || op == Op.REPLACE || op == Op.TEST) {
+            value = value == null ? JsonNull.INSTANCE : frozen(value);
+        }
+        operations.add(new Operation(op, JsonPointer.compile(path), fromPointer, value));
+        return this;
+    }
+
+    private static JsonElement add(JsonElement document, JsonPointer path, JsonElement value) throws JsonException {
+        if (path.isRoot()) {
+            return value;
+        }
+        path.add(document, value);
+        return document;
+    }
+
+    /**
+     * Returns {@code value} if it is deep frozen already, or a deep frozen copy.
+     */
+    private static JsonElement frozen(JsonElement value) {
+        switch (value.type()) {
+            case OBJECT:
+                return ((JsonObject) value).isDeepFrozen() ? value : ((JsonObject) value).cloneAsThawed().deepFreeze();
+            case ARRAY:
+                return ((JsonArray) value).isDeepFrozen() ? value : ((JsonArray) value).cloneAsThawed().deepFreeze();
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Returns a mutable version of {@code value} which does not share any
+     * mutable state with it.
+     */
+    private static JsonElement writable(JsonElement value) {
+        switch (value.type()) {
+            case OBJECT:
+                return ((JsonObject) value).copyOnWrite();
+            case ARRAY:
+                return ((JsonArray) value).copyOnWrite();
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,1063 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+import org.djodjo.json.util.CompactLinkedMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A JSONPath query such as {@code $.orders[?(@.total > 100)].items[*].sku},
+ * parsed once by {@link #compile} into a plan of steps and then evaluated
+ * against any number of documents.
+ *
+ * <p>Supported are the root {@code $}, child names ({@code .name},
+ * {@code ['name']}), indexes ({@code [0]}, {@code [-1]}), unions
+ * ({@code ['a','b']}, {@code [0,2]}), slices ({@code [1:5]}, {@code [::2]}),
+ * wildcards ({@code .*}, {@code [*]}), recursive descent ({@code ..name},
+ * {@code ..*}) and filters ({@code [?(...)]}). Filters compare the values of
+ * {@code @} or {@code $} relative paths and literals with {@code ==, !=, <,
+ * <=, >, >=}, match strings with {@code =~ /regex/}, test for existence with a
+ * bare path, and combine those with {@code &&, ||, !} and parentheses.
+ *
+ * <p>Literals are converted and regular expressions compiled when the query
+ * is compiled, and the terms of {@code &&} and {@code ||} are reordered so
+ * that the cheaper ones are evaluated first and decide the result whenever
+ * they can. Values of different types never compare as equal or ordered, and
+ * a missing value compares as different from any value.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+public final class JsonPath {
+
+    /** Arrays with fewer selected elements are never split between tasks. */
+    static final int PARALLEL_THRESHOLD = 8192;
+    private static final int MIN_CHUNK = 1024;
+
+    private final String path;
+    private final Step[] steps;
+
+    private JsonPath(String path, Step[] steps) {
+        this.path = path;
+        this.steps = steps;
+    }
+
+    /**
+     * Parses {@code path}, which must start with {@code $}.
+     *
+     * @throws JsonException if {@code path} is not a valid query.
+     */
+    public static JsonPath compile(String path) throws JsonException {
+        if (path == null) {
+            throw new NullPointerException("path == null");
+        }
+        return new JsonPath(path, new Parser(path).parsePath());
+    }
+
+    /**
+     * Returns the values this query selects in {@code root}, in document order.
+     */
+    public List<JsonElement> read(JsonElement root) {
+        ArrayList<JsonElement> result = new ArrayList<JsonElement>();
+        if (root != null) {
+            new Evaluation(root, false).select(root, 0, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values this query selects in {@code root}, in document order,
+     * evaluating wildcards, slices and filters over large arrays in parallel
+     * on {@code pool}. The tree must not be modified during the evaluation;
+     * deep frozen trees are safe to query from any number of threads.
+     */
+    public List<JsonElement> read(final JsonElement root, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("pool == null");
+        }
+        if (root == null) {
+            return new ArrayList<JsonElement>();
+        }
+        return pool.invoke(new RecursiveTask<List<JsonElement>>() {
+            @Override
+            protected List<JsonElement> compute() {
+                ArrayList<JsonElement> result = new ArrayList<JsonElement>();
+                new Evaluation(root, true).select(root, 0, result);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Returns the query this was compiled from.
+     */
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    /**
+     * The state of one evaluation of the plan against a document.
+     */
+    private final class Evaluation {
+        final JsonElement root;
+        final boolean parallel;
+
+        Evaluation(JsonElement root, boolean parallel) {
+            this.root = root;
+            this.parallel = parallel;
+        }
+
+        /**
+         * Applies the steps from {@code step} on to {@code node}.
+         */
+        void select(JsonElement node, int step, List<JsonElement> out) {
+            if (step == steps.length) {
+                out.add(node);
+            } else {
+                steps[step].select(this, node, step + 1, out);
+            }
+        }
+
+        /**
+         * Applies the steps from {@code step} on to every {@code stride}th
+         * element of {@code array} in [from, to) which passes {@code filter}.
+         */
+        void each(JsonArray array, int from, int to, int stride, Filter filter,
+                  int step, List<JsonElement> out) {
+            int count = (to - from + stride - 1) / stride;
+            if (parallel && count >= PARALLEL_THRESHOLD && ForkJoinTask.inForkJoinPool()) {
+                int chunk = Math.max(MIN_CHUNK, count / (ForkJoinTask.getPool().getParallelism() * 4));
+                ArrayList<Chunk> chunks = new ArrayList<Chunk>(count / chunk + 1);
+                for (int k = 0; k < count; k += chunk) {
+                    int end = Math.min(count, k + chunk);
+                    chunks.add(new Chunk(this, array, from + k * stride, from + end * stride, stride, filter, step));
+                }
+                ForkJoinTask.invokeAll(chunks);
+                for (Chunk task : chunks) {
+                    out.addAll(task.join());
+                }
+                return;
+            }
+            for (int i = from; i < to; i += stride) {
+                JsonElement element = array.opt(i);
+                if (filter == null || filter.test(element, root)) {
+                    select(element, step, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * A contiguous range of array elements evaluated by one task.
+     */
+    private static final class Chunk extends RecursiveTask<List<JsonElement>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Evaluation evaluation;
+        private final JsonArray array;
+        private final int from;
+        private final int to;
+        private final int stride;
+        private final Filter filter;
+        private final int step;
+
+        Chunk(Evaluation evaluation, JsonArray array, int from, int to, int stride, Filter filter, int step) {
+            this.evaluation = evaluation;
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.stride = stride;
+            this.filter = filter;
+            this.step = step;
+        }
+
+        @Override
+        protected List<JsonElement> compute() {
+            ArrayList<JsonElement> result = new ArrayList<JsonElement>();
+            for (int i = from; i < to; i += stride) {
+                JsonElement element = array.opt(i);
+                if (filter == null || filter.test(element, evaluation.root)) {
+                    evaluation.select(element, step, result);
+                }
+            }
+            return result;
+        }
+    }
+
+    // ------------------------------------------------------------------ steps
+
+    private abstract static class Step {
+        /**
+         * Passes the values this step selects in {@code node} on to
+         * {@code evaluation} to apply the steps from {@code next} on.
+         */
+        abstract void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out);
+    }
+
+    private static final class NameStep extends Step {
+        private final String name;
+        private final CompactLinkedMap.Key key;
+
+        NameStep(String name) {
+            this.name = name;
+            this.key = new CompactLinkedMap.Key(name);
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            if (node.type() == JsonType.OBJECT) {
+                JsonElement value = ((JsonObject) node).find(key, name);
+                if (value != null) {
+                    evaluation.select(value, next, out);
+                }
+            }
+        }
+    }
+
+    private static final class IndexStep extends Step {
+        private final int index;
+
+        IndexStep(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            if (node.type() == JsonType.ARRAY) {
+                JsonArray array = (JsonArray) node;
+                JsonElement value = array.opt(index < 0 ? array.size() + index : index);
+                if (value != null) {
+                    evaluation.select(value, next, out);
+                }
+            }
+        }
+    }
+
+    private static final class SliceStep extends Step {
+        private final Integer start;
+        private final Integer end;
+        private final int stride;
+
+        SliceStep(Integer start, Integer end, int stride) {
+            this.start = start;
+            this.end = end;
+            this.stride = stride;
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            if (node.type() == JsonType.ARRAY) {
+                JsonArray array = (JsonArray) node;
+                int size = array.size();
+                int from = start == null ? 0 : bound(start, size);
+                int to = end == null ? size : bound(end, size);
+                if (from < to) {
+                    evaluation.each(array, from, to, stride, null, next, out);
+                }
+            }
+        }
+
+        private static int bound(int index, int size) {
+            return index < 0 ? Math.max(0, size + index) : Math.min(size, index);
+        }
+    }
+
+    private static final class WildcardStep extends Step {
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            switch (node.type()) {
+                case OBJECT:
+                    JsonObject object = (JsonObject) node;
+                    for (int i = 0, n = object.length(); i < n; i++) {
+                        evaluation.select(object.valueAt(i), next, out);
+                    }
+                    break;
+                case ARRAY:
+                    JsonArray array = (JsonArray) node;
+                    evaluation.each(array, 0, array.size(), 1, null, next, out);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static final class FilterStep extends Step {
+        private final Filter filter;
+
+        FilterStep(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            switch (node.type()) {
+                case OBJECT:
+                    JsonObject object = (JsonObject) node;
+                    for (int i = 0, n = object.length(); i < n; i++) {
+                        JsonElement value = object.valueAt(i);
+                        if (filter.test(value, evaluation.root)) {
+                            evaluation.select(value, next, out);
+                        }
+                    }
+                    break;
+                case ARRAY:
+                    JsonArray array = (JsonArray) node;
+                    evaluation.each(array, 0, array.size(), 1, filter, next, out);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static final class UnionStep extends Step {
+        private final Step[] parts;
+
+        UnionStep(Step[] parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            for (Step part : parts) {
+                part.select(evaluation, node, next, out);
+            }
+        }
+    }
+
+    /**
+     * Applies {@code selector} to a node and to all its descendants, parents
+     * before children.
+     */
+    private static final class DescendantStep extends Step {
+        private final Step selector;
+
+        DescendantStep(Step selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        void select(Evaluation evaluation, JsonElement node, int next, List<JsonElement> out) {
+            selector.select(evaluation, node, next, out);
+            switch (node.type()) {
+                case OBJECT:
+                    JsonObject object = (JsonObject) node;
+                    for (int i = 0, n = object.length(); i < n; i++) {
+                        descend(evaluation, object.valueAt(i), next, out);
+                    }
+                    break;
+                case ARRAY:
+                    JsonArray array = (JsonArray) node;
+                    for (int i = 0, n = array.size(); i < n; i++) {
+                        descend(evaluation, array.opt(i), next, out);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void descend(Evaluation evaluation, JsonElement child, int next, List<JsonElement> out) {
+            if (child.type() == JsonType.OBJECT || child.type() == JsonType.ARRAY) {
+                select(evaluation, child, next, out);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- filters
+
+    private static final int UNORDERED = 2;
+
+    private static final Comparator<Filter> BY_COST = new Comparator<Filter>() {
+        @Override
+        public int compare(Filter a, Filter b) {
+            return a.cost < b.cost ? -1 : a.cost == b.cost ? 0 : 1;
+        }
+    };
+
+    private abstract static class Filter {
+        /** A rough estimate of the work {@link #test} does. */
+        final int cost;
+
+        Filter(int cost) {
+            this.cost = cost;
+        }
+
+        abstract boolean test(JsonElement current, JsonElement root);
+    }
+
+    private static final class And extends Filter {
+        private final Filter[] terms;
+
+        And(Filter[] terms) {
+            super(sumCost(terms));
+            this.terms = terms;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            for (Filter term : terms) {
+                if (!term.test(current, root)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or extends Filter {
+        private final Filter[] terms;
+
+        Or(Filter[] terms) {
+            super(sumCost(terms));
+            this.terms = terms;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            for (Filter term : terms) {
+                if (term.test(current, root)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Not extends Filter {
+        private final Filter term;
+
+        Not(Filter term) {
+            super(term.cost);
+            this.term = term;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            return !term.test(current, root);
+        }
+    }
+
+    private static final class Exists extends Filter {
+        private final Operand operand;
+
+        Exists(Operand operand) {
+            super(operand.cost());
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            return operand.value(current, root) != null;
+        }
+    }
+
+    private static final class Matches extends Filter {
+        private final Operand operand;
+        private final Pattern pattern;
+
+        Matches(Operand operand, Pattern pattern) {
+            super(operand.cost() + 8);
+            this.operand = operand;
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            JsonElement value = operand.value(current, root);
+            return value != null && value.type() == JsonType.STRING
+                    && pattern.matcher(value.asString()).matches();
+        }
+    }
+
+    private enum Op {
+        EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /** Returns the operator which gives the same result with swapped operands. */
+        Op mirror() {
+            switch (this) {
+                case LT: return GT;
+                case LE: return GE;
+                case GT: return LT;
+                case GE: return LE;
+                default: return this;
+            }
+        }
+
+        boolean test(int comparison) {
+            switch (this) {
+                case EQ: return comparison == 0;
+                case NE: return comparison != 0;
+                case LT: return comparison == -1;
+                case LE: return comparison == -1 || comparison == 0;
+                case GT: return comparison == 1;
+                default: return comparison == 1 || comparison == 0;
+            }
+        }
+    }
+
+    /**
+     * Compares the values of two operands; compiled so that a literal, if
+     * any, is on the right.
+     */
+    private static final class Compare extends Filter {
+        private final Operand left;
+        private final Op op;
+        private final Operand right;
+
+        Compare(Operand left, Op op, Operand right) {
+            super(left.cost() + right.cost() + 1);
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            return op.test(compare(left.value(current, root), right.value(current, root)));
+        }
+    }
+
+    /**
+     * Compares the value of a path with a number literal without converting
+     * the literal on every test.
+     */
+    private static final class CompareNumber extends Filter {
+        private final Operand left;
+        private final Op op;
+        private final double number;
+
+        CompareNumber(Operand left, Op op, double number) {
+            super(left.cost() + 1);
+            this.left = left;
+            this.op = op;
+            this.number = number;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            JsonElement value = left.value(current, root);
+            if (value == null || value.type() != JsonType.NUMBER) {
+                return op == Op.NE;
+            }
+            return op.test(compare(((JsonNumber) value).doubleValue(), number));
+        }
+    }
+
+    /**
+     * Compares the value of a path with a string literal.
+     */
+    private static final class CompareString extends Filter {
+        private final Operand left;
+        private final Op op;
+        private final String string;
+
+        CompareString(Operand left, Op op, String string) {
+            super(left.cost() + 1);
+            this.left = left;
+            this.op = op;
+            this.string = string;
+        }
+
+        @Override
+        boolean test(JsonElement current, JsonElement root) {
+            JsonElement value = left.value(current, root);
+            if (value == null || value.type() != JsonType.STRING) {
+                return op == Op.NE;
+            }
+            return op.test(Integer.signum(value.asString().compareTo(string)));
+        }
+    }
+
+    private static int sumCost(Filter[] terms) {
+        int cost = 0;
+        for (Filter term : terms) {
+            cost += term.cost;
+        }
+        return cost;
+    }
+
+    private static int compare(double a, double b) {
+        return a < b ? -1 : a > b ? 1 : a == b ? 0 : UNORDERED;
+    }
+
+    /**
+     * Returns -1, 0 or 1 as {@code a} is less than, equal to or greater than
+     * {@code b}, or {@link #UNORDERED} if they are neither, for example if
+     * they are of different types or one is missing.
+     */
+    private static int compare(JsonElement a, JsonElement b) {
+        if (a == null || b == null || a.type() != b.type()) {
+            return UNORDERED;
+        }
+        switch (a.type()) {
+            case NUMBER:
+                return compare(((JsonNumber) a).doubleValue(), ((JsonNumber) b).doubleValue());
+            case STRING:
+                return Integer.signum(a.asString().compareTo(b.asString()));
+            default:
+                return a.equals(b) ? 0 : UNORDERED;
+        }
+    }
+
+    // --------------------------------------------------------------- operands
+
+    private abstract static class Operand {
+        abstract JsonElement value(JsonElement current, JsonElement root);
+
+        abstract int cost();
+    }
+
+    private static final class Literal extends Operand {
+        final JsonElement value;
+
+        Literal(JsonElement value) {
+            this.value = value;
+        }
+
+        @Override
+        JsonElement value(JsonElement current, JsonElement root) {
+            return value;
+        }
+
+        @Override
+        int cost() {
+            return 0;
+        }
+    }
+
+    /**
+     * A path of names and indexes from {@code @} or {@code $} to a single value.
+     */
+    private static final class PathOperand extends Operand {
+        private final boolean absolute;
+        private final String[] names;
+        private final CompactLinkedMap.Key[] keys;
+        private final int[] indexes;
+
+        PathOperand(boolean absolute, List<Object> tokens) {
+            this.absolute = absolute;
+            int n = tokens.size();
+            this.names = new String[n];
+            this.keys = new CompactLinkedMap.Key[n];
+            this.indexes = new int[n];
+            for (int i = 0; i < n; i++) {
+                Object token = tokens.get(i);
+                if (token instanceof String) {
+                    names[i] = (String) token;
+                    keys[i] = new CompactLinkedMap.Key(names[i]);
+                } else {
+                    indexes[i] = (Integer) token;
+                }
+            }
+        }
+
+        @Override
+        JsonElement value(JsonElement current, JsonElement root) {
+            JsonElement node = absolute ? root : current;
+            for (int i = 0; i < names.length && node != null; i++) {
+                if (names[i] != null) {
+                    node = node.type() == JsonType.OBJECT ? ((JsonObject) node).find(keys[i], names[i]) : null;
+                } else if (node.type() == JsonType.ARRAY) {
+                    JsonArray array = (JsonArray) node;
+                    node = array.opt(indexes[i] < 0 ? array.size() + indexes[i] : indexes[i]);
+                } else {
+                    node = null;
+                }
+            }
+            return node;
+        }
+
+        @Override
+        int cost() {
+            return 1 + names.length;
+        }
+    }
+
+    // ----------------------------------------------------------------- parser
+
+    private static final class Parser {
+        private final String path;
+        private int pos;
+
+        Parser(String path) {
+            this.path = path;
+        }
+
+        Step[] parsePath() throws JsonException {
+            skipWhitespace();
+            expect('$');
+            ArrayList<Step> steps = new ArrayList<Step>();
+            for (skipWhitespace(); pos < path.length(); skipWhitespace()) {
+                char c = path.charAt(pos);
+                if (c == '[') {
+                    steps.add(parseBracket());
+                } else if (path.startsWith("..", pos)) {
+                    pos += 2;
+                    Step selector;
+                    if (peek() == '[') {
+                        selector = parseBracket();
+                    } else if (peek() == '*') {
+                        pos++;
+                        selector = new WildcardStep();
+                    } else {
+                        selector = new NameStep(parseName());
+                    }
+                    steps.add(new DescendantStep(selector));
+                } else if (c == '.') {
+                    pos++;
+                    if (peek() == '*') {
+                        pos++;
+                        steps.add(new WildcardStep());
+                    } else {
+                        steps.add(new NameStep(parseName()));
+                    }
+                } else {
+                    throw error("expected '.' or '['");
+                }
+            }
+            return steps.toArray(new Step[steps.size()]);
+        }
+
+        private Step parseBracket() throws JsonException {
+            expect('[');
+            skipWhitespace();
+            Step step;
+            if (peek() == '*') {
+                pos++;
+                step = new WildcardStep();
+            } else if (peek() == '?') {
+                pos++;
+                skipWhitespace();
+                expect('(');
+                step = new FilterStep(parseOr());
+                skipWhitespace();
+                expect(')');
+            } else {
+                ArrayList<Step> parts = new ArrayList<Step>();
+                do {
+                    skipWhitespace();
+                    parts.add(parseSelector());
+                    skipWhitespace();
+                } while (consume(','));
+                step = parts.size() == 1 ? parts.get(0) : new UnionStep(parts.toArray(new Step[parts.size()]));
+            }
+            skipWhitespace();
+            expect(']');
+            return step;
+        }
+
+        private Step parseSelector() throws JsonException {
+            char c = peek();
+            if (c == '\'' || c == '"') {
+                return new NameStep(parseString());
+            }
+            Integer start = peek() == ':' ? null : parseInt();
+            skipWhitespace();
+            if (!consume(':')) {
+                if (start == null) {
+                    throw error("expected an index");
+                }
+                return new IndexStep(start);
+            }
+            skipWhitespace();
+            Integer end = isIntStart() ? parseInt() : null;
+            skipWhitespace();
+            int stride = 1;
+            if (consume(':')) {
+                skipWhitespace();
+                if (isIntStart()) {
+                    stride = parseInt();
+                    if (stride < 1) {
+                        throw error("slice step must be positive");
+                    }
+                }
+            }
+            return new SliceStep(start, end, stride);
+        }
+
+        private Filter parseOr() throws JsonException {
+            ArrayList<Filter> terms = new ArrayList<Filter>();
+            terms.add(parseAnd());
+            while (skipWhitespace() && consume("||")) {
+                terms.add(parseAnd());
+            }
+            if (terms.size() == 1) {
+                return terms.get(0);
+            }
+            Filter[] sorted = terms.toArray(new Filter[terms.size()]);
+            Arrays.sort(sorted, BY_COST);
+            return new Or(sorted);
+        }
+
+        private Filter parseAnd() throws JsonException {
+            ArrayList<Filter> terms = new ArrayList<Filter>();
+            terms.add(parseUnary());
+            while (skipWhitespace() && consume("&&")) {
+                terms.add(parseUnary());
+            }
+            if (terms.size() == 1) {
+                return terms.get(0);
+            }
+            Filter[] sorted = terms.toArray(new Filter[terms.size()]);
+            Arrays.sort(sorted, BY_COST);
+            return new And(sorted);
+        }
+
+        private Filter parseUnary() throws JsonException {
+            skipWhitespace();
+            if (peek() == '!' && !path.startsWith("!=", pos)) {
+                pos++;
+                return new Not(parseUnary());
+            }
+            if (consume('(')) {
+                Filter filter = parseOr();
+                skipWhitespace();
+                expect(')');
+                return filter;
+            }
+            Operand left = parseOperand();
+            skipWhitespace();
+            if (consume("=~")) {
+                skipWhitespace();
+                return new Matches(left, parseRegex());
+            }
+            Op op = parseOp();
+            if (op == null) {
+                if (left instanceof Literal) {
+                    throw error("expected a comparison");
+                }
+                return new Exists(left);
+            }
+            skipWhitespace();
+            Operand right = parseOperand();
+            if (left instanceof Literal && !(right instanceof Literal)) {
+                Operand swap = left;
+                left = right;
+                right = swap;
+                op = op.mirror();
+            }
+            if (right instanceof Literal) {
+                JsonElement literal = ((Literal) right).value;
+                if (literal.type() == JsonType.NUMBER) {
+                    return new CompareNumber(left, op, ((JsonNumber) literal).doubleValue());
+                }
+                if (literal.type() == JsonType.STRING) {
+                    return new CompareString(left, op, literal.asString());
+                }
+            }
+            return new Compare(left, op, right);
+        }
+
+        private Op parseOp() {
+            for (Op op : new Op[] {Op.EQ, Op.NE, Op.LE, Op.GE, Op.LT, Op.GT}) {
+                if (consume(op.symbol)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        private Operand parseOperand() throws JsonException {
+            char c = peek();
+            if (c == '@' || c == '$') {
+                pos++;
+                ArrayList<Object> tokens = new ArrayList<Object>();
+                for (;;) {
+                    if (peek() == '.' && !path.startsWith("..", pos)) {
+                        pos++;
+                        tokens.add(parseName());
+                    } else if (consume('[')) {
+                        skipWhitespace();
+                        tokens.add(peek() == '\'' || peek() == '"' ? parseString() : parseInt());
+                        skipWhitespace();
+                        expect(']');
+                    } else {
+                        break;
+                    }
+                }
+                return new PathOperand(c == '$', tokens);
+            }
+            if (c == '\'' || c == '"') {
+                return new Literal(new JsonString(parseString()));
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                int start = pos;
+                while (pos < path.length() && "+-.eE0123456789".indexOf(path.charAt(pos)) >= 0) {
+                    pos++;
+                }
+                String text = path.substring(start, pos);
+                try {
+                    Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    pos = start;
+                    throw error("invalid number " + text);
+                }
+                return new Literal(JsonNumber.parse(text));
+            }
+            if (consume("true")) {
+                return new Literal(JsonBoolean.TRUE);
+            }
+            if (consume("false")) {
+                return new Literal(JsonBoolean.FALSE);
+            }
+            if (consume("null")) {
+                return new Literal(JsonNull.INSTANCE);
+            }
+            throw error("expected a path or a literal");
+        }
+
+        private Pattern parseRegex() throws JsonException {
+            expect('/');
+            StringBuilder regex = new StringBuilder();
+            for (;;) {
+                if (pos >= path.length()) {
+                    throw error("unterminated regular expression");
+                }
+                char c = path.charAt(pos++);
+                if (c == '/') {
+                    break;
+                }
+                if (c == '\\' && peek() == '/') {
+                    c = path.charAt(pos++);
+                } else if (c == '\\' && pos < path.length()) {
+                    regex.append(c);
+                    c = path.charAt(pos++);
+                }
+                regex.append(c);
+            }
+            int flags = consume('i') ? Pattern.CASE_INSENSITIVE : 0;
+            try {
+                return Pattern.compile(regex.toString(), flags);
+            } catch (PatternSyntaxException e) {
+                throw error("invalid regular expression: " + e.getDescription());
+            }
+        }
+
+        private String parseName() throws JsonException {
+            int start = pos;
+            while (pos < path.length()) {
+                char c = path.charAt(pos);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$') {
+                    break;
+                }
+                pos++;
+            }
+            if (start == pos) {
+                throw error("expected a name");
+            }
+            return path.substring(start, pos);
+        }
+
+        private String parseString() throws JsonException {
+            char quote = path.charAt(pos++);
+            StringBuilder result = new StringBuilder();
+            for (;;) {
+                if (pos >= path.length()) {
+                    throw error("unterminated string");
+                }
+                char c = path.charAt(pos++);
+                if (c == quote) {
+                    return result.toString();
+                }
+                if (c == '\\') {
+                    if (pos >= path.length()) {
+                        throw error("unterminated string");
+                    }
+                    c = path.charAt(pos++);
+                }
+                result.append(c);
+            }
+        }
+
+        private int parseInt() throws JsonException {
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (pos < path.length() && path.charAt(pos) >= '0' && path.charAt(pos) <= '9') {
+                pos++;
+            }
+            try {
+                return Integer.parseInt(path.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("expected an index");
+            }
+        }
+
+        private boolean isIntStart() {
+            char c = peek();
+            return c == '-' || (c >= '0' && c <= '9');
+        }
+
+        private char peek() {
+            return pos < path.length() ? path.charAt(pos) : 0;
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean consume(String s) {
+            if (path.startsWith(s, pos)) {
+                pos += s.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws JsonException {
+            if (!consume(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        /** Always returns true, so that it can be chained with {@code &&}. */
+        private boolean skipWhitespace() {
+            while (pos < path.length() && Character.isWhitespace(path.charAt(pos))) {
+                pos++;
+            }
+            return true;
+        }
+
+        private JsonException error(String message) {
+            return new JsonException("Invalid JSONPath at " + pos + ", " + message + ": " + path);
+        }
+    }
+}
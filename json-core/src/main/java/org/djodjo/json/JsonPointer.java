@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+import org.djodjo.json.util.CompactLinkedMap;
+
+import java.util.ArrayList;
+
+/**
+ * A JSON Pointer (RFC 6901) such as {@code /a/b/3/c}, parsed once by
+ * {@link #compile} and then resolved against any number of documents.
+ * Resolving does not allocate: the reference tokens are unescaped up front,
+ * array indexes are parsed up front, and every name remembers where it was
+ * found in objects with the same keys, see {@link JsonObject#find}.
+ *
+ * <p>Instances are immutable and may be shared between threads, for example
+ * kept in constants.
+ */
+public final class JsonPointer {
+
+    /** The index of the {@code -} token, past the last element of an array. */
+    private static final int APPEND = -2;
+    private static final int NOT_AN_INDEX = -1;
+
+    private final String pointer;
+    private final String[] tokens;
+    private final CompactLinkedMap.Key[] keys;
+    private final int[] indexes;
+
+    private JsonPointer(String pointer, String[] tokens) {
+        this.pointer = pointer;
+        this.tokens = tokens;
+        this.keys = new CompactLinkedMap.Key[tokens.length];
+        this.indexes = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            keys[i] = new CompactLinkedMap.Key(tokens[i]);
+            indexes[i] = parseIndex(tokens[i]);
+        }
+    }
+
+    /**
+     * Parses {@code pointer}, which is either empty, for the whole document,
+     * or a sequence of {@code /}-prefixed tokens in which {@code ~1} stands
+     * for {@code /} and {@code ~0} for {@code ~}.
+     *
+     * @throws JsonException if {@code pointer} is not a valid JSON Pointer.
+     */
+    public static JsonPointer compile(String pointer) throws JsonException {
+        if (pointer == null) {
+            throw new NullPointerException("pointer == null");
+        }
+        if (pointer.isEmpty()) {
+            return new JsonPointer(pointer, new String[0]);
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new JsonException("Invalid JSON pointer, must start with '/': " + pointer);
+        }
+        ArrayList<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 1, n = pointer.length(); i <= n; i++) {
+            char c = i < n ? pointer.charAt(i) : '/';
+            if (c == '/') {
+                tokens.add(token.toString());
+                token.setLength(0);
+            } else if (c == '~') {
+                char next = i + 1 < n ? pointer.charAt(++i) : 0;
+                if (next == '0') {
+                    token.append('~');
+                } else if (next == '1') {
+                    token.append('/');
+                } else {
+                    throw new JsonException("Invalid escape in JSON pointer: " + pointer);
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        return new JsonPointer(pointer, tokens.toArray(new String[tokens.size()]));
+    }
+
+    /**
+     * Returns {@code name} escaped as a reference token, with {@code ~}
+     * written as {@code ~0} and {@code /} as {@code ~1}.
+     */
+    public static String escape(String name) {
+        if (name.indexOf('~') < 0 && name.indexOf('/') < 0) {
+            return name;
+        }
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Returns the value this pointer refers to in {@code root}.
+     *
+     * @throws JsonException if there is no such value.
+     */
+    public JsonElement get(JsonElement root) throws JsonException {
+        JsonElement result = opt(root);
+        if (result == null) {
+            throw new JsonException("No value at " + pointer);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value this pointer refers to in {@code root}, or null if
+     * there is no such value.
+     */
+    public JsonElement opt(JsonElement root) {
+        return resolve(root, tokens.length);
+    }
+
+    /**
+     * Sets the value this pointer refers to: maps the last token to
+     * {@code value} in an object, replaces the element at the index in an
+     * array, or appends to it for the {@code -} token.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     * @return the replaced value, or null if there was none.
+     * @throws JsonException if the parent of the value does not exist, if
+     *     an array index is out of range or if this pointer refers to the root.
+     */
+    public JsonElement set(JsonElement root, JsonElement value) throws JsonException {
+        JsonElement parent = parent(root);
+        int last = tokens.length - 1;
+        if (value == null) {
+            value = JsonNull.INSTANCE;
+        }
+        if (parent.isJsonObject()) {
+            JsonObject object = (JsonObject) parent;
+            JsonElement old = object.find(keys[last], tokens[last]);
+            object.put(tokens[last], value);
+            return old;
+        }
+        JsonArray array = (JsonArray) parent;
+        int index = indexes[last];
+        if (index == APPEND) {
+            array.add(value);
+            return null;
+        }
+        return array.set(checkIndex(array, index, array.size() - 1), value);
+    }
+
+    /**
+     * Adds {@code value} where this pointer refers to, as the JSON Patch add
+     * operation does: maps the last token to it in an object, or inserts it
+     * at the index in an array, shifting the following elements.
+     *
+     * @param value a {@link JsonElement}; null stands for {@link JsonNull}.
+     * @throws JsonException if the parent of the value does not exist, if
+     *     an array index is out of range or if this pointer refers to the root.
+     */
+    public void add(JsonElement root, JsonElement value) throws JsonException {
+        JsonElement parent = parent(root);
+        int last = tokens.length - 1;
+        if (value == null) {
+            value = JsonNull.INSTANCE;
+        }
+        if (parent.isJsonObject()) {
+            ((JsonObject) parent).put(tokens[last], value);
+            return;
+        }
+        JsonArray array = (JsonArray) parent;
+        int index = indexes[last];
+        if (index == APPEND) {
+            array.add(value);
+        } else {
+            array.add(checkIndex(array, index, array.size()), value);
+        }
+    }
+
+    /**
+     * Removes the value this pointer refers to.
+     *
+     * @return the removed value.
+     * @throws JsonException if there is no such value or if this pointer
+     *     refers to the root.
+     */
+    public JsonElement remove(JsonElement root) throws JsonException {
+        JsonElement parent = parent(root);
+        int last = tokens.length - 1;
+        JsonElement removed;
+        if (parent.isJsonObject()) {
+            removed = (JsonElement) ((JsonObject) parent).remove(tokens[last]);
+        } else {
+            JsonArray array = (JsonArray) parent;
+            removed = array.remove(checkIndex(array, indexes[last], array.size() - 1));
+        }
+        if (removed == null) {
+            throw new JsonException("No value at " + pointer);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the pointer this was compiled from.
+     */
+    @Override
+    public String toString() {
+        return pointer;
+    }
+
+    boolean isRoot() {
+        return tokens.length == 0;
+    }
+
+    /**
+     * Returns the number of reference tokens.
+     */
+    int depth() {
+        return tokens.length;
+    }
+
+    /**
+     * Returns the unescaped {@code i}th reference token.
+     */
+    String token(int i) {
+        return tokens[i];
+    }
+
+    /**
+     * Returns the array index the {@code i}th token stands for, or a negative
+     * number if it is not one.
+     */
+    int index(int i) {
+        return indexes[i];
+    }
+
+    private JsonElement parent(JsonElement root) throws JsonException {
+        if (tokens.length == 0) {
+            throw new JsonException("The root cannot be set, added or removed");
+        }
+        JsonElement parent = resolve(root, tokens.length - 1);
+        if (parent == null || !(parent.isJsonObject() || parent.isJsonArray())) {
+            throw new JsonException("No object or array to hold " + pointer);
+        }
+        return parent;
+    }
+
+    private JsonElement resolve(JsonElement root, int depth) {
+        JsonElement current = root;
+        for (int i = 0; i < depth && current != null; i++) {
+            switch (current.type()) {
+                case OBJECT:
+                    current = ((JsonObject) current).find(keys[i], tokens[i]);
+                    break;
+                case ARRAY:
+                    JsonArray array = (JsonArray) current;
+                    int index = indexes[i];
+                    current = index >= 0 && index < array.size() ? array.opt(index) : null;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return current;
+    }
+
+    private int checkIndex(JsonArray array, int index, int max) throws JsonException {
+        if (index < 0 || index > max) {
+            throw new JsonException("Index in " + pointer + " out of range [0.." + array.size() + ")");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the array index {@code token} stands for, which may have no
+     * leading zeros, {@link #APPEND} for {@code -}, or {@link #NOT_AN_INDEX}.
+     */
+    private static int parseIndex(String token) {
+        int length = token.length();
+        if (length == 1 && token.charAt(0) == '-') {
+            return APPEND;
+        }
+        if (length == 0 || length > 9 || (token.charAt(0) == '0' && length > 1)) {
+            return NOT_AN_INDEX;
+        }
+        int index = 0;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_AN_INDEX;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+}
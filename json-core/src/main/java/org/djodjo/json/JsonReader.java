@@ -177,12 +177,12 @@ import java.util.List;
  * <p>Each {@code JsonReader} may be used to read a single Util stream. Instances
  * of this class are not thread safe.
  */
-public final class JsonReader implements Closeable {
+public class JsonReader implements Closeable {
 
     private static final String TRUE = "true";
     private static final String FALSE = "false";
 
-    private final StringPool stringPool = new StringPool();
+    private final StringPool stringPool;
 
     /** The input Util. */
     private final Reader in;
@@ -196,7 +196,7 @@ public final class JsonReader implements Closeable {
      * We decode literals directly out of this buffer, so it must be at least as
      * long as the longest token that can be reported as a number.
      */
-    private final char[] buffer = new char[1024];
+    private final char[] buffer;
     private int pos = 0;
     private int limit = 0;
 
@@ -242,6 +242,17 @@ public final class JsonReader implements Closeable {
     /** True if we're currently handling a skipValue() call. */
     private boolean skipping = false;
 
+    /**
+     * True while {@link #parse} is running: strings, names and literals are
+     * left in {@link #chars} instead of being made into strings.
+     */
+    private boolean events = false;
+
+    /** The text of the current string, name or literal while {@link #events}. */
+    private CharSequence chars;
+    private CharView charView;
+    private StringBuilder eventBuilder;
+
     /**
      * Creates a new instance that reads a Util-encoded stream from {@code in}.
      */
@@ -250,6 +261,18 @@ public final class JsonReader implements Closeable {
             throw new NullPointerException("in == null");
         }
         this.in = in;
+        this.stringPool = new StringPool();
+        this.buffer = new char[1024];
+    }
+
+    /**
+     * For {@link JsonTreeReader}, which overrides every public method and
+     * reads no text.
+     */
+    JsonReader() {
+        this.in = null;
+        this.stringPool = null;
+        this.buffer = null;
     }
 
     /**
@@ -553,6 +576,116 @@ public final class JsonReader implements Closeable {
         in.close();
     }
 
+    /**
+     * Reads the next value and reports its tokens to {@code handler} as they
+     * are read, without building a tree or making strings of the text. The
+     * names and strings are passed as {@link CharSequence CharSequences} which
+     * are only valid during the call; call {@code toString()} on those which
+     * need to be kept. Integers which fit in a {@code long} are passed as
+     * {@code long}s, other numbers as {@code double}s along with their text.
+     */
+    public void parse(JsonHandler handler) throws IOException {
+        if (handler == null) {
+            throw new NullPointerException("handler == null");
+        }
+        if (charView == null) {
+            charView = new CharView(buffer);
+            eventBuilder = new StringBuilder();
+        }
+        events = true;
+        try {
+            int depth = 0;
+            do {
+                switch (peek()) {
+                    case BEGIN_OBJECT:
+                        handler.startObject();
+                        depth++;
+                        break;
+                    case END_OBJECT:
+                        handler.endObject();
+                        depth--;
+                        break;
+                    case BEGIN_ARRAY:
+                        handler.startArray();
+                        depth++;
+                        break;
+                    case END_ARRAY:
+                        handler.endArray();
+                        depth--;
+                        break;
+                    case NAME:
+                        handler.name(name != null ? name : chars);
+                        break;
+                    case STRING:
+                        handler.stringValue(value != null ? value : chars);
+                        break;
+                    case NUMBER:
+                        number(handler);
+                        break;
+                    case BOOLEAN:
+                        handler.booleanValue(value == TRUE);
+                        break;
+                    case NULL:
+                        handler.nullValue();
+                        break;
+                    default:
+                        throw new IllegalStateException("Expected a value but was " + token);
+                }
+                advance();
+            } while (depth > 0);
+        } finally {
+            events = false;
+            chars = null;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Reports the number in {@code buffer[valuePos, valuePos + valueLength)}.
+     * Integers which fit in a long and decimals of up to 15 significant digits
+     * are converted in place; as both the digits and the power of ten are
+     * exact doubles then, a single division rounds correctly.
+     */
+    private void number(JsonHandler handler) throws IOException {
+        int i = valuePos;
+        int end = valuePos + valueLength;
+        boolean negative = buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        int count = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                count++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (c == '.') {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        // 19 digits are below 2^64, so digits holds them exactly, unsigned
+        if (i == end && fraction < 0 && (count <= 18
+                || count == 19 && (digits >= 0 || negative && digits == Long.MIN_VALUE))) {
+            handler.numberValue(negative ? -digits : digits);
+        } else if (i == end && count <= 15 && fraction <= 22) {
+            double result = digits / POWERS_OF_TEN[fraction];
+            handler.numberValue(negative ? -result : result, chars);
+        } else {
+            handler.numberValue(Double.parseDouble(chars.toString()), chars);
+        }
+    }
+
     /**
      * Skips the next value recursively. If it is an object or array, all nested
      * elements are skipped. This method is intended for use when the Util token
@@ -900,15 +1033,23 @@ public final class JsonReader implements Closeable {
                     if (skipping) {
                         return "skipped!";
                     } else if (builder == null) {
+                        if (events) {
+                            chars = charView.set(start, pos - start - 1);
+                            return null;
+                        }
                         return stringPool.get(buffer, start, pos - start - 1);
                     } else {
                         builder.append(buffer, start, pos - start - 1);
+                        if (events) {
+                            chars = builder;
+                            return null;
+                        }
                         return builder.toString();
                     }
 
                 } else if (c == '\\') {
                     if (builder == null) {
-                        builder = new StringBuilder();
+                        builder = newBuilder();
                     }
                     builder.append(buffer, start, pos - start - 1);
                     builder.append(readEscapeCharacter());
@@ -917,7 +1058,7 @@ public final class JsonReader implements Closeable {
             }
 
             if (builder == null) {
-                builder = new StringBuilder();
+                builder = newBuilder();
             }
             builder.append(buffer, start, pos - start);
         } while (fillBuffer(1));
@@ -925,6 +1066,14 @@ public final class JsonReader implements Closeable {
         throw syntaxError("Unterminated string");
     }
 
+    private StringBuilder newBuilder() {
+        if (!events) {
+            return new StringBuilder();
+        }
+        eventBuilder.setLength(0);
+        return eventBuilder;
+    }
+
     /**
      * Reads the value up to but not including any delimiter characters. This
      * does not consume the delimiter character.
@@ -1012,6 +1161,49 @@ public final class JsonReader implements Closeable {
         return JsonReader.class.getSimpleName() + " near " + getSnippet();
     }
 
+    /**
+     * A window on the buffer, so that the text of tokens can be passed to a
+     * {@link JsonHandler} without being copied.
+     */
+    private static final class CharView implements CharSequence {
+        private final char[] chars;
+        private int offset;
+        private int length;
+
+        CharView(char[] chars) {
+            this.chars = chars;
+        }
+
+        CharView set(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+
     /**
      * Unescapes the character identified by the character or characters that
      * immediately follow a backslash. The backslash '\' should have already
@@ -1104,7 +1296,11 @@ public final class JsonReader implements Closeable {
             value = FALSE;
             return JsonToken.BOOLEAN;
         } else {
-            value = stringPool.get(buffer, valuePos, valueLength);
+            if (events) {
+                chars = charView.set(valuePos, valueLength);
+            } else {
+                value = stringPool.get(buffer, valuePos, valueLength);
+            }
             return decodeNumber(buffer, valuePos, valueLength);
         }
     }
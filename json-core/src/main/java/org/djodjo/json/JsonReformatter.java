@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Minifies or re-indents a JSON document in a single pass without building a
+ * tree or decoding any token. String, number and literal tokens are copied
+ * verbatim, only the whitespace between tokens is changed. Pretty printed
+ * output uses the same layout as {@link JsonWriter#setIndent(String)}.
+ *
+ * <p>Tokens are checked against the grammar the way {@link JsonReader} checks
+ * them, so that malformed input fails with a {@link MalformedJsonException}
+ * instead of coming out with another meaning. Within a token only the
+ * characters are checked, not for example that a number is well formed. The
+ * lenient syntax {@link JsonReader#setLenient} accepts, such as comments,
+ * single quoted or unquoted strings and {@code ;} or {@code =>} separators,
+ * is rejected rather than rewritten.
+ */
+public final class JsonReformatter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final Writer out;
+    private final String indent;
+    private final String separator;
+
+    private final char[] inBuf = new char[BUFFER_SIZE];
+    private int inPos;
+    private int inLimit;
+
+    private final char[] outBuf = new char[BUFFER_SIZE];
+    private int outPos;
+
+    /** A newline followed by the indent repeated for as many levels as needed so far. */
+    private char[] newlineIndent;
+
+    /** The document and then every open array or object, outermost first. */
+    private JsonScope[] stack = new JsonScope[32];
+    private int stackSize = 1;
+
+    /** True after a ',' or ':', until the name or value which must follow it. */
+    private boolean separated;
+
+    private JsonReformatter(Reader in, Writer out, String indent) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        this.in = in;
+        this.out = out;
+        stack[0] = JsonScope.EMPTY_DOCUMENT;
+        if (indent == null || indent.isEmpty()) {
+            this.indent = null;
+            this.separator = ":";
+        } else {
+            this.indent = indent;
+            this.separator = ": ";
+            this.newlineIndent = newlineIndent(indent, 8);
+        }
+    }
+
+    /**
+     * Copies the document from {@code in} to {@code out} without any insignificant whitespace.
+     */
+    public static void minify(Reader in, Writer out) throws IOException {
+        new JsonReformatter(in, out, null).run();
+    }
+
+    /**
+     * Copies the document from {@code in} to {@code out} indenting every
+     * level with {@code indent}. An empty indent is the same as {@link #minify}.
+     */
+    public static void reformat(Reader in, Writer out, String indent) throws IOException {
+        new JsonReformatter(in, out, indent).run();
+    }
+
+    private void run() throws IOException {
+        int c;
+        while ((c = nextNonWhitespace()) != -1) {
+            switch (c) {
+                case '{':
+                case '[':
+                    beforeValue(c);
+                    put((char) c);
+                    push(c == '{' ? JsonScope.EMPTY_OBJECT : JsonScope.EMPTY_ARRAY);
+                    break;
+
+                case '}':
+                case ']':
+                    JsonScope empty = c == '}' ? JsonScope.EMPTY_OBJECT : JsonScope.EMPTY_ARRAY;
+                    JsonScope nonempty = c == '}' ? JsonScope.NONEMPTY_OBJECT : JsonScope.NONEMPTY_ARRAY;
+                    JsonScope top = peek();
+                    if (top != empty && (top != nonempty || separated)) {
+                        throw unexpected(c);
+                    }
+                    stackSize--;
+                    if (top == nonempty) {
+                        newline();
+                    }
+                    put((char) c);
+                    break;
+
+                case ',':
+                    top = peek();
+                    if ((top != JsonScope.NONEMPTY_ARRAY && top != JsonScope.NONEMPTY_OBJECT) || separated) {
+                        throw unexpected(c);
+                    }
+                    separated = true;
+                    put(',');
+                    newline();
+                    break;
+
+                case ':':
+                    if (peek() != JsonScope.DANGLING_NAME || separated) {
+                        throw unexpected(c);
+                    }
+                    separated = true;
+                    put(separator);
+                    break;
+
+                case '"':
+                    top = peek();
+                    if (top == JsonScope.EMPTY_OBJECT || (top == JsonScope.NONEMPTY_OBJECT && separated)) {
+                        // a name
+                        if (top == JsonScope.EMPTY_OBJECT) {
+                            newline();
+                        }
+                        separated = false;
+                        replaceTop(JsonScope.DANGLING_NAME);
+                    } else {
+                        beforeValue(c);
+                    }
+                    copyString();
+                    break;
+
+                default:
+                    String keyword = c == 't' ? "true" : c == 'f' ? "false" : c == 'n' ? "null" : null;
+                    if (keyword == null && c != '-' && (c < '0' || c > '9')) {
+                        throw unexpected(c);
+                    }
+                    beforeValue(c);
+                    put((char) c);
+                    copyLiteral(keyword);
+                    break;
+            }
+        }
+        if (stackSize > 1) {
+            throw new MalformedJsonException("Unterminated " + (peek() == JsonScope.DANGLING_NAME
+                    || peek() == JsonScope.EMPTY_OBJECT || peek() == JsonScope.NONEMPTY_OBJECT ? "object" : "array"));
+        }
+        if (peek() == JsonScope.EMPTY_DOCUMENT) {
+            throw new MalformedJsonException("Empty document");
+        }
+        out.write(outBuf, 0, outPos);
+        outPos = 0;
+        out.flush();
+    }
+
+    /**
+     * Checks that a value may start with {@code c} here and moves the current
+     * scope past it.
+     */
+    private void beforeValue(int c) throws IOException {
+        switch (peek()) {
+            case EMPTY_DOCUMENT:
+                replaceTop(JsonScope.NONEMPTY_DOCUMENT);
+                break;
+            case NONEMPTY_DOCUMENT:
+                throw new MalformedJsonException("More than one top-level value");
+            case EMPTY_ARRAY:
+                replaceTop(JsonScope.NONEMPTY_ARRAY);
+                newline();
+                break;
+            case NONEMPTY_ARRAY:
+            case DANGLING_NAME:
+                if (!separated) {
+                    throw unexpected(c);
+                }
+                separated = false;
+                replaceTop(peek() == JsonScope.DANGLING_NAME ? JsonScope.NONEMPTY_OBJECT : JsonScope.NONEMPTY_ARRAY);
+                break;
+            default:
+                // a name is expected
+                throw unexpected(c);
+        }
+    }
+
+    private static MalformedJsonException unexpected(int c) {
+        return new MalformedJsonException("Unexpected '" + (char) c + "'");
+    }
+
+    private JsonScope peek() {
+        return stack[stackSize - 1];
+    }
+
+    private void replaceTop(JsonScope scope) {
+        stack[stackSize - 1] = scope;
+    }
+
+    private void push(JsonScope scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Copies the rest of a string token, including the closing quote, in runs
+     * between escapes and buffer boundaries.
+     */
+    private void copyString() throws IOException {
+        put('"');
+        while (true) {
+            if (inPos == inLimit && !fill()) {
+                throw new MalformedJsonException("Unterminated string");
+            }
+            int start = inPos;
+            int p = start;
+            int limit = inLimit;
+            char[] buf = inBuf;
+            while (p < limit) {
+                char c = buf[p];
+                if (c == '"') {
+                    put(buf, start, p + 1 - start);
+                    inPos = p + 1;
+                    return;
+                }
+                if (c == '\\') {
+                    if (p + 1 == limit) {
+                        // the escaped char is in the next buffer
+                        put(buf, start, p + 1 - start);
+                        inPos = p + 1;
+                        if (!fill()) {
+                            throw new MalformedJsonException("Unterminated string");
+                        }
+                        put(inBuf[inPos++]);
+                        start = inPos;
+                        p = start;
+                        limit = inLimit;
+                        continue;
+                    }
+                    p += 2;
+                    continue;
+                }
+                p++;
+            }
+            put(buf, start, limit - start);
+            inPos = limit;
+        }
+    }
+
+    /**
+     * Copies the rest of a number, or of {@code keyword} whose first char was
+     * copied already.
+     */
+    private void copyLiteral(String keyword) throws IOException {
+        int matched = 1;
+        while (true) {
+            if (inPos == inLimit && !fill()) {
+                break;
+            }
+            int start = inPos;
+            int p = start;
+            while (p < inLimit) {
+                char c = inBuf[p];
+                if (isDelimiter(c)) {
+                    put(inBuf, start, p - start);
+                    inPos = p;
+                    checkComplete(keyword, matched);
+                    return;
+                }
+                if (keyword != null) {
+                    if (matched == keyword.length() || keyword.charAt(matched) != c) {
+                        throw new MalformedJsonException("Expected " + keyword);
+                    }
+                    matched++;
+                } else if (!isNumberChar(c)) {
+                    throw new MalformedJsonException("Unexpected '" + c + "' in a number");
+                }
+                p++;
+            }
+            put(inBuf, start, p - start);
+            inPos = p;
+        }
+        checkComplete(keyword, matched);
+    }
+
+    private static void checkComplete(String keyword, int matched) {
+        if (keyword != null && matched != keyword.length()) {
+            throw new MalformedJsonException("Expected " + keyword);
+        }
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-';
+    }
+
+    private static boolean isDelimiter(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+            case ',':
+            case ':':
+            case ']':
+            case '}':
+            case '[':
+            case '{':
+            case '"':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (inPos == inLimit && !fill()) {
+                return -1;
+            }
+            char c = inBuf[inPos++];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(inBuf, 0, inBuf.length);
+        if (read <= 0) {
+            inPos = 0;
+            inLimit = 0;
+            return false;
+        }
+        inPos = 0;
+        inLimit = read;
+        return true;
+    }
+
+    private void newline() throws IOException {
+        if (indent == null) {
+            return;
+        }
+        int depth = stackSize - 1;
+        int length = 1 + depth * indent.length();
+        if (length > newlineIndent.length) {
+            newlineIndent = newlineIndent(indent, depth * 2);
+        }
+        put(newlineIndent, 0, length);
+    }
+
+    private static char[] newlineIndent(String indent, int levels) {
+        char[] result = new char[1 + levels * indent.length()];
+        result[0] = '\n';
+        for (int i = 0; i < levels; i++) {
+            indent.getChars(0, indent.length(), result, 1 + i * indent.length());
+        }
+        return result;
+    }
+
+    private void put(char c) throws IOException {
+        if (outPos == outBuf.length) {
+            out.write(outBuf, 0, outPos);
+            outPos = 0;
+        }
+        outBuf[outPos++] = c;
+    }
+
+    private void put(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private void put(char[] chars, int offset, int length) throws IOException {
+        if (length > outBuf.length - outPos) {
+            out.write(outBuf, 0, outPos);
+            outPos = 0;
+            if (length > outBuf.length) {
+                out.write(chars, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(chars, offset, outBuf, outPos, length);
+        outPos += length;
+    }
+}
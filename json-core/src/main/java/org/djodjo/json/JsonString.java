@@ -25,17 +25,13 @@ public final class JsonString extends JsonElement {
     private final String value;
 
     public JsonString( String value) {
+        super(JsonType.STRING);
         if( value == null ) {
             throw new NullPointerException( "value is null" );
         }
         this.value = value;
     }
 
-    @Override
-    public boolean isString() {
-        return true;
-    }
-
     @Override
     public String toString() {
         //we dont want to return the same object
@@ -60,6 +56,11 @@ public final class JsonString extends JsonElement {
                 ;
     }
 
+    @Override
+    public int serializedLength() {
+        return JsonWriter.quotedLength(value);
+    }
+
     @Override
     public void write( JsonWriter writer ) throws IOException {
         writer.value(value);
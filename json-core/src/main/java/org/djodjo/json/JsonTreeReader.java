@@ -0,0 +1,434 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link JsonReader} which reads the tokens of a {@link JsonElement} tree
+ * instead of text, so that code written against {@code JsonReader} can read
+ * documents which are in memory already without encoding and parsing them.
+ *
+ * <p>The tree is read as it is, without copying it, and must not be modified
+ * while it is read. Any value may be at the top level, and
+ * {@link #setLenient lenient} mode makes no difference.
+ *
+ * <p>{@link #nextString()} and {@link #peekValue()} return numbers as the tree
+ * writes them, which is not always the parsed text: arrays of numbers keep
+ * their values in primitive arrays, so {@code [1.50,1e3]} reads as
+ * {@code "1.5"} and {@code "1000"} here where a {@code JsonReader} over the
+ * text returns {@code "1.50"} and {@code "1e3"}. The values are the same.
+ */
+public final class JsonTreeReader extends JsonReader {
+
+    private final JsonElement root;
+    private boolean rootConsumed;
+    private boolean closed;
+
+    /** The objects and arrays the cursor is in, outermost first. */
+    private JsonElement[] containers = new JsonElement[32];
+    /**
+     * The position of the cursor in each of {@link #containers}: the index in
+     * arrays, and twice the index in objects, plus one once the name is read.
+     */
+    private int[] positions = new int[32];
+    private int depth;
+
+    private JsonToken token;
+    private String name;
+    private JsonElement value;
+
+    public JsonTreeReader(JsonElement root) {
+        if (root == null) {
+            throw new NullPointerException("root == null");
+        }
+        this.root = root;
+    }
+
+    @Override
+    public String peekName() throws IOException {
+        peek();
+        return name;
+    }
+
+    @Override
+    public String peekValue() throws IOException {
+        switch (peek()) {
+            case STRING:
+                return value.asString();
+            case NUMBER:
+            case BOOLEAN:
+                return value.toString();
+            case NULL:
+                return "null";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        if (peek() != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (token != null) {
+            return token;
+        }
+        if (closed) {
+            throw new IllegalStateException("JsonReader is closed");
+        }
+        if (depth == 0) {
+            if (rootConsumed) {
+                return token = JsonToken.END_DOCUMENT;
+            }
+            return token = tokenOf(value = root);
+        }
+        JsonElement container = containers[depth - 1];
+        int position = positions[depth - 1];
+        if (container.type() == JsonType.OBJECT) {
+            JsonObject object = (JsonObject) container;
+            int index = position >> 1;
+            if (index >= object.length()) {
+                return token = JsonToken.END_OBJECT;
+            }
+            if ((position & 1) == 0) {
+                name = object.keyAt(index);
+                return token = JsonToken.NAME;
+            }
+            return token = tokenOf(value = object.rawValueAt(index));
+        }
+        JsonArray array = (JsonArray) container;
+        if (position >= array.size()) {
+            return token = JsonToken.END_ARRAY;
+        }
+        return token = tokenOf(value = array.rawAt(position));
+    }
+
+    private static JsonToken tokenOf(JsonElement element) {
+        if (element == null) {
+            return JsonToken.NULL;
+        }
+        switch (element.type()) {
+            case OBJECT:
+                return JsonToken.BEGIN_OBJECT;
+            case ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case STRING:
+                return JsonToken.STRING;
+            case NUMBER:
+                return JsonToken.NUMBER;
+            case BOOLEAN:
+                return JsonToken.BOOLEAN;
+            default:
+                return JsonToken.NULL;
+        }
+    }
+
+    @Override
+    public JsonToken advance() throws IOException {
+        JsonToken result = peek();
+        switch (result) {
+            case NAME:
+                positions[depth - 1]++;
+                break;
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                consumeValue();
+                push(value);
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                containers[--depth] = null;
+                break;
+            case END_DOCUMENT:
+                break;
+            default:
+                consumeValue();
+        }
+        token = null;
+        name = null;
+        value = null;
+        return result;
+    }
+
+    private void consumeValue() {
+        if (depth == 0) {
+            rootConsumed = true;
+        } else {
+            positions[depth - 1]++;
+        }
+    }
+
+    private void push(JsonElement container) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            positions = Arrays.copyOf(positions, depth * 2);
+        }
+        containers[depth] = container;
+        positions[depth] = 0;
+        depth++;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        if (peek() != JsonToken.NAME) {
+            throw new IllegalStateException("Expected a name but was " + token);
+        }
+        String result = name;
+        advance();
+        return result;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        if (peek() != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a string but was " + token);
+        }
+        String result = peekValue();
+        advance();
+        return result;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        if (peek() != JsonToken.BOOLEAN) {
+            throw new IllegalStateException("Expected a boolean but was " + token);
+        }
+        boolean result = value.asBoolean();
+        advance();
+        return result;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        if (peek() != JsonToken.NULL) {
+            throw new IllegalStateException("Expected null but was " + token);
+        }
+        advance();
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        if (peek() != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a double but was " + token);
+        }
+        double result = token == JsonToken.NUMBER
+                ? ((JsonNumber) value).doubleValue() : Double.parseDouble(value.asString());
+        advance();
+        return result;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        if (peek() != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a long but was " + token);
+        }
+        String text = peekValue();
+        long result;
+        try {
+            result = Long.parseLong(text);
+        } catch (NumberFormatException ignored) {
+            double asDouble = Double.parseDouble(text); // don't catch this NumberFormatException
+            result = (long) asDouble;
+            if ((double) result != asDouble) {
+                throw new NumberFormatException(text);
+            }
+        }
+        advance();
+        return result;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        if (peek() != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected an int but was " + token);
+        }
+        String text = peekValue();
+        int result;
+        try {
+            result = Integer.parseInt(text);
+        } catch (NumberFormatException ignored) {
+            double asDouble = Double.parseDouble(text); // don't catch this NumberFormatException
+            result = (int) asDouble;
+            if ((double) result != asDouble) {
+                throw new NumberFormatException(text);
+            }
+        }
+        advance();
+        return result;
+    }
+
+    /**
+     * Returns the next value as it is in the tree, consuming it. Unlike
+     * {@link JsonElement#readFrom(JsonReader)} this returns the objects and
+     * arrays of the tree themselves instead of copies.
+     */
+    public JsonElement nextJsonElement() throws IOException {
+        switch (peek()) {
+            case NAME:
+            case END_OBJECT:
+            case END_ARRAY:
+            case END_DOCUMENT:
+                throw new IllegalStateException("Expected a value but was " + token);
+            default:
+                JsonElement result = value == null ? JsonNull.INSTANCE : value;
+                consumeValue();
+                token = null;
+                value = null;
+                return result;
+        }
+    }
+
+    /**
+     * Reports the tokens of the next value to {@code handler}, walking the
+     * tree directly.
+     */
+    @Override
+    public void parse(JsonHandler handler) throws IOException {
+        if (handler == null) {
+            throw new NullPointerException("handler == null");
+        }
+        emit(nextJsonElement(), handler);
+    }
+
+    private static void emit(JsonElement element, JsonHandler handler) throws IOException {
+        switch (element.type()) {
+            case OBJECT:
+                JsonObject object = (JsonObject) element;
+                handler.startObject();
+                for (int i = 0, n = object.length(); i < n; i++) {
+                    handler.name(object.keyAt(i));
+                    emit(object.rawValueAt(i), handler);
+                }
+                handler.endObject();
+                break;
+            case ARRAY:
+                JsonArray array = (JsonArray) element;
+                handler.startArray();
+                for (int i = 0, n = array.size(); i < n; i++) {
+                    JsonElement e = array.rawAt(i);
+                    emit(e == null ? JsonNull.INSTANCE : e, handler);
+                }
+                handler.endArray();
+                break;
+            case STRING:
+                handler.stringValue(element.asString());
+                break;
+            case NUMBER:
+                String text = element.toString();
+                if (isLongInteger(text)) {
+                    handler.numberValue(Long.parseLong(text));
+                } else {
+                    handler.numberValue(((JsonNumber) element).doubleValue(), text);
+                }
+                break;
+            case BOOLEAN:
+                handler.booleanValue(element.asBoolean());
+                break;
+            default:
+                handler.nullValue();
+        }
+    }
+
+    /**
+     * Returns true if {@code text} is an integer which fits in a long.
+     */
+    private static boolean isLongInteger(String text) {
+        if (!JsonNumber.isInteger(text)) {
+            return false;
+        }
+        int length = text.startsWith("-") ? text.length() - 1 : text.length();
+        if (length <= 18) {
+            return true;
+        }
+        if (length > 19) {
+            return false;
+        }
+        try {
+            Long.parseLong(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        token = null;
+        name = null;
+        value = null;
+        Arrays.fill(containers, 0, depth, null);
+        depth = 0;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                // skip the whole container without walking it
+                consumeValue();
+                token = null;
+                value = null;
+                break;
+            default:
+                advance();
+        }
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        return peek();
+    }
+
+    @Override
+    public String toString() {
+        return JsonTreeReader.class.getSimpleName() + " at depth " + depth;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import org.djodjo.json.exception.JsonException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+/**
+ * A {@link JsonWriter} which builds a {@link JsonElement} tree instead of
+ * writing text, so that code written against {@code JsonWriter} can produce
+ * documents in memory without them being encoded and parsed again. Call
+ * {@link #get()} for the tree once the value is written.
+ *
+ * <p>Any value may be at the top level. Numbers must be finite, even if the
+ * writer is {@link #setLenient lenient}, as {@link JsonNumber} cannot hold
+ * anything else.
+ */
+public final class JsonTreeWriter extends JsonWriter {
+
+    /** The objects and arrays being written, outermost first. */
+    private final ArrayList<JsonElement> stack = new ArrayList<JsonElement>();
+    private String pendingName;
+    private JsonElement result;
+
+    public JsonTreeWriter() {
+    }
+
+    /**
+     * Returns the written value.
+     *
+     * @throws IllegalStateException if the value is not complete yet.
+     */
+    public JsonElement get() {
+        if (result == null || !stack.isEmpty()) {
+            throw new IllegalStateException("Incomplete document");
+        }
+        return result;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        JsonArray array = new JsonArray();
+        put(array);
+        stack.add(array);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        return close(JsonType.ARRAY);
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        JsonObject object = new JsonObject();
+        put(object);
+        stack.add(object);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        return close(JsonType.OBJECT);
+    }
+
+    private JsonWriter close(JsonType type) {
+        if (stack.isEmpty() || pendingName != null || stack.get(stack.size() - 1).type() != type) {
+            throw new IllegalStateException("Nesting problem: " + stack.size() + " open, name " + pendingName);
+        }
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (stack.isEmpty() || pendingName != null || stack.get(stack.size() - 1).type() != JsonType.OBJECT) {
+            throw new IllegalStateException("Nesting problem: name " + name + " outside of an object");
+        }
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(SerializedName name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        return name(name.getValue());
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return put(new JsonString(value));
+    }
+
+    /**
+     * Parses {@code value}, an encoded JSON value, and writes its tree.
+     */
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        JsonReader reader = new JsonReader(new StringReader(value));
+        reader.setLenient(true);
+        try {
+            return put(JsonElement.readFrom(reader));
+        } catch (JsonException e) {
+            throw new IllegalArgumentException("Invalid JSON value: " + value, e);
+        }
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        return put(JsonNull.INSTANCE);
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        return put(JsonBoolean.valueOf(value));
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        return put(new JsonNumber(value));
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        return put(JsonNumber.valueOf(value));
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        double asDouble = value.doubleValue();
+        if (Double.isNaN(asDouble) || Double.isInfinite(asDouble)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        return put(new JsonNumber(value));
+    }
+
+    /**
+     * Writes {@code value} itself, without copying it, as the next value.
+     */
+    public JsonWriter value(JsonElement value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return put(value);
+    }
+
+    private JsonWriter put(JsonElement value) {
+        if (stack.isEmpty()) {
+            if (result != null) {
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            }
+            result = value;
+        } else if (pendingName != null) {
+            ((JsonObject) stack.get(stack.size() - 1)).put(pendingName, value);
+            pendingName = null;
+        } else {
+            JsonElement top = stack.get(stack.size() - 1);
+            if (top.type() != JsonType.ARRAY) {
+                throw new IllegalStateException("Nesting problem: value without a name in an object");
+            }
+            ((JsonArray) top).put(value);
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (result == null || !stack.isEmpty()) {
+            throw new IOException("Incomplete document");
+        }
+    }
+}
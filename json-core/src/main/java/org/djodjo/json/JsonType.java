@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+/**
+ * The type of a {@link JsonElement}, see {@link JsonElement#type()}.
+ */
+public enum JsonType {
+
+    NULL("null"),
+    BOOLEAN("boolean"),
+    NUMBER("number"),
+    STRING("string"),
+    ARRAY("array"),
+    OBJECT("object");
+
+    private final String jsonName;
+
+    JsonType(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    /**
+     * Returns the name of this type as used in JSON Schema.
+     */
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Returns the type with the given JSON Schema name, or null if there is
+     * none; "integer" is not a type of its own but a kind of {@link #NUMBER}.
+     */
+    public static JsonType forJsonName(String name) {
+        for (JsonType type : values()) {
+            if (type.jsonName.equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -17,8 +17,11 @@
 
 package org.djodjo.json;
 
+import org.djodjo.json.util.CompactLinkedMap;
+
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
@@ -118,11 +121,14 @@ import java.util.List;
  * Instances of this class are not thread safe. Calls that would result in a
  * malformed JSON string will fail with an {@link IllegalStateException}.
  */
-public final class JsonWriter implements Closeable {
+public class JsonWriter implements Closeable {
 
     /** The output data, containing at most one top-level array or object. */
     private final Writer out;
 
+    /** {@link #out} if it is chunked, to be notified of completed top level elements. */
+    private final ByteBufferWriter chunked;
+
     private final List<JsonScope> stack = new ArrayList<JsonScope>();
     {
         stack.add(JsonScope.EMPTY_DOCUMENT);
@@ -134,6 +140,12 @@ public final class JsonWriter implements Closeable {
      */
     private String indent;
 
+    /**
+     * A newline followed by {@link #indent} repeated for as many levels as
+     * have been needed so far, or null for no pretty printing.
+     */
+    private char[] newlineIndent;
+
     /**
      * The name/value separator; either ":" or ": ".
      */
@@ -151,6 +163,16 @@ public final class JsonWriter implements Closeable {
             throw new NullPointerException("out == null");
         }
         this.out = out;
+        this.chunked = (out instanceof ByteBufferWriter) ? (ByteBufferWriter) out : null;
+    }
+
+    /**
+     * For {@link JsonTreeWriter}, which overrides every public method that
+     * writes and writes no text.
+     */
+    JsonWriter() {
+        this.out = null;
+        this.chunked = null;
     }
 
     /**
@@ -164,9 +186,11 @@ public final class JsonWriter implements Closeable {
     public void setIndent(String indent) {
         if (indent.isEmpty()) {
             this.indent = null;
+            this.newlineIndent = null;
             this.separator = ":";
         } else {
             this.indent = indent;
+            this.newlineIndent = newlineIndent(indent, 8);
             this.separator = ": ";
         }
     }
@@ -259,6 +283,7 @@ public final class JsonWriter implements Closeable {
             newline();
         }
         out.write(closeBracket);
+        afterValue();
         return this;
     }
 
@@ -291,6 +316,22 @@ public final class JsonWriter implements Closeable {
         return this;
     }
 
+    /**
+     * Encodes the pre-encoded property name. Unlike {@link #name(String)} the
+     * name is not escaped again, its quoted form is copied as is.
+     *
+     * @param name the name of the forthcoming value. May not be null.
+     * @return this writer.
+     */
+    public JsonWriter name(SerializedName name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        beforeName();
+        out.write(name.quoted);
+        return this;
+    }
+
     /**
      * Encodes {@code value}.
      *
@@ -303,6 +344,23 @@ public final class JsonWriter implements Closeable {
         }
         beforeValue(false);
         string(value);
+        afterValue();
+        return this;
+    }
+
+    /**
+     * Writes {@code value}, which must be an encoded JSON value, as it is.
+     *
+     * @param value the encoded value, or null to encode a null literal.
+     * @return this writer.
+     */
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue(false);
+        out.append(value);
+        afterValue();
         return this;
     }
 
@@ -314,6 +372,7 @@ public final class JsonWriter implements Closeable {
     public JsonWriter nullValue() throws IOException {
         beforeValue(false);
         out.write("null");
+        afterValue();
         return this;
     }
 
@@ -325,6 +384,7 @@ public final class JsonWriter implements Closeable {
     public JsonWriter value(boolean value) throws IOException {
         beforeValue(false);
         out.write(value ? "true" : "false");
+        afterValue();
         return this;
     }
 
@@ -341,6 +401,7 @@ public final class JsonWriter implements Closeable {
         }
         beforeValue(false);
         out.append(Double.toString(value));
+        afterValue();
         return this;
     }
 
@@ -352,6 +413,7 @@ public final class JsonWriter implements Closeable {
     public JsonWriter value(long value) throws IOException {
         beforeValue(false);
         out.write(Long.toString(value));
+        afterValue();
         return this;
     }
 
@@ -374,6 +436,7 @@ public final class JsonWriter implements Closeable {
         }
         beforeValue(false);
         out.append(string);
+        afterValue();
         return this;
     }
 
@@ -399,6 +462,10 @@ public final class JsonWriter implements Closeable {
     }
 
     private void string(String value) throws IOException {
+        string(out, value);
+    }
+
+    private static void string(Writer out, String value) throws IOException {
         out.write("\"");
         for (int i = 0, length = value.length(); i < length; i++) {
             char c = value.charAt(i);
@@ -464,9 +531,62 @@ public final class JsonWriter implements Closeable {
             return;
         }
 
-        out.write("\n");
-        for (int i = 1; i < stack.size(); i++) {
-            out.write(indent);
+        int length = 1 + (stack.size() - 1) * indent.length();
+        if (length > newlineIndent.length) {
+            newlineIndent = newlineIndent(indent, (stack.size() - 1) * 2);
+        }
+        out.write(newlineIndent, 0, length);
+    }
+
+    private static char[] newlineIndent(String indent, int levels) {
+        char[] result = new char[1 + levels * indent.length()];
+        result[0] = '\n';
+        for (int i = 0; i < levels; i++) {
+            indent.getChars(0, indent.length(), result, 1 + i * indent.length());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of chars {@code value} takes once quoted and escaped.
+     */
+    static int quotedLength(String value) {
+        int length = value.length() + 2;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '\t':
+                case '\b':
+                case '\n':
+                case '\r':
+                case '\f':
+                    length += 1;
+                    break;
+
+                case '\u2028':
+                case '\u2029':
+                    length += 5;
+                    break;
+
+                default:
+                    if (c <= 0x1F) {
+                        length += 5;
+                    }
+                    break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Lets a chunked output know that an element of the top level array or
+     * object, or the top level value itself, has been written.
+     */
+    private void afterValue() throws IOException {
+        if (chunked != null && stack.size() <= 2) {
+            chunked.onTopLevelElement();
         }
     }
 
@@ -526,4 +646,56 @@ public final class JsonWriter implements Closeable {
                 throw new IllegalStateException("Nesting problem: " + stack);
         }
     }
+
+    /**
+     * A property name which is quoted, escaped and hashed only once, so that it
+     * can be written with {@link #name(SerializedName)} and looked up with
+     * {@link JsonObject#find(SerializedName)} many times without paying for
+     * that again. Instances are immutable and can be shared between threads,
+     * typically as {@code static final} constants.
+     */
+    public static final class SerializedName {
+
+        private final String value;
+        private final char[] quoted;
+        final CompactLinkedMap.Key key;
+
+        public SerializedName(String value) {
+            if (value == null) {
+                throw new NullPointerException("value == null");
+            }
+            this.value = value;
+            StringWriter sw = new StringWriter(value.length() + 2);
+            try {
+                string(sw, value);
+            } catch (IOException exception) {
+                // StringWriter does not throw IOExceptions
+                throw new RuntimeException(exception);
+            }
+            this.quoted = sw.toString().toCharArray();
+            this.key = new CompactLinkedMap.Key(value);
+        }
+
+        /**
+         * Returns the unescaped name.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SerializedName && ((SerializedName) o).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Serializes the top level array or object of a document in parallel.
+ * The elements are split in contiguous ranges, each range is written to its own
+ * buffer by a task on the given {@link Executor} and the buffers are then copied
+ * to the output in order. At most {@code window} buffers are pending at any time
+ * which bounds the memory used for large documents.
+ *
+ * <p>Output is always compact UTF-8.
+ */
+final class ParallelWriter {
+
+    static final int DEFAULT_CHUNK_SIZE = 1024;
+    static final int DEFAULT_WINDOW = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Executor executor;
+    private final int chunkSize;
+    private final int window;
+
+    ParallelWriter(Executor executor, int chunkSize, int window) {
+        if (executor == null) {
+            throw new NullPointerException("executor == null");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive, but was " + chunkSize);
+        }
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive, but was " + window);
+        }
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.window = window;
+    }
+
+    void write(JsonElement element, OutputStream out) throws IOException {
+        if (element.isJsonArray() && element.asJsonArray().size() > chunkSize) {
+            writeArray(element.asJsonArray(), out);
+        } else if (element.isJsonObject() && element.asJsonObject().length() > chunkSize) {
+            writeObject(element.asJsonObject(), out);
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+            element.writeTo(writer);
+            writer.flush();
+        }
+    }
+
+    private void writeArray(final JsonArray array, OutputStream out) throws IOException {
+        final int size = array.size();
+        out.write('[');
+        writeChunks(size, out, new ChunkFactory() {
+            @Override
+            public Callable<byte[]> create(final int from, final int to) {
+                return new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        StringWriter sw = new StringWriter();
+                        JsonWriter writer = new JsonWriter(sw);
+                        writer.beginArray();
+                        for (int i = from; i < to; i++) {
+                            // raw, as get may unshare a copy-on-write child
+                            JsonElement element = array.rawAt(i);
+                            (element == null ? JsonNull.INSTANCE : element).write(writer);
+                        }
+                        return fragment(sw);
+                    }
+                };
+            }
+        });
+        out.write(']');
+    }
+
+    private void writeObject(JsonObject object, OutputStream out) throws IOException {
+        // read on this thread, and raw so that copy-on-write children stay shared
+        int length = object.length();
+        final String[] names = new String[length];
+        final JsonElement[] values = new JsonElement[length];
+        for (int i = 0; i < length; i++) {
+            names[i] = object.keyAt(i);
+            values[i] = object.rawValueAt(i);
+        }
+        out.write('{');
+        writeChunks(length, out, new ChunkFactory() {
+            @Override
+            public Callable<byte[]> create(final int from, final int to) {
+                return new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        StringWriter sw = new StringWriter();
+                        JsonWriter writer = new JsonWriter(sw);
+                        writer.beginObject();
+                        for (int i = from; i < to; i++) {
+                            writer.name(names[i]);
+                            values[i].write(writer);
+                        }
+                        return fragment(sw);
+                    }
+                };
+            }
+        });
+        out.write('}');
+    }
+
+    /**
+     * Returns the content written so far without the opening bracket, i.e. the
+     * comma separated elements of the range.
+     */
+    private static byte[] fragment(StringWriter sw) {
+        return sw.getBuffer().substring(1).getBytes(UTF_8);
+    }
+
+    private void writeChunks(int size, OutputStream out, ChunkFactory factory) throws IOException {
+        ArrayDeque<FutureTask<byte[]>> pending = new ArrayDeque<FutureTask<byte[]>>(window);
+        int next = 0;
+        boolean first = true;
+        try {
+            while (next < size || !pending.isEmpty()) {
+                while (next < size && pending.size() < window) {
+                    int to = Math.min(size, next + chunkSize);
+                    FutureTask<byte[]> task = new FutureTask<byte[]>(factory.create(next, to));
+                    pending.add(task);
+                    executor.execute(task);
+                    next = to;
+                }
+                byte[] chunk = await(pending.poll());
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(chunk);
+            }
+        } finally {
+            for (FutureTask<byte[]> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static byte[] await(FutureTask<byte[]> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for serialization");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private interface ChunkFactory {
+        Callable<byte[]> create(int from, int to);
+    }
+}
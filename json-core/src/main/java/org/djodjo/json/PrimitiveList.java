@@ -0,0 +1,678 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+/**
+ * The values of a {@link JsonArray} of numbers or booleans kept in a primitive
+ * array. Elements are created on access and serialize exactly like the
+ * {@link JsonNumber JsonNumbers} and {@link JsonBoolean JsonBooleans} they
+ * stand for.
+ *
+ * <p>When a value is inserted which cannot be stored without changing its
+ * serialized form the list moves its contents to a more general list, a
+ * {@code double[]} backed one for a {@code long[]} backed list if that is
+ * exact, an {@link ArrayList} otherwise, and delegates to it from then on.
+ * {@link JsonArray} switches to that list directly, see {@link #current()}.
+ */
+abstract class PrimitiveList extends AbstractList<JsonElement> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /** Largest magnitude up to which every long is exactly representable as a double. */
+    private static final long MAX_EXACT = 1L << 53;
+
+    int size;
+    int capacity;
+
+    /** The list the elements were moved to, or null. */
+    private List<JsonElement> inflated;
+
+    /**
+     * Returns a list suitable to hold an array starting with a token of type {@code first}.
+     */
+    static List<JsonElement> speculate(JsonToken first, String text) {
+        if (first == JsonToken.BOOLEAN) {
+            return new OfBoolean(DEFAULT_CAPACITY);
+        }
+        if (first == JsonToken.NUMBER) {
+            return JsonNumber.isInteger(text) ? new OfLong(DEFAULT_CAPACITY) : new OfDouble(DEFAULT_CAPACITY);
+        }
+        return new ArrayList<JsonElement>();
+    }
+
+    /**
+     * Returns the list which holds the elements: this one, or the one they were moved to.
+     */
+    List<JsonElement> current() {
+        List<JsonElement> list = this;
+        while (list instanceof PrimitiveList && ((PrimitiveList) list).inflated != null) {
+            list = ((PrimitiveList) list).inflated;
+        }
+        return list;
+    }
+
+    /**
+     * Appends the number token {@code text} as read from a {@link JsonReader}.
+     */
+    static void addNumber(List<JsonElement> list, String text) {
+        if (list instanceof PrimitiveList) {
+            PrimitiveList primitives = (PrimitiveList) list;
+            if (primitives.inflated != null) {
+                addNumber(primitives.inflated, text);
+                return;
+            }
+            primitives.ensureCapacity(primitives.size + 1);
+            if (primitives.storeNumber(primitives.size, text)) {
+                primitives.size++;
+                primitives.modCount++;
+                return;
+            }
+            primitives.inflate();
+            addNumber(primitives.inflated, text);
+            return;
+        }
+        list.add(JsonNumber.parse(text));
+    }
+
+    abstract Object array();
+
+    abstract PrimitiveList newList(int capacity);
+
+    abstract void setArray(Object array);
+
+    abstract Object newArray(int length);
+
+    abstract JsonElement element(int index);
+
+    /** Returns true if {@code element} can be stored without changing its serialized form. */
+    abstract boolean accepts(JsonElement element);
+
+    /** Stores an element for which {@link #accepts} returned true. */
+    abstract void store(int index, JsonElement element);
+
+    /** Stores the number token {@code text} if it can be stored exactly. */
+    abstract boolean storeNumber(int index, String text);
+
+    abstract void write(JsonWriter writer, int index) throws IOException;
+
+    abstract int serializedLength(int index);
+
+    abstract double doubleAt(int index);
+
+    abstract long longAt(int index);
+
+    /** Returns the value at {@code index} as {@link Number#intValue()} would. */
+    int intAt(int index) {
+        return (int) longAt(index);
+    }
+
+    /** Returns a list holding the same elements with a wider element type. */
+    List<JsonElement> widen() {
+        ArrayList<JsonElement> list = new ArrayList<JsonElement>(Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+        for (int i = 0; i < size; i++) {
+            list.add(element(i));
+        }
+        return list;
+    }
+
+    private void inflate() {
+        inflated = widen();
+        setArray(null);
+        size = 0;
+        capacity = 0;
+        modCount++;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity) {
+            int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+            Object newArray = newArray(newCapacity);
+            if (size > 0) {
+                System.arraycopy(array(), 0, newArray, 0, size);
+            }
+            setArray(newArray);
+            capacity = newCapacity;
+        }
+    }
+
+    /**
+     * Shrinks the backing array to the current size.
+     */
+    void trimToSize() {
+        if (capacity != size) {
+            Object newArray = newArray(size);
+            System.arraycopy(array(), 0, newArray, 0, size);
+            setArray(newArray);
+            capacity = size;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return inflated != null ? inflated.size() : size;
+    }
+
+    @Override
+    public JsonElement get(int index) {
+        if (inflated != null) {
+            return inflated.get(index);
+        }
+        checkIndex(index);
+        return element(index);
+    }
+
+    @Override
+    public JsonElement set(int index, JsonElement element) {
+        if (inflated == null) {
+            checkIndex(index);
+            if (accepts(element)) {
+                JsonElement old = element(index);
+                store(index, element);
+                return old;
+            }
+            inflate();
+        }
+        return inflated.set(index, element);
+    }
+
+    @Override
+    public void add(int index, JsonElement element) {
+        if (inflated == null) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (accepts(element)) {
+                ensureCapacity(size + 1);
+                Object array = array();
+                System.arraycopy(array, index, array, index + 1, size - index);
+                store(index, element);
+                size++;
+                modCount++;
+                return;
+            }
+            inflate();
+        }
+        inflated.add(index, element);
+    }
+
+    @Override
+    public JsonElement remove(int index) {
+        if (inflated != null) {
+            return inflated.remove(index);
+        }
+        checkIndex(index);
+        JsonElement old = element(index);
+        Object array = array();
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (inflated != null) {
+            inflated.clear();
+            return;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<JsonElement> iterator() {
+        return inflated != null ? inflated.iterator() : super.iterator();
+    }
+
+    @Override
+    public ListIterator<JsonElement> listIterator(int index) {
+        return inflated != null ? inflated.listIterator(index) : super.listIterator(index);
+    }
+
+    void write(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < size; i++) {
+            write(writer, i);
+        }
+        writer.endArray();
+    }
+
+    int serializedLength() {
+        int length = size == 0 ? 2 : size + 1;
+        for (int i = 0; i < size; i++) {
+            length += serializedLength(i);
+        }
+        return length;
+    }
+
+    /**
+     * Returns an independent copy of this list, which must not have been inflated.
+     */
+    PrimitiveList copy() {
+        PrimitiveList copy = newList(Math.max(size, DEFAULT_CAPACITY));
+        System.arraycopy(array(), 0, copy.array(), 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Returns the same hash as {@link JsonArray#hashCode()} computed over the elements.
+     */
+    int elementsHash() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + hash(i);
+        }
+        return h;
+    }
+
+    abstract int hash(int index);
+
+    /**
+     * Returns true if {@code other} is of the same type and holds the same values.
+     */
+    abstract boolean sameValues(PrimitiveList other);
+
+    /**
+     * Returns true if {@code other} is of the same type and serializes the same.
+     */
+    boolean sameSerializedForm(PrimitiveList other) {
+        return sameValues(other);
+    }
+
+    double[] toDoubleArray() {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = doubleAt(i);
+        }
+        return result;
+    }
+
+    long[] toLongArray() {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = longAt(i);
+        }
+        return result;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer
+                || number instanceof Short || number instanceof Byte;
+    }
+
+    static final class OfLong extends PrimitiveList {
+        private long[] values;
+
+        OfLong(int capacity) {
+            this.values = new long[capacity];
+            this.capacity = capacity;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        PrimitiveList newList(int capacity) {
+            return new OfLong(capacity);
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (long[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new long[length];
+        }
+
+        @Override
+        JsonElement element(int index) {
+            return JsonNumber.valueOf(values[index]);
+        }
+
+        @Override
+        boolean accepts(JsonElement element) {
+            return element instanceof JsonNumber && isIntegral(((JsonNumber) element).asNumber());
+        }
+
+        @Override
+        void store(int index, JsonElement element) {
+            values[index] = ((JsonNumber) element).asNumber().longValue();
+        }
+
+        @Override
+        boolean storeNumber(int index, String text) {
+            if (!JsonNumber.isInteger(text)) {
+                return false;
+            }
+            long value;
+            try {
+                value = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (value == 0 && text.charAt(0) == '-') {
+                // -0 is a double
+                return false;
+            }
+            values[index] = value;
+            return true;
+        }
+
+        @Override
+        void write(JsonWriter writer, int index) throws IOException {
+            writer.value(values[index]);
+        }
+
+        @Override
+        int serializedLength(int index) {
+            return Long.toString(values[index]).length();
+        }
+
+        @Override
+        double doubleAt(int index) {
+            return values[index];
+        }
+
+        @Override
+        long longAt(int index) {
+            return values[index];
+        }
+
+        @Override
+        int hash(int index) {
+            return JsonNumber.hash(values[index]);
+        }
+
+        @Override
+        boolean sameValues(PrimitiveList other) {
+            if (!(other instanceof OfLong) || other.size != size) {
+                return false;
+            }
+            long[] otherValues = ((OfLong) other).values;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != otherValues[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        List<JsonElement> widen() {
+            for (int i = 0; i < size; i++) {
+                if (Math.abs(values[i]) > MAX_EXACT) {
+                    return super.widen();
+                }
+            }
+            OfDouble doubles = new OfDouble(Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+            for (int i = 0; i < size; i++) {
+                doubles.values[i] = values[i];
+            }
+            doubles.size = size;
+            return doubles;
+        }
+    }
+
+    static final class OfDouble extends PrimitiveList {
+        private double[] values;
+
+        OfDouble(int capacity) {
+            this.values = new double[capacity];
+            this.capacity = capacity;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        PrimitiveList newList(int capacity) {
+            return new OfDouble(capacity);
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (double[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new double[length];
+        }
+
+        @Override
+        JsonElement element(int index) {
+            double value = values[index];
+            return JsonNumber.isLong(value) ? JsonNumber.valueOf((long) value) : new JsonNumber(value);
+        }
+
+        @Override
+        boolean accepts(JsonElement element) {
+            if (!(element instanceof JsonNumber)) {
+                return false;
+            }
+            Number number = ((JsonNumber) element).asNumber();
+            if (isIntegral(number)) {
+                return Math.abs(number.longValue()) <= MAX_EXACT;
+            }
+            // an integral Double keeps its fraction when serialized
+            return number instanceof Double && !JsonNumber.isLong(number.doubleValue());
+        }
+
+        @Override
+        void store(int index, JsonElement element) {
+            values[index] = ((JsonNumber) element).asNumber().doubleValue();
+        }
+
+        @Override
+        boolean storeNumber(int index, String text) {
+            if (JsonNumber.isInteger(text) && text.length() > 15) {
+                try {
+                    if (Math.abs(Long.parseLong(text)) > MAX_EXACT) {
+                        return false;
+                    }
+                } catch (NumberFormatException e) {
+                    // too large for a long, serialized as a double anyway
+                }
+            }
+            double value;
+            try {
+                value = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (Double.isInfinite(value) || Double.isNaN(value)) {
+                return false;
+            }
+            values[index] = value;
+            return true;
+        }
+
+        @Override
+        void write(JsonWriter writer, int index) throws IOException {
+            double value = values[index];
+            if (JsonNumber.isLong(value)) {
+                writer.value((long) value);
+            } else {
+                writer.value(value);
+            }
+        }
+
+        @Override
+        int serializedLength(int index) {
+            double value = values[index];
+            return JsonNumber.isLong(value) ? Long.toString((long) value).length() : Double.toString(value).length();
+        }
+
+        @Override
+        double doubleAt(int index) {
+            return values[index];
+        }
+
+        @Override
+        long longAt(int index) {
+            return (long) values[index];
+        }
+
+        @Override
+        int intAt(int index) {
+            return (int) values[index];
+        }
+
+        @Override
+        int hash(int index) {
+            return JsonNumber.hash(values[index]);
+        }
+
+        @Override
+        boolean sameValues(PrimitiveList other) {
+            if (!(other instanceof OfDouble) || other.size != size) {
+                return false;
+            }
+            double[] otherValues = ((OfDouble) other).values;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != otherValues[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean sameSerializedForm(PrimitiveList other) {
+            // -0.0 == 0.0 but they are written differently
+            if (!sameValues(other)) {
+                return false;
+            }
+            double[] otherValues = ((OfDouble) other).values;
+            for (int i = 0; i < size; i++) {
+                if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(otherValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class OfBoolean extends PrimitiveList {
+        private boolean[] values;
+
+        OfBoolean(int capacity) {
+            this.values = new boolean[capacity];
+            this.capacity = capacity;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        PrimitiveList newList(int capacity) {
+            return new OfBoolean(capacity);
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (boolean[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new boolean[length];
+        }
+
+        @Override
+        JsonElement element(int index) {
+            return JsonBoolean.valueOf(values[index]);
+        }
+
+        @Override
+        boolean accepts(JsonElement element) {
+            return element instanceof JsonBoolean;
+        }
+
+        @Override
+        void store(int index, JsonElement element) {
+            values[index] = element.asBoolean();
+        }
+
+        @Override
+        boolean storeNumber(int index, String text) {
+            return false;
+        }
+
+        @Override
+        void write(JsonWriter writer, int index) throws IOException {
+            writer.value(values[index]);
+        }
+
+        @Override
+        int serializedLength(int index) {
+            return values[index] ? 4 : 5;
+        }
+
+        @Override
+        double doubleAt(int index) {
+            throw new UnsupportedOperationException(values[index] + " is not a double number");
+        }
+
+        @Override
+        long longAt(int index) {
+            throw new UnsupportedOperationException(values[index] + " is not a long integer number");
+        }
+
+        @Override
+        int hash(int index) {
+            return Boolean.valueOf(values[index]).hashCode();
+        }
+
+        @Override
+        boolean sameValues(PrimitiveList other) {
+            if (!(other instanceof OfBoolean) || other.size != size) {
+                return false;
+            }
+            boolean[] otherValues = ((OfBoolean) other).values;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != otherValues[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -17,6 +17,13 @@
 
 package org.djodjo.json.exception;
 
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+
 // Note: this class was written without inspecting the non-free org.json sourcecode.
 
 /**
@@ -33,6 +40,13 @@ package org.djodjo.json.exception;
  */
 public class JsonException extends RuntimeException {
 
+    /** The most chars of a {@link JsonElement} rendered into a message. */
+    public static final int MAX_SNIPPET = 200;
+
+    /** The parts of a message which is not rendered yet, see {@link #lazy}. */
+    private transient Object[] parts;
+    private String message;
+
     public JsonException(String s) {
         super(s);
     }
@@ -40,4 +54,124 @@ public class JsonException extends RuntimeException {
     public JsonException(String s, Exception ex) {
         super(s, ex);
     }
+
+    private JsonException(Object[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Returns an exception whose message is the concatenation of {@code parts},
+     * rendered only when {@link #getMessage()} is first called. Elements among
+     * the parts are cut to {@value #MAX_SNIPPET} chars, so a failed lookup on a
+     * large document costs neither its serialization nor a copy of it. Note
+     * that an element changed before the message is read shows its new state.
+     */
+    public static JsonException lazy(Object... parts) {
+        return new JsonException(parts);
+    }
+
+    /**
+     * Like {@link #lazy}, but the exception has no stack trace, as filling it
+     * in is by far the most costly part of throwing. This is what failed
+     * lookups throw, so that code which uses them for control flow stays
+     * cheap.
+     */
+    public static JsonException stackless(Object... parts) {
+        return new Stackless(parts);
+    }
+
+    @Override
+    public String getMessage() {
+        String result = message;
+        if (result == null) {
+            Object[] pending = parts;
+            if (pending == null) {
+                return super.getMessage();
+            }
+            message = result = render(pending);
+        }
+        return result;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+    private static final class Stackless extends JsonException {
+        private static final long serialVersionUID = 1L;
+
+        Stackless(Object[] parts) {
+            super(parts);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static String render(Object[] parts) {
+        StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof JsonElement) {
+                appendSnippet(builder, (JsonElement) part);
+            } else {
+                builder.append(part);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendSnippet(StringBuilder builder, JsonElement element) {
+        SnippetWriter snippet = new SnippetWriter(builder, MAX_SNIPPET);
+        JsonWriter writer = new JsonWriter(snippet);
+        writer.setLenient(true);
+        try {
+            element.write(writer);
+        } catch (IOException full) {
+            builder.append("...");
+        }
+    }
+
+    /**
+     * Appends up to {@code limit} chars and fails once more are written.
+     */
+    private static final class SnippetWriter extends Writer {
+        private final StringBuilder builder;
+        private int remaining;
+
+        SnippetWriter(StringBuilder builder, int limit) {
+            this.builder = builder;
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int n = Math.min(len, remaining);
+            builder.append(cbuf, off, n);
+            remaining -= n;
+            if (n < len) {
+                throw new IOException("snippet full");
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int n = Math.min(len, remaining);
+            builder.append(str, off, off + n);
+            remaining -= n;
+            if (n < len) {
+                throw new IOException("snippet full");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
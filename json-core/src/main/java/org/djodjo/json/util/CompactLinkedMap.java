@@ -0,0 +1,764 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.util;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An insertion ordered map which keeps its keys, their hashes and its values in
+ * parallel arrays. Small maps are searched linearly by comparing the cached
+ * hashes first; once the map grows beyond {@value #LINEAR_THRESHOLD} entries an
+ * open addressed index of slot numbers is added on top of the arrays.
+ *
+ * <p>The keys, hashes and index of a map only ever built by appending new keys
+ * are not owned by the map but by an immutable {@link Shape}, shared by all
+ * maps with the same ordered key list. Such a map only stores its values.
+ * Appending a key moves the map to a cached child shape; removing a key, or
+ * running out of shapes, gives the map private copies of its keys.
+ *
+ * <p>Compared to {@link LinkedTreeMap} there is no per entry node and lookups
+ * never call {@code compareTo}. Removal is O(n) as the arrays are kept dense,
+ * which is fine for the typical JSON object that is built once and then read.
+ *
+ * <p>Keys may not be null. Instances of this class are not thread safe.
+ */
+public final class CompactLinkedMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Maps up to this size are searched linearly. */
+    static final int LINEAR_THRESHOLD = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+    private static final int[] EMPTY_HASHES = new int[0];
+
+    /** The shape this map follows, or null once it owns its keys. */
+    private Shape shape = Shape.ROOT;
+    /** The arrays of {@link #shape}, which it only holds weakly. */
+    private Layout layout = Shape.ROOT_LAYOUT;
+
+    private Object[] keys = EMPTY;
+    private Object[] values = EMPTY;
+    private int[] hashes = EMPTY_HASHES;
+    private int size;
+
+    /**
+     * Open addressed table of slot + 1, 0 meaning empty; null while the map is
+     * small enough to be searched linearly.
+     */
+    private int[] index;
+
+    private transient int modCount;
+    private transient EntrySet entrySet;
+
+    public CompactLinkedMap() {
+    }
+
+    public CompactLinkedMap(int expectedSize) {
+        if (expectedSize > 0) {
+            values = new Object[expectedSize];
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && slotOf(key, hash(key)) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int slot = slotOf(key, hash(key));
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * Returns the value mapped by {@code key}, or null. The slot found is
+     * remembered in {@code key} for the current shape so that further lookups
+     * on maps of the same shape skip the search.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Key key) {
+        Shape shape = this.shape;
+        if (shape != null) {
+            SlotHint hint = key.hint;
+            if (hint != null && hint.shape == shape) {
+                return (V) values[hint.slot];
+            }
+        }
+        int slot = slotOf(key.key, key.hash);
+        if (slot < 0) {
+            return null;
+        }
+        if (shape != null) {
+            key.hint = new SlotHint(shape, slot);
+        }
+        return (V) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        int hash = hash(key);
+        int slot = slotOf(key, hash);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        modCount++;
+        if (shape != null) {
+            Shape next = shape.child(key, hash);
+            if (next != null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, grow(size));
+                }
+                values[size++] = value;
+                follow(next, next.layout(layout));
+                return null;
+            }
+            unshare();
+        }
+        if (size == keys.length) {
+            int capacity = grow(size);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        slot = size++;
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        if (index != null) {
+            if (size * 2 > index.length) {
+                index = buildIndex(hashes, size);
+            } else {
+                insertIntoIndex(index, slot, hash);
+            }
+        } else if (size > LINEAR_THRESHOLD) {
+            index = buildIndex(hashes, size);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int slot = slotOf(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        return removeSlot(slot);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        modCount++;
+        follow(Shape.ROOT, Shape.ROOT_LAYOUT);
+    }
+
+    /**
+     * Returns the key at insertion position {@code slot}, which must be less than {@link #size()}.
+     */
+    @SuppressWarnings("unchecked")
+    public K keyAt(int slot) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException("slot " + slot + " size " + size);
+        }
+        return (K) keys[slot];
+    }
+
+    /**
+     * Returns the value at insertion position {@code slot}, which must be less than {@link #size()}.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException("slot " + slot + " size " + size);
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Replaces the value at insertion position {@code slot}, which must be less than {@link #size()}.
+     *
+     * @return the previous value.
+     */
+    @SuppressWarnings("unchecked")
+    public V setValueAt(int slot, V value) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException("slot " + slot + " size " + size);
+        }
+        V old = (V) values[slot];
+        values[slot] = value;
+        return old;
+    }
+
+    /**
+     * Returns a copy of this map. A map following a shape shares it with its
+     * copy, in which case only the values are copied.
+     */
+    public CompactLinkedMap<K, V> copy() {
+        CompactLinkedMap<K, V> copy = new CompactLinkedMap<K, V>();
+        if (size == 0) {
+            return copy;
+        }
+        copy.size = size;
+        copy.values = Arrays.copyOf(values, size);
+        if (shape != null) {
+            copy.follow(shape, layout);
+        } else {
+            copy.shape = null;
+            copy.keys = Arrays.copyOf(keys, size);
+            copy.hashes = Arrays.copyOf(hashes, size);
+            copy.index = index == null ? null : index.clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the shared shape of this map, or null if it owns its keys.
+     */
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Shrinks the backing arrays to the current size. A map which has its own
+     * keys, for example after a removal, goes back to sharing the shape of
+     * the maps with the same keys where possible.
+     */
+    public void trimToSize() {
+        if (values.length != size) {
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+        if (shape != null) {
+            return;
+        }
+        Shape shared = Shape.ROOT;
+        for (int i = 0; i < size && shared != null; i++) {
+            shared = shared.child(keys[i], hashes[i]);
+        }
+        if (shared != null) {
+            follow(shared, shared.layout(null));
+        } else if (keys.length != size) {
+            keys = size == 0 ? EMPTY : Arrays.copyOf(keys, size);
+            hashes = size == 0 ? EMPTY_HASHES : Arrays.copyOf(hashes, size);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        EntrySet result = entrySet;
+        return result != null ? result : (entrySet = new EntrySet());
+    }
+
+    private static int grow(int size) {
+        return size < 4 ? 4 : size + (size >> 1);
+    }
+
+    private void follow(Shape shape, Layout layout) {
+        this.shape = shape;
+        this.layout = layout;
+        this.keys = layout.keys;
+        this.hashes = layout.hashes;
+        this.index = layout.index;
+    }
+
+    /**
+     * Gives this map its own copy of the keys of its shape.
+     */
+    private void unshare() {
+        int capacity = Math.max(values.length, size);
+        keys = Arrays.copyOf(keys, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        index = index == null ? null : index.clone();
+        if (values.length < capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+        shape = null;
+        layout = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeSlot(int slot) {
+        if (shape != null) {
+            unshare();
+        }
+        V old = (V) values[slot];
+        int moved = size - slot - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, slot + 1, keys, slot, moved);
+            System.arraycopy(values, slot + 1, values, slot, moved);
+            System.arraycopy(hashes, slot + 1, hashes, slot, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+        index = size > LINEAR_THRESHOLD ? buildIndex(hashes, size) : null;
+        return old;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(Object key, int hash) {
+        return slotOf(keys, hashes, index, size, key, hash);
+    }
+
+    private static int slotOf(Object[] keys, int[] hashes, int[] index, int size, Object key, int hash) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (hashes[i] == hash) {
+                    Object k = keys[i];
+                    if (k == key || k.equals(key)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        int i = hash & mask;
+        int entry;
+        while ((entry = index[i]) != 0) {
+            int slot = entry - 1;
+            if (hashes[slot] == hash) {
+                Object k = keys[slot];
+                if (k == key || k.equals(key)) {
+                    return slot;
+                }
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int[] buildIndex(int[] hashes, int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 4 - 1);
+        if (capacity < 32) {
+            capacity = 32;
+        }
+        int[] index = new int[capacity];
+        for (int slot = 0; slot < size; slot++) {
+            insertIntoIndex(index, slot, hashes[slot]);
+        }
+        return index;
+    }
+
+    private static void insertIntoIndex(int[] index, int slot, int hash) {
+        int mask = index.length - 1;
+        int i = hash & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    /**
+     * Maps are serialized as plain {@link LinkedHashMap LinkedHashMaps}, shapes
+     * are not carried over.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new LinkedHashMap<K, V>(this);
+    }
+
+    /**
+     * An immutable ordered key list shared by all maps built by appending the
+     * same keys in the same order. Shapes form a tree rooted at the empty shape;
+     * the children are created on demand and cached. A shape holds its parent
+     * strongly but its children only weakly, so the shapes, and the keys, of
+     * documents which are gone are collected. A shape has at most
+     * {@value #MAX_CHILDREN} live children (the root {@value #MAX_ROOT_CHILDREN})
+     * and {@value #MAX_KEYS} keys; maps which cannot get a shape keep their own
+     * keys instead.
+     *
+     * <p>A shape itself only stores its last key, so that a chain of shapes
+     * takes linear space. The arrays maps search are built from the chain when
+     * a map moves to the shape, and are cached weakly, for as long as maps
+     * with that shape use them.
+     */
+    public static final class Shape {
+
+        static final int MAX_KEYS = 64;
+        static final int MAX_CHILDREN = 16;
+        /** The root has a child per distinct first key, so it gets more of them. */
+        static final int MAX_ROOT_CHILDREN = 256;
+
+        private static final ChildRef[] NO_CHILDREN = new ChildRef[0];
+
+        static final Shape ROOT = new Shape(null, null, 0);
+        static final Layout ROOT_LAYOUT = new Layout(EMPTY, EMPTY_HASHES, null);
+
+        /** Keeps the shapes of the prefixes alive while this one is in use. */
+        private final Shape parent;
+        private final Object key;
+        private final int hash;
+        private final int size;
+        private volatile ChildRef[] children = NO_CHILDREN;
+        private volatile WeakReference<Layout> layout;
+
+        private Shape(Shape parent, Object key, int hash) {
+            this.parent = parent;
+            this.key = key;
+            this.hash = hash;
+            this.size = parent == null ? 0 : parent.size + 1;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Object keyAt(int slot) {
+            if (slot < 0 || slot >= size) {
+                throw new IndexOutOfBoundsException("slot " + slot + " size " + size);
+            }
+            Shape shape = this;
+            for (int i = size - 1; i > slot; i--) {
+                shape = shape.parent;
+            }
+            return shape.key;
+        }
+
+        /**
+         * Returns the slot of {@code key} in this shape, or -1.
+         */
+        public int slotOf(Object key) {
+            Layout layout = layout(null);
+            return CompactLinkedMap.slotOf(layout.keys, layout.hashes, layout.index, size, key, hash(key));
+        }
+
+        /**
+         * Returns the arrays of this shape, extending {@code parentLayout}, the
+         * layout of the parent if the caller has it, when they are not cached.
+         */
+        Layout layout(Layout parentLayout) {
+            if (this == ROOT) {
+                return ROOT_LAYOUT;
+            }
+            WeakReference<Layout> ref = layout;
+            Layout result = ref == null ? null : ref.get();
+            if (result != null) {
+                return result;
+            }
+            Object[] keys;
+            int[] hashes;
+            if (parentLayout != null) {
+                keys = Arrays.copyOf(parentLayout.keys, size);
+                hashes = Arrays.copyOf(parentLayout.hashes, size);
+            } else {
+                keys = new Object[size];
+                hashes = new int[size];
+                for (Shape shape = this; shape != ROOT; shape = shape.parent) {
+                    keys[shape.size - 1] = shape.key;
+                    hashes[shape.size - 1] = shape.hash;
+                }
+            }
+            keys[size - 1] = key;
+            hashes[size - 1] = hash;
+            result = new Layout(keys, hashes, size > LINEAR_THRESHOLD ? buildIndex(hashes, size) : null);
+            layout = new WeakReference<Layout>(result);
+            return result;
+        }
+
+        Shape child(Object key, int hash) {
+            Shape found = findChild(children, key, hash);
+            if (found != null) {
+                return found;
+            }
+            synchronized (this) {
+                ChildRef[] current = children;
+                found = findChild(current, key, hash);
+                if (found != null) {
+                    return found;
+                }
+                if (size >= MAX_KEYS) {
+                    return null;
+                }
+                int live = 0;
+                for (ChildRef ref : current) {
+                    if (ref.get() != null) {
+                        live++;
+                    }
+                }
+                if (live >= (this == ROOT ? MAX_ROOT_CHILDREN : MAX_CHILDREN)) {
+                    return null;
+                }
+                Shape child = new Shape(this, key, hash);
+                // drop the children which were collected
+                ChildRef[] updated = new ChildRef[live + 1];
+                int i = 0;
+                for (ChildRef ref : current) {
+                    if (ref.get() != null) {
+                        updated[i++] = ref;
+                    }
+                }
+                updated[i] = new ChildRef(child, hash);
+                children = updated;
+                return child;
+            }
+        }
+
+        private static Shape findChild(ChildRef[] children, Object key, int hash) {
+            for (ChildRef ref : children) {
+                if (ref.hash == hash) {
+                    Shape child = ref.get();
+                    if (child != null && (child.key == key || child.key.equals(key))) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The keys, hashes and index of a shape, shared by the maps which follow it.
+     */
+    private static final class Layout {
+        final Object[] keys;
+        final int[] hashes;
+        final int[] index;
+
+        Layout(Object[] keys, int[] hashes, int[] index) {
+            this.keys = keys;
+            this.hashes = hashes;
+            this.index = index;
+        }
+    }
+
+    /**
+     * A weak reference to a child shape, with the hash of its last key so that
+     * children can be told apart without dereferencing them.
+     */
+    private static final class ChildRef extends WeakReference<Shape> {
+        final int hash;
+
+        ChildRef(Shape child, int hash) {
+            super(child);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A lookup key which remembers its slot for the last shape it was looked
+     * up in. Instances are thread safe and meant to be kept in constants.
+     */
+    public static final class Key {
+        private final Object key;
+        private final int hash;
+        private volatile SlotHint hint;
+
+        public Key(Object key) {
+            if (key == null) {
+                throw new NullPointerException("key == null");
+            }
+            this.key = key;
+            this.hash = hash(key);
+        }
+
+        public Object getKey() {
+            return key;
+        }
+    }
+
+    private static final class SlotHint {
+        final Shape shape;
+        final int slot;
+
+        SlotHint(Shape shape, int slot) {
+            this.shape = shape;
+            this.slot = slot;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Object key = e.getKey();
+            if (key == null) {
+                return false;
+            }
+            int slot = slotOf(key, hash(key));
+            if (slot < 0) {
+                return false;
+            }
+            Object value = values[slot];
+            return value == null ? e.getValue() == null : value.equals(e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            CompactLinkedMap.this.remove(((Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            CompactLinkedMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        int next = 0;
+        int lastReturned = -1;
+        int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next++;
+            return new SlotEntry(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeSlot(lastReturned);
+            next = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry reading through to its slot. Writes go through as long as the
+     * slot still holds the same key.
+     */
+    private final class SlotEntry implements Entry<K, V> {
+        private final K key;
+        private final int slot;
+
+        @SuppressWarnings("unchecked")
+        SlotEntry(int slot) {
+            this.slot = slot;
+            this.key = (K) keys[slot];
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            if (slot < size && keys[slot] == key) {
+                return (V) values[slot];
+            }
+            return get(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            if (slot < size && keys[slot] == key) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> other = (Entry<?, ?>) o;
+            V value = getValue();
+            return key.equals(other.getKey())
+                    && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            V value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
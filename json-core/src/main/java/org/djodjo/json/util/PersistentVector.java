@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list with O(log<sub>32</sub> n) updates. Elements are kept in a
+ * tree of 32 wide nodes plus a tail of up to 32 elements. {@link #with} and
+ * {@link #plus} return a new vector which shares all nodes but the path to
+ * the changed element with this one.
+ *
+ * <p>The mutators inherited from {@link java.util.List} throw
+ * {@link UnsupportedOperationException}. Instances are safe to share between
+ * threads.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<Object> EMPTY =
+            new PersistentVector<Object>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    /** The number of index bits below the root; a multiple of {@link #BITS}. */
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector holding the elements of {@code elements} in iteration order.
+     */
+    public static <E> PersistentVector<E> from(Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector) {
+            @SuppressWarnings("unchecked")
+            PersistentVector<E> vector = (PersistentVector<E>) elements;
+            return vector;
+        }
+        Object[] all = elements.toArray();
+        int size = all.length;
+        if (size == 0) {
+            return empty();
+        }
+        int tailOffset = tailOffset(size);
+        Object[] tail = Arrays.copyOfRange(all, tailOffset, size);
+        int count = tailOffset >>> BITS;
+        if (count == 0) {
+            return new PersistentVector<E>(size, BITS, new Object[WIDTH], tail);
+        }
+        // build the tree bottom up from full leaves
+        Object[] nodes = new Object[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = Arrays.copyOfRange(all, i << BITS, (i + 1) << BITS);
+        }
+        int shift = BITS;
+        while (count > WIDTH) {
+            int parents = (count + MASK) >>> BITS;
+            Object[] level = new Object[parents];
+            for (int i = 0; i < parents; i++) {
+                Object[] parent = new Object[WIDTH];
+                System.arraycopy(nodes, i << BITS, parent, 0, Math.min(WIDTH, count - (i << BITS)));
+                level[i] = parent;
+            }
+            nodes = level;
+            count = parents;
+            shift += BITS;
+        }
+        Object[] root = new Object[WIDTH];
+        System.arraycopy(nodes, 0, root, 0, count);
+        return new PersistentVector<E>(size, shift, root, tail);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index);
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns a vector with {@code element} at {@code index} instead of the current one.
+     */
+    public PersistentVector<E> with(int index, E element) {
+        checkIndex(index);
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<E>(size, shift, root, newTail);
+        }
+        return new PersistentVector<E>(size, shift, with(shift, root, index, element), tail);
+    }
+
+    /**
+     * Returns a vector with {@code element} appended.
+     */
+    public PersistentVector<E> plus(E element) {
+        if (size - tailOffset(size) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<E>(size + 1, shift, root, newTail);
+        }
+        // the tail is full, move it into the tree
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<E>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+            private Object[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0 || leaf == null) {
+                    leaf = leafFor(index);
+                }
+                return (E) leaf[index++ & MASK];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset(size)) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] with(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = with(level - BITS, (Object[]) node[child], index, element);
+        }
+        return copy;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        Object[] inserted;
+        if (level == BITS) {
+            inserted = tailNode;
+        } else {
+            Object[] existing = (Object[]) parent[child];
+            inserted = existing != null
+                    ? pushTail(level - BITS, existing, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        copy[child] = inserted;
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+}
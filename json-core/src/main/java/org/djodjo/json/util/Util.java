@@ -98,33 +98,33 @@ public class Util {
     public static JsonException typeMismatch(Object indexOrName, Object actual,
                                              String requiredType, boolean mode) throws JsonException {
         if (actual == null) {
-            throw new JsonException("Value at " + indexOrName + " is null.");
+            throw JsonException.stackless("Value at ", indexOrName, " is null.");
         } else {
-            throw new JsonException("Value " + actual + " at " + indexOrName
-                    + " of type " + actual.getClass().getName()
-                    + " cannot be converted to " + requiredType + ". Strict mode is: " + mode);
+            throw JsonException.stackless("Value ", actual, " at ", indexOrName,
+                    " of type ", actual.getClass().getName(),
+                    " cannot be converted to ", requiredType, ". Strict mode is: ", mode);
         }
     }
 
     public static JsonException typeMismatch(Object indexOrName, Object actual,
                                              String requiredType) throws JsonException {
         if (actual == null) {
-            throw new JsonException("Value at " + indexOrName + " is null.");
+            throw JsonException.stackless("Value at ", indexOrName, " is null.");
         } else {
-            throw new JsonException("Value " + actual + " at " + indexOrName
-                    + " of type " + actual.getClass().getName()
-                    + " cannot be converted to " + requiredType);
+            throw JsonException.stackless("Value ", actual, " at ", indexOrName,
+                    " of type ", actual.getClass().getName(),
+                    " cannot be converted to ", requiredType);
         }
     }
 
     public static JsonException typeMismatch(Object actual, String requiredType)
             throws JsonException {
         if (actual == null) {
-            throw new JsonException("Value is null.");
+            throw JsonException.stackless("Value is null.");
         } else {
-            throw new JsonException("Value " + actual
-                    + " of type " + actual.getClass().getName()
-                    + " cannot be converted to " + requiredType);
+            throw JsonException.stackless("Value ", actual,
+                    " of type ", actual.getClass().getName(),
+                    " cannot be converted to ", requiredType);
         }
     }
 
@@ -153,4 +153,51 @@ public class Util {
 
         return number.toString();
     }
+
+    /**
+     * Encodes the first {@code length} chars of {@code chars} as UTF-8 into an
+     * exactly sized array. Unpaired surrogates are encoded as '?'.
+     */
+    public static byte[] toUtf8(char[] chars, int length) {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        byte[] result = new byte[size];
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                result[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                result[pos++] = (byte) (0xC0 | (c >> 6));
+                result[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                result[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                result[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                result[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                result[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                result[pos++] = (byte) '?';
+            } else {
+                result[pos++] = (byte) (0xE0 | (c >> 12));
+                result[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                result[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.util.CompactLinkedMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class CompactLinkedMapTest extends TestCase {
+
+    @Test
+    public void testInsertionOrder() {
+        CompactLinkedMap<String, Integer> map = new CompactLinkedMap<String, Integer>();
+        map.put("b", 1);
+        map.put("a", 2);
+        map.put("c", 3);
+        map.put("a", 4);
+        assertEquals(3, map.size());
+        assertEquals("[b, a, c]", new ArrayList<String>(map.keySet()).toString());
+        assertEquals(Integer.valueOf(4), map.get("a"));
+        assertNull(map.get("d"));
+    }
+
+    @Test
+    public void testShapeSharing() {
+        CompactLinkedMap<String, Integer> a = new CompactLinkedMap<String, Integer>();
+        CompactLinkedMap<String, Integer> b = new CompactLinkedMap<String, Integer>();
+        for (int i = 0; i < 12; i++) {
+            a.put("shared" + i, i);
+            b.put("shared" + i, -i);
+        }
+        assertNotNull(a.getShape());
+        assertSame(a.getShape(), b.getShape());
+        assertEquals(12, a.getShape().size());
+        assertEquals(Integer.valueOf(-7), b.get("shared7"));
+
+        b.remove("shared3");
+        assertNull(b.getShape());
+        assertNotNull(a.getShape());
+        assertEquals(12, a.size());
+        assertEquals(Integer.valueOf(3), a.get("shared3"));
+        assertEquals(11, b.size());
+        assertEquals(Integer.valueOf(-4), b.get("shared4"));
+    }
+
+    @Test
+    public void testUnusedShapesAreCollected() {
+        CompactLinkedMap<String, Integer> kept = new CompactLinkedMap<String, Integer>();
+        kept.put("kept", 1);
+        CompactLinkedMap.Shape shape = kept.getShape();
+        // far more distinct first keys than the root keeps shapes for at once
+        for (int i = 0; i < 2000; i++) {
+            CompactLinkedMap<String, Integer> map = new CompactLinkedMap<String, Integer>();
+            map.put("unique" + i, i);
+            if (i % 200 == 0) {
+                System.gc();
+            }
+        }
+        CompactLinkedMap<String, Integer> fresh = null;
+        for (int attempt = 0; attempt < 20; attempt++) {
+            System.gc();
+            fresh = new CompactLinkedMap<String, Integer>();
+            fresh.put("fresh" + attempt, attempt);
+            if (fresh.getShape() != null) {
+                break;
+            }
+        }
+        assertNotNull(fresh.getShape());
+
+        CompactLinkedMap<String, Integer> again = new CompactLinkedMap<String, Integer>();
+        again.put("kept", 2);
+        assertSame(shape, again.getShape());
+    }
+
+    @Test
+    public void testShapeLayoutIsRebuilt() {
+        CompactLinkedMap<String, Integer> a = new CompactLinkedMap<String, Integer>();
+        for (int i = 0; i < 20; i++) {
+            a.put("layout" + i, i);
+        }
+        CompactLinkedMap.Shape shape = a.getShape();
+        a = null;
+        System.gc();
+        assertEquals(20, shape.size());
+        assertEquals("layout13", shape.keyAt(13));
+        assertEquals(17, shape.slotOf("layout17"));
+        assertEquals(-1, shape.slotOf("layout20"));
+
+        CompactLinkedMap<String, Integer> b = new CompactLinkedMap<String, Integer>();
+        for (int i = 0; i < 20; i++) {
+            b.put("layout" + i, -i);
+        }
+        assertSame(shape, b.getShape());
+        assertEquals(Integer.valueOf(-19), b.get("layout19"));
+        assertEquals("layout5", b.keyAt(5));
+    }
+
+    @Test
+    public void testTrimToSizeSharesShapeAgain() {
+        CompactLinkedMap<String, Integer> a = new CompactLinkedMap<String, Integer>();
+        CompactLinkedMap<String, Integer> b = new CompactLinkedMap<String, Integer>();
+        for (int i = 0; i < 12; i++) {
+            a.put("trim" + i, i);
+            if (i < 11) {
+                b.put("trim" + i, i);
+            }
+        }
+        a.remove("trim11");
+        assertNull(a.getShape());
+        a.trimToSize();
+        assertSame(b.getShape(), a.getShape());
+        assertEquals(b, a);
+        assertEquals("trim10", a.keyAt(10));
+    }
+
+    @Test
+    public void testKeyLookupAcrossShapes() {
+        CompactLinkedMap.Key key = new CompactLinkedMap.Key("x");
+        CompactLinkedMap<String, Integer> xy = new CompactLinkedMap<String, Integer>();
+        xy.put("x", 1);
+        xy.put("y", 2);
+        CompactLinkedMap<String, Integer> yx = new CompactLinkedMap<String, Integer>();
+        yx.put("y", 3);
+        yx.put("x", 4);
+        CompactLinkedMap<String, Integer> y = new CompactLinkedMap<String, Integer>();
+        y.put("y", 5);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(1), xy.get(key));
+            assertEquals(Integer.valueOf(4), yx.get(key));
+            assertNull(y.get(key));
+        }
+        xy.remove("x");
+        assertNull(xy.get(key));
+        xy.put("x", 6);
+        assertEquals(Integer.valueOf(6), xy.get(key));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        CompactLinkedMap<String, Integer> map = new CompactLinkedMap<String, Integer>();
+        for (int i = 0; i < 20; i++) {
+            map.put("k" + i, i);
+        }
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(10, map.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 2 == 1, map.containsKey("k" + i));
+        }
+    }
+
+    @Test
+    public void testBehavesLikeLinkedHashMap() {
+        Random random = new Random(42);
+        CompactLinkedMap<String, Integer> map = new CompactLinkedMap<String, Integer>();
+        LinkedHashMap<String, Integer> expected = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            String key = "k" + random.nextInt(100);
+            int op = random.nextInt(10);
+            if (op < 6) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else if (op < 8) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(map.keySet()));
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+}
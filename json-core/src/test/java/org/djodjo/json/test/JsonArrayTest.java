@@ -17,17 +17,24 @@
 
 package org.djodjo.json.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 
 import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonElement;
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.JsonNull;
+import org.djodjo.json.JsonNumber;
 import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonString;
+import org.djodjo.json.JsonTreeReader;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -474,4 +481,103 @@ public class JsonArrayTest extends TestCase {
         JsonArray a2 = new JsonArray(MyEnum.values());
         assertEquals("[\"A\",\"B\",\"C\"]", a2.toString());
     }
+
+    @Test
+    public void testParallelWrite() throws Exception {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 1000; i++) {
+            array.put(new JsonObject().put("id", i).put("name", "n\"" + i));
+        }
+        array.put("last");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            array.writeTo(out, executor, 7, 3);
+            assertEquals(array.toString(), out.toString("UTF-8"));
+
+            out = new ByteArrayOutputStream();
+            array.writeTo(out, executor);
+            assertEquals(array.toString(), out.toString("UTF-8"));
+
+            // workers read copy-on-write children without unsharing them
+            String json = array.toString();
+            array.deepFreeze();
+            JsonArray copy = array.copyOnWrite();
+            JsonObject object = new JsonObject().put("a", array).put("b", 1).put("c", 2).deepFreeze();
+            JsonObject objectCopy = object.copyOnWrite();
+            out = new ByteArrayOutputStream();
+            copy.writeTo(out, executor, 7, 3);
+            assertEquals(json, out.toString("UTF-8"));
+            out = new ByteArrayOutputStream();
+            objectCopy.writeTo(out, executor, 1, 2);
+            assertEquals("{\"a\":" + json + ",\"b\":1,\"c\":2}", out.toString("UTF-8"));
+            JsonTreeReader reader = new JsonTreeReader(copy);
+            reader.beginArray();
+            assertSame(array.get(0), reader.nextJsonElement());
+            reader = new JsonTreeReader(objectCopy);
+            reader.beginObject();
+            reader.nextName();
+            assertSame(array, reader.nextJsonElement());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrimitiveValueAccessors() throws Exception {
+        JsonArray parsed = JsonElement.readFrom("[null,true,false,7,\"7\",2.5]").asJsonArray();
+        assertSame(JsonNull.INSTANCE, parsed.get(0));
+        assertSame(parsed.get(3), JsonElement.readFrom("[7]").asJsonArray().get(0));
+        assertTrue(parsed.getBooleanValue(1, false));
+        assertTrue(parsed.getBooleanValue(3, true));
+        assertEquals(7, parsed.getIntValue(3, -1));
+        assertEquals(-1, parsed.getIntValue(4, -1));
+        assertEquals(2.5, parsed.getDoubleValue(5, 0), 0);
+        assertEquals(2L, parsed.getLongValue(5, 0));
+        assertEquals(-1, parsed.getIntValue(6, -1));
+
+        JsonArray doubles = JsonElement.readFrom("[1.5,-2.5,3]").asJsonArray();
+        assertEquals(-2, doubles.getIntValue(1, 0));
+        assertEquals(3.0, doubles.getDoubleValue(2, 0), 0);
+        assertEquals(0, doubles.getIntValue(-1, 0));
+        assertEquals(0, JsonElement.readFrom("[true]").asJsonArray().getIntValue(0, 0));
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws Exception {
+        JsonArray longs = JsonElement.readFrom("[1, -2, 3000000000]").asJsonArray();
+        assertEquals(3000000000L, longs.getLong(2).longValue());
+        assertTrue(Arrays.equals(new long[]{1, -2, 3000000000L}, longs.toLongArray()));
+
+        // widened to doubles
+        longs.put(0.5);
+        assertEquals("[1,-2,3000000000,0.5]", longs.toString());
+        assertTrue(Arrays.equals(new double[]{1, -2, 3000000000d, 0.5}, longs.toDoubleArray()));
+
+        JsonArray doubles = JsonElement.readFrom("[1.5, 2.0, -0, 1E3]").asJsonArray();
+        assertEquals("[1.5,2,-0.0,1000]", doubles.toString());
+        assertEquals(doubles.toString().length(), doubles.serializedLength());
+        assertEquals(2.0, doubles.getDouble(1));
+
+        // inflated to a general array
+        doubles.add(1, new JsonString("x"));
+        assertEquals("[1.5,\"x\",2,-0.0,1000]", doubles.toString());
+        assertEquals("x", doubles.getString(1));
+
+        JsonArray booleans = JsonElement.readFrom("[true, false]").asJsonArray();
+        booleans.remove(0);
+        booleans.put(new JsonNull());
+        assertEquals("[false,null]", booleans.toString());
+    }
+
+    @Test
+    public void testToStringMatchesToByteArray() throws Exception {
+        JsonArray array = new JsonArray().put(new JsonNumber("NaN")).put("\u00e9").put(new JsonObject().put("a", 1));
+        assertEquals("[NaN,\"\u00e9\",{\"a\":1}]", array.toString());
+        assertTrue(Arrays.equals(array.toString().getBytes("UTF-8"), array.toByteArray()));
+
+        array.deepFreeze();
+        assertEquals(array.toString().length(), array.serializedLength());
+        assertTrue(Arrays.equals(array.toString().getBytes("UTF-8"), array.toByteArray()));
+    }
 }
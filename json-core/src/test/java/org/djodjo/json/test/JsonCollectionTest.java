@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonCollection;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonNull;
+import org.djodjo.json.JsonNumber;
+import org.djodjo.json.JsonObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class JsonCollectionTest extends TestCase {
+
+    private static JsonObject user(int i) {
+        return new JsonObject().put("name", "user" + i).put("age", i % 50)
+                .put("address", new JsonObject().put("city", "city" + (i % 7)));
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        ArrayList<Long> result = new ArrayList<Long>(ids);
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testIndexedQueriesMatchScans() throws Exception {
+        JsonCollection indexed = new JsonCollection();
+        JsonCollection scanned = new JsonCollection();
+        indexed.createIndex("/address/city", JsonCollection.IndexType.HASH);
+        for (int i = 0; i < 500; i++) {
+            indexed.insert(user(i));
+            scanned.insert(user(i));
+        }
+        indexed.createIndex("/age", JsonCollection.IndexType.SORTED);
+        assertEquals(JsonCollection.IndexType.SORTED, indexed.getIndexType("/age"));
+        assertNull(scanned.getIndexType("/age"));
+
+        assertEquals(sorted(scanned.findIds("/address/city", "city3")),
+                sorted(indexed.findIds("/address/city", "city3")));
+        assertEquals(71, indexed.find("/address/city", "city3").size());
+        assertEquals(10, indexed.find("/age", 7.0).size());
+        assertEquals(sorted(scanned.rangeIds("/age", 10, true, 20, false)),
+                sorted(indexed.rangeIds("/age", 10, true, 20, false)));
+        assertEquals(100, indexed.range("/age", 10, true, 20, false).size());
+        assertEquals(20, indexed.range("/age", 47, false, null, false).size());
+
+        List<JsonObject> ordered = indexed.range("/age", null, false, 2, true);
+        assertEquals(30, ordered.size());
+        assertEquals(0, ordered.get(0).getInt("age").intValue());
+        assertEquals(2, ordered.get(29).getInt("age").intValue());
+    }
+
+    @Test
+    public void testUpdateAndRemoveKeepIndexesInSync() throws Exception {
+        JsonCollection collection = new JsonCollection();
+        collection.createIndex("/name", JsonCollection.IndexType.HASH);
+        collection.createIndex("/age", JsonCollection.IndexType.SORTED);
+        JsonObject document = user(1);
+        long id = collection.insert(document);
+        assertTrue(document.isFrozen());
+        long other = collection.insert(new JsonObject().put("name", "x").put("age", "old"));
+
+        assertEquals(Arrays.asList(id), collection.findIds("/name", "user1"));
+        assertSame(document, collection.update(id, user(2)));
+        assertTrue(collection.findIds("/name", "user1").isEmpty());
+        assertEquals(Arrays.asList(id), collection.findIds("/name", "user2"));
+        assertEquals(Arrays.asList(id), collection.rangeIds("/age", 2, true, 2, true));
+        assertEquals(Arrays.asList(other), collection.rangeIds("/age", "a", true, null, false));
+
+        assertNotNull(collection.remove(id));
+        assertNull(collection.remove(id));
+        assertNull(collection.update(id, user(3)));
+        assertTrue(collection.findIds("/name", "user2").isEmpty());
+        assertTrue(collection.findIds("/name", "user3").isEmpty());
+        assertEquals(1, collection.size());
+
+        assertTrue(collection.dropIndex("/name"));
+        assertEquals(Arrays.asList(other), collection.findIds("/name", "x"));
+
+        // reading a number does not move it in a hash index
+        collection.createIndex("/x", JsonCollection.IndexType.HASH);
+        JsonObject exponent = new JsonObject().put("x", new JsonNumber("1e3"));
+        long thousand = collection.insert(exponent);
+        assertEquals(1000, exponent.getInt("x").intValue());
+        assertEquals(Arrays.asList(thousand), collection.findIds("/x", 1000));
+    }
+
+    @Test
+    public void testSortedIndexKeepsNumbersEqualAsDoubles() throws Exception {
+        JsonCollection collection = new JsonCollection();
+        collection.createIndex("/n", JsonCollection.IndexType.SORTED);
+        long a = collection.insert(new JsonObject().put("n", new JsonNumber("9007199254740993")));
+        long b = collection.insert(new JsonObject().put("n", new JsonNumber("9007199254740992")));
+        long c = collection.insert(new JsonObject().put("n", new JsonNumber("9.007199254740992e15")));
+        assertEquals(Arrays.asList(a, b, c), sorted(collection.findIds("/n", 9007199254740992L)));
+        collection.remove(b);
+        assertEquals(Arrays.asList(a, c), sorted(collection.rangeIds("/n", 0, true, null, false)));
+    }
+
+    @Test
+    public void testOpenRangesKeepTheBoundType() throws Exception {
+        JsonCollection indexed = new JsonCollection();
+        JsonCollection scanned = new JsonCollection();
+        indexed.createIndex("/age", JsonCollection.IndexType.SORTED);
+        Object[] ages = {null, false, true, -1e300, 5, 10, 20, "10", "old", ""};
+        for (Object age : ages) {
+            JsonObject document = new JsonObject().put("age", age == null ? new JsonNull() : JsonElement.wrap(age));
+            indexed.insert(document);
+            scanned.insert(document);
+        }
+        for (JsonCollection collection : Arrays.asList(indexed, scanned)) {
+            assertEquals(2, collection.range("/age", 10, true, null, false).size());
+            assertEquals(2, collection.range("/age", null, false, 5, true).size());
+            assertEquals(3, collection.range("/age", "", true, null, false).size());
+            assertEquals(2, collection.range("/age", null, false, "10", true).size());
+            assertEquals(2, collection.range("/age", false, true, null, false).size());
+            assertEquals(1, collection.range("/age", null, false, new JsonNull(), true).size());
+            assertEquals(4, collection.range("/age", true, true, 10, true).size());
+            assertEquals(ages.length, collection.range("/age", null, false, null, false).size());
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception {
+        final JsonCollection collection = new JsonCollection(4);
+        collection.createIndex("/age", JsonCollection.IndexType.SORTED);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int writer = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 300; i++) {
+                            long id = collection.insert(user(writer * 1000 + i));
+                            collection.update(id, user(i));
+                            for (JsonObject found : collection.find("/age", i % 50)) {
+                                assertEquals(i % 50, found.getInt("age").intValue());
+                            }
+                            if (i % 3 == 0) {
+                                collection.remove(id);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(800, collection.size());
+        assertEquals(800, collection.rangeIds("/age", null, false, null, false).size());
+        assertEquals(16, collection.find("/age", 1).size());
+    }
+}
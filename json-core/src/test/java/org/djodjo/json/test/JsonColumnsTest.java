@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonColumns;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonReader;
+import org.djodjo.json.exception.JsonException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class JsonColumnsTest extends TestCase {
+
+    private static final String JSON = "[{\"name\":\"a\",\"age\":30,\"tags\":[\"x\",\"y\"],\"address\":{\"zip\":1}},"
+            + "{\"name\":\"b\",\"age\":12.5,\"tags\":[],\"score\":true},"
+            + "{\"name\":\"a\",\"age\":null,\"address\":null,\"tags\":[\"x\"]},"
+            + "{\"name\":null,\"tags\":null,\"address\":{\"zip\":\"none\"}}]";
+
+    @Test
+    public void testShredAndReassemble() throws Exception {
+        JsonArray array = JsonElement.readFrom(JSON).asJsonArray();
+        JsonColumns columns = JsonColumns.shred(array);
+        assertEquals(4, columns.size());
+        assertEquals(array, columns.toJsonArray());
+        assertEquals(Arrays.asList("/name", "/age", "/tags/*", "/address/zip", "/score"), columns.paths());
+
+        JsonColumns streamed = JsonColumns.shred(new JsonReader(new StringReader(JSON)));
+        assertEquals(array, streamed.toJsonArray());
+        assertEquals(columns.paths(), streamed.paths());
+    }
+
+    @Test
+    public void testTypedColumns() throws Exception {
+        JsonColumns columns = JsonColumns.shred(JsonElement.readFrom(JSON).asJsonArray());
+
+        JsonColumns.Column age = columns.column("/age");
+        assertEquals(JsonColumns.Type.DOUBLE, age.type());
+        assertEquals(2, age.count());
+        assertEquals(42.5, age.sum());
+        assertEquals(12.5, age.min());
+        assertEquals(30.0, age.max());
+        assertTrue(age.isPresent(2));
+        assertFalse(age.isValid(2));
+        assertFalse(age.isPresent(3));
+
+        JsonColumns.Column name = columns.column("/name");
+        assertEquals(JsonColumns.Type.STRING, name.type());
+        assertTrue(Arrays.equals(new String[]{"a", "b"}, name.dictionary()));
+        assertTrue(Arrays.equals(new int[]{0, 1, 0, -1}, name.codes()));
+        assertTrue(Arrays.equals(new int[]{2, 1}, name.counts()));
+
+        JsonColumns.Column tags = columns.column("/tags");
+        assertTrue(Arrays.equals(new int[]{0, 2, 2, 3, 3}, tags.offsets()));
+        assertEquals(3, columns.column("/tags/*").size());
+
+        assertEquals(JsonColumns.Type.MIXED, columns.column("/address/zip").type());
+        assertEquals(JsonColumns.Type.BOOLEAN, columns.column("/score").type());
+        assertTrue(columns.column("/score").booleanAt(1));
+        assertNull(columns.column("/missing"));
+    }
+
+    @Test
+    public void testLongColumnAggregates() throws Exception {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 200; i++) {
+            array.put(i % 7 == 0 ? null : Integer.valueOf(i));
+        }
+        JsonColumns.Column column = JsonColumns.shred(array).root();
+        assertEquals(JsonColumns.Type.LONG, column.type());
+        assertEquals(171, column.count());
+        assertEquals(17058.0, column.sum());
+        assertEquals(1.0, column.min());
+        assertEquals(199.0, column.max());
+        assertEquals(array, JsonColumns.shred(array).toJsonArray());
+    }
+
+    @Test
+    public void testMixedContainers() throws Exception {
+        JsonArray array = JsonElement.readFrom("[[1,[2]],{\"a\":[3]},\"s\",[[4,{\"b\":[5]}]],{\"a\":{\"c\":6}}]")
+                .asJsonArray();
+        JsonColumns columns = JsonColumns.shred(array);
+        assertEquals(JsonColumns.Type.MIXED, columns.root().type());
+        assertEquals(array, columns.toJsonArray());
+    }
+
+    @Test
+    public void testIntegersInDoubleColumns() throws Exception {
+        String json = "[{\"b\":3},{\"b\":1.5},{\"b\":-0.0}]";
+        JsonColumns columns = JsonColumns.shred(JsonElement.readFrom(json).asJsonArray());
+        assertEquals(json, columns.toJsonArray().toString());
+    }
+
+    @Test
+    public void testRejectsDuplicatesAndNonArrays() throws Exception {
+        try {
+            JsonColumns.shred(new JsonReader(new StringReader("[{\"a\":1,\"a\":2}]")));
+            fail();
+        } catch (JsonException expected) {
+        }
+        try {
+            JsonColumns.shred(new JsonReader(new StringReader("{\"a\":1}")));
+            fail();
+        } catch (JsonException expected) {
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonAggregator;
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonHandler;
+import org.djodjo.json.JsonHandlers;
+import org.djodjo.json.JsonNumber;
+import org.djodjo.json.JsonReader;
+import org.djodjo.json.JsonTreeReader;
+import org.djodjo.json.JsonTreeWriter;
+import org.djodjo.json.JsonWriter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class JsonHandlerTest extends TestCase {
+
+    private static final String JSON = "{\"users\":[{\"name\":\"a\\\"b\",\"age\":30,\"tags\":[\"x\"]},"
+            + "{\"name\":\"c\",\"age\":12.5,\"score\":-1e3},{\"name\":null,\"age\":123456789012345678901}],"
+            + "\"count\":3,\"ok\":true}";
+
+    @Test
+    public void testWriteToRoundTrips() throws Exception {
+        JsonTreeWriter tree = new JsonTreeWriter();
+        new JsonReader(new StringReader(JSON)).parse(JsonHandlers.writeTo(tree));
+        assertEquals(JsonElement.readFrom(JSON), tree.get());
+
+        StringWriter text = new StringWriter();
+        new JsonTreeReader(tree.get()).parse(JsonHandlers.writeTo(new JsonWriter(text)));
+        assertEquals(JsonElement.readFrom(JSON), JsonElement.readFrom(text.toString()));
+    }
+
+    @Test
+    public void testAggregateAndFilter() throws Exception {
+        JsonAggregator all = new JsonAggregator();
+        JsonTreeWriter names = new JsonTreeWriter();
+        names.beginArray();
+        JsonTreeWriter second = new JsonTreeWriter();
+        new JsonReader(new StringReader(JSON)).parse(JsonHandlers.tee(all,
+                JsonHandlers.filter("/users/*/name", JsonHandlers.writeTo(names)),
+                JsonHandlers.filter("/users/1", JsonHandlers.writeTo(second))));
+        names.endArray();
+
+        assertEquals("[\"a\\\"b\",\"c\",null]", names.get().toString());
+        assertEquals(JsonElement.readFrom(JSON).asJsonObject().getJsonArray("users").get(1), second.get());
+
+        JsonAggregator.Stats age = all.get("/users/*/age");
+        assertEquals(3, age.getCount());
+        assertEquals(3, age.getNumberCount());
+        assertEquals(12.5, age.getMin());
+        assertEquals(1.2345678901234568E20, age.getMax());
+        assertEquals(-1000.0, all.get("/users/*/score").getSum());
+        assertEquals(3, all.get("/users/*").getCount());
+        assertEquals(1, all.get("/users/*/tags/*").getCount());
+        assertEquals(0, all.get("/ok").getNumberCount());
+        assertNull(all.get("/missing"));
+        assertEquals(10, all.getStats().size());
+
+        JsonAggregator fromTree = new JsonAggregator();
+        new JsonTreeReader(JsonElement.readFrom(JSON)).parse(fromTree);
+        assertEquals(all.toJson(), fromTree.toJson());
+    }
+
+    @Test
+    public void testLongsOfNineteenDigits() throws Exception {
+        String json = "[1234567890123456789,9223372036854775807,-9223372036854775808,"
+                + "9223372036854775808,-9223372036854775809,9999999999999999999,123]";
+        List<String> expected = Arrays.asList("1234567890123456789", "9223372036854775807",
+                "-9223372036854775808", "9.223372036854776E18 9223372036854775808",
+                "-9.223372036854776E18 -9223372036854775809", "1.0E19 9999999999999999999", "123");
+
+        Numbers text = new Numbers();
+        new JsonReader(new StringReader(json)).parse(text);
+        assertEquals(expected, text.numbers);
+
+        JsonArray array = new JsonArray();
+        for (String number : json.substring(1, json.length() - 1).split(",")) {
+            array.put(new JsonNumber(number));
+        }
+        Numbers tree = new Numbers();
+        new JsonTreeReader(array).parse(tree);
+        assertEquals(expected, tree.numbers);
+    }
+
+    /** Records the numbers it receives, as longs or as doubles with text. */
+    private static final class Numbers implements JsonHandler {
+        final List<String> numbers = new ArrayList<String>();
+
+        @Override
+        public void startObject() {
+        }
+
+        @Override
+        public void name(CharSequence name) {
+        }
+
+        @Override
+        public void endObject() {
+        }
+
+        @Override
+        public void startArray() {
+        }
+
+        @Override
+        public void endArray() {
+        }
+
+        @Override
+        public void stringValue(CharSequence value) {
+        }
+
+        @Override
+        public void numberValue(long value) {
+            numbers.add(String.valueOf(value));
+        }
+
+        @Override
+        public void numberValue(double value, CharSequence raw) {
+            numbers.add(value + " " + raw);
+        }
+
+        @Override
+        public void booleanValue(boolean value) {
+        }
+
+        @Override
+        public void nullValue() {
+        }
+    }
+}
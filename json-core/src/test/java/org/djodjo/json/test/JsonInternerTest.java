@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonInterner;
+import org.djodjo.json.JsonObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JsonInternerTest extends TestCase {
+
+    @Test
+    public void testSharesIdenticalSubtrees() throws Exception {
+        JsonInterner interner = new JsonInterner();
+        String text = "{\"id\":%d,\"address\":{\"city\":\"Sofia\",\"zip\":[1,0,0,0],\"floor\":1},\"state\":\"ACTIVE\"}";
+        JsonObject a = interner.intern(JsonElement.readFrom(String.format(text, 1)).asJsonObject());
+        JsonObject b = interner.intern(JsonElement.readFrom(String.format(text, 2)).asJsonObject());
+
+        assertTrue(a.isFrozen());
+        assertSame(a.get("address"), b.get("address"));
+        assertSame(a.get("state"), b.get("state"));
+        assertFalse(a.get("id") == b.get("id"));
+        assertEquals(String.format(text, 2), b.toString());
+        assertTrue(interner.hits() >= 2);
+        assertTrue(interner.bytesSaved() > 0);
+
+        // numbers are only shared if they are written the same
+        JsonObject c = interner.intern(JsonElement.readFrom("{\"address\":{\"city\":\"Sofia\",\"zip\":[1,0,0,0],\"floor\":1.0}}").asJsonObject());
+        assertFalse(a.get("address") == c.get("address"));
+        assertEquals("1.0", c.getJsonObject("address").get("floor").toString());
+        assertSame(c, interner.intern(c));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonJournal;
+import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonPatch;
+import org.djodjo.json.exception.JsonException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Iterator;
+
+@RunWith(JUnit4.class)
+public class JsonJournalTest extends TestCase {
+
+    @Test
+    public void testRecordsChanges() throws Exception {
+        JsonObject doc = JsonElement.readFrom("{\"a\":{\"b\":[1,2,3]},\"c/d\":true}").asJsonObject();
+        JsonJournal journal = JsonJournal.attach(doc);
+        doc.getJsonObject("a").getJsonArray("b").put(4);
+        doc.getJsonObject("a").getJsonArray("b").remove(0);
+        doc.put("c/d", false);
+        doc.put("e", new JsonArray().put("x"));
+        doc.getJsonArray("e").put("y");
+        doc.remove("a");
+        assertEquals("[{\"op\":\"add\",\"path\":\"/a/b/3\",\"value\":4},"
+                + "{\"op\":\"remove\",\"path\":\"/a/b/0\"},"
+                + "{\"op\":\"replace\",\"path\":\"/c~1d\",\"value\":false},"
+                + "{\"op\":\"add\",\"path\":\"/e\",\"value\":[\"x\"]},"
+                + "{\"op\":\"add\",\"path\":\"/e/1\",\"value\":\"y\"},"
+                + "{\"op\":\"remove\",\"path\":\"/a\"}]", journal.drain().toString());
+        assertEquals(0, journal.size());
+
+        // a removed subtree is no longer part of the document
+        JsonObject removed = JsonElement.readFrom("{\"x\":{}}").asJsonObject();
+        doc.put("r", removed);
+        doc.remove("r");
+        journal.drain();
+        removed.getJsonObject("x").put("y", 1);
+        assertEquals(0, journal.size());
+
+        Iterator<JsonElement> it = doc.getJsonArray("e").iterator();
+        it.next();
+        try {
+            it.remove();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            JsonJournal.attach(doc);
+            fail();
+        } catch (JsonException expected) {
+        }
+        journal.detach();
+        doc.put("z", 1);
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void testDrainReplaysChanges() throws Exception {
+        String json = "{\"users\":[{\"id\":1,\"tags\":[\"a\"]},{\"id\":2,\"tags\":[]}],\"meta\":{\"n\":2}}";
+        JsonObject doc = JsonElement.readFrom(json).asJsonObject();
+        JsonElement replica = JsonElement.readFrom(json);
+        JsonJournal journal = JsonJournal.attach(doc);
+        assertEquals(doc.toString(), journal.toJson());
+
+        JsonArray users = doc.getJsonArray("users");
+        users.getJsonObject(1).getJsonArray("tags").put("b");
+        users.add(0, new JsonObject().put("id", 0));
+        users.getJsonObject(2).put("id", 22);
+        doc.getJsonObject("meta").put("n", 3);
+        assertEquals(doc.toString(), journal.toJson());
+        users.getJsonObject(1).getJsonArray("tags").clear();
+        users.remove(users.getJsonObject(0));
+        assertEquals(doc.toString(), journal.toJson());
+
+        JsonPatch patch = journal.drain();
+        replica = patch.apply(replica);
+        assertEquals(doc, replica);
+        assertEquals(doc.toString(), journal.toJson());
+    }
+}
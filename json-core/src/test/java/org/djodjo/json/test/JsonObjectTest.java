@@ -20,15 +20,21 @@ package org.djodjo.json.test;
 import junit.framework.TestCase;
 
 import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonBoolean;
+import org.djodjo.json.JsonElement;
 import org.djodjo.json.JsonNull;
 import org.djodjo.json.JsonNumber;
 import org.djodjo.json.JsonObject;
 import org.djodjo.json.JsonString;
+import org.djodjo.json.JsonTreeReader;
+import org.djodjo.json.JsonWriter;
 import org.djodjo.json.exception.JsonException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
 import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,10 +43,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -124,7 +133,107 @@ public class JsonObjectTest extends TestCase {
 
         // Json object override equals
         assertTrue(a.equals(b));
-        assertEquals(a.hashCode(), System.identityHashCode(a));
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void testLazyExceptionMessages() throws Exception {
+        JsonObject big = new JsonObject();
+        for (int i = 0; i < 10000; i++) {
+            big.put("key" + i, i);
+        }
+        try {
+            big.get("missing");
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage().startsWith("No value for missing, in: {\"key0\":0,"));
+            assertTrue(e.getMessage().endsWith("..."));
+            assertTrue(e.getMessage().length() < JsonException.MAX_SNIPPET + 50);
+            assertEquals(0, e.getStackTrace().length);
+        }
+        try {
+            big.getString("key1");
+            fail();
+        } catch (JsonException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertTrue(e.getMessage().startsWith("Value 1 at key1"));
+        }
+        try {
+            new JsonArray().get(0);
+            fail();
+        } catch (JsonException e) {
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals("Index 0 out of range [0..0)", e.getMessage());
+        }
+        assertTrue(new JsonException("other").getStackTrace().length > 0);
+        assertTrue(JsonException.lazy("other").getStackTrace().length > 0);
+    }
+
+    @Test
+    public void testPrimitiveValueAccessors() throws Exception {
+        JsonObject object = JsonElement.readFrom("{\"i\":-12,\"d\":0.5,\"b\":true,\"s\":\"3\",\"n\":null}").asJsonObject();
+        assertEquals(-12, object.getIntValue("i", 0));
+        assertEquals(-12L, object.getLongValue("i", 0));
+        assertEquals(0.5, object.getDoubleValue("d", 0), 0);
+        assertTrue(object.getBooleanValue("b", false));
+        assertEquals(1, object.getIntValue("s", 1));
+        assertEquals(1, object.getIntValue("n", 1));
+        assertEquals(1, object.getIntValue("missing", 1));
+        assertSame(object.get("b"), JsonBoolean.TRUE);
+        assertSame(object.get("i"), JsonNumber.valueOf(-12));
+        // only numbers written in their shortest form are shared
+        assertEquals("-0", JsonElement.readFrom("{\"z\":-0}").asJsonObject().get("z").toString());
+        assertEquals("1.0", JsonElement.readFrom("{\"z\":1.0}").asJsonObject().get("z").toString());
+    }
+
+    @Test
+    public void testStructuralEqualsAndHashCode() throws Exception {
+        JsonElement a = JsonElement.readFrom("{\"x\":1,\"y\":[1,2.5,true],\"z\":{\"n\":-0}}");
+        JsonElement b = JsonElement.readFrom("{\"z\":{\"n\":0.0},\"x\":1.0,\"y\":[1e0,2.50,true]}");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        // a primitive backed array equals a generic one with the same values
+        JsonArray generic = new JsonArray();
+        generic.put(1).put(2).put(3);
+        JsonElement parsed = JsonElement.readFrom("[1,2,3]");
+        assertEquals(parsed, generic);
+        assertEquals(generic, parsed);
+        assertEquals(parsed.hashCode(), generic.hashCode());
+
+        // cached hashes of frozen trees
+        a.deepFreeze();
+        b.deepFreeze();
+        assertEquals(a, b);
+        JsonElement c = JsonElement.readFrom("{\"x\":2,\"y\":[1,2.5,true],\"z\":{\"n\":0}}").deepFreeze();
+        assertFalse(a.equals(c));
+        assertFalse(a.hashCode() == c.hashCode());
+
+        assertEquals(new JsonNumber("12345678901234567890"), new JsonNumber("1.2345678901234567890e19"));
+        assertFalse(new JsonNumber("12345678901234567890").equals(new JsonNumber("12345678901234567891")));
+        // subnormal doubles keep fewer significant digits
+        assertFalse(new JsonNumber("1e-320").equals(new JsonNumber("1.00001e-320")));
+        assertEquals(new JsonNumber("1e-320"), new JsonNumber("10e-321"));
+    }
+
+    @Test
+    public void testNumberHashIgnoresAccessors() throws Exception {
+        for (String text : new String[]{"1e3", "1000.0", "9007199254740993", "12345678901234567890", "-0", "0.1"}) {
+            JsonObject object = JsonElement.readFrom("{\"x\":" + text + "}").asJsonObject();
+            JsonNumber number = (JsonNumber) object.get("x");
+            int hash = number.hashCode();
+            Set<JsonElement> set = new HashSet<JsonElement>(Collections.singleton(number));
+            object.getInt("x");
+            number.asLong();
+            number.asDouble();
+            assertEquals(text, hash, number.hashCode());
+            assertTrue(text, set.contains(number));
+            assertEquals(text, new JsonNumber(text), number);
+        }
+        JsonNumber thousand = new JsonNumber("1e3");
+        thousand.asInt();
+        assertEquals(JsonNumber.valueOf(1000), thousand);
+        assertEquals(JsonNumber.valueOf(1000).hashCode(), thousand.hashCode());
     }
 
     @Test
@@ -324,6 +433,40 @@ public class JsonObjectTest extends TestCase {
         assertEquals("-0.0", object.getString("quux", Boolean.FALSE));
     }
 
+    @Test
+    public void testNumberTextIsLocaleIndependent() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            JsonObject object = JsonElement.readFrom("{\"x\":1e3,\"y\":1.5,\"z\":-0}").asJsonObject();
+            JsonArray array = JsonElement.readFrom("[1e3]").asJsonArray();
+            assertEquals(1000, object.getInt("x").intValue());
+            assertEquals(array.getInt(0), object.getInt("x"));
+            assertEquals(1.5, object.getDouble("y"));
+            assertEquals(-0d, object.getDouble("z"));
+            assertEquals("{\"x\":1000,\"y\":1.5,\"z\":-0.0}", object.toString());
+            assertEquals("[1000]", array.toString());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testOutOfRangeExponents() throws Exception {
+        String[] inputs = {"[1e400]", "[-1e400,1]", "{\"a\":1e400}", "{\"a\":[2.5,-1E+999]}"};
+        for (String input : inputs) {
+            JsonElement element = JsonElement.readFrom(input);
+            StringWriter out = new StringWriter();
+            element.write(new JsonWriter(out));
+            assertEquals(input, element, JsonElement.readFrom(out.toString()));
+            assertEquals(input, element, JsonElement.readFrom(element.toString()));
+            assertEquals(input, element.toString().length(), element.serializedLength());
+        }
+        JsonNumber big = (JsonNumber) JsonElement.readFrom("[1e400]").asJsonArray().get(0);
+        assertEquals(Double.POSITIVE_INFINITY, big.asDouble());
+        assertEquals("[1E+400]", JsonElement.readFrom("[1e400]").toString());
+    }
+
     @Test
     public void testFloats() throws JsonException {
         JsonObject object = new JsonObject();
@@ -926,4 +1069,190 @@ public class JsonObjectTest extends TestCase {
         } catch (JsonException e) {
         }
     }
+
+    @Test
+    public void testSerializedLength() throws Exception {
+        JsonObject object = new JsonObject();
+        object.put("plain", "text");
+        object.put("esc\"aped", "tab\there\u0001\u2028");
+        object.put("unicode", "\u00e9\u20ac\ud83d\ude00");
+        object.put("numbers", new JsonArray().put(1).put(2.5).put(-3L).put(new JsonNumber("4e2")));
+        object.put("flags", new JsonArray().put(true).put(false).put(new JsonNull()));
+        object.put("empty", new JsonObject());
+        object.put("emptyArray", new JsonArray());
+
+        String json = object.toString();
+        assertEquals(json.length(), object.serializedLength());
+        assertTrue(Arrays.equals(json.getBytes("UTF-8"), object.toByteArray()));
+
+        object.freeze();
+        assertEquals(json.length(), object.serializedLength());
+        assertEquals(json, object.toString());
+    }
+
+    @Test
+    public void testDeepFreeze() throws Exception {
+        JsonObject object = JsonElement.readFrom("{\"a\":{\"b\":[1,{\"c\":true}]},\"d\":[\"e\"]}").asJsonObject();
+        int hash = object.getJsonArray("d").hashCode();
+        object.deepFreeze();
+        assertTrue(object.isFrozen());
+        assertTrue(object.getJsonObject("a").isFrozen());
+        assertTrue(object.getJsonArray("d").isFrozen());
+        assertEquals(hash, object.getJsonArray("d").hashCode());
+        assertEquals(object, JsonElement.readFrom(object.toString()));
+
+        try {
+            object.getJsonObject("a").getJsonArray("b").getJsonObject(1).put("x", 1);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            object.getJsonArray("d").add(new JsonString("f"));
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            object.keys().next();
+            object.keys().remove();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            object.iterator().next().setValue(new JsonNull());
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            object.clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals(2, object.length());
+
+        JsonObject copy = object.cloneAsThawed();
+        copy.getJsonObject("a").put("x", 1);
+        assertFalse(copy.equals(object));
+    }
+
+    @Test
+    public void testCloneAsThawedAndCopyOnWrite() throws Exception {
+        JsonObject template = JsonElement.readFrom(
+                "{\"name\":\"t\",\"nested\":{\"list\":[{\"a\":1},[true]],\"n\":1.5},\"other\":{\"x\":null}}")
+                .asJsonObject().deepFreeze();
+        String json = template.toString();
+
+        JsonObject clone = template.cloneAsThawed();
+        assertFalse(clone.isFrozen());
+        assertEquals(template, clone);
+        assertSame(template.get("name"), clone.get("name"));
+        clone.getJsonObject("nested").getJsonArray("list").getJsonObject(0).put("b", 2);
+        assertEquals(json, template.toString());
+
+        JsonObject copy = template.copyOnWrite();
+        assertEquals(json, copy.toString());
+        copy.getJsonObject("nested").getJsonArray("list").getJsonObject(0).put("b", 2);
+        copy.getJsonObject("nested").getJsonArray("list").getJsonArray(1).put(false);
+        copy.put("name", "c");
+        assertEquals(json, template.toString());
+        assertEquals("{\"name\":\"c\",\"nested\":{\"list\":[{\"a\":1,\"b\":2},[true,false]],\"n\":1.5},"
+                + "\"other\":{\"x\":null}}", copy.toString());
+        assertFalse(copy.getJsonObject("other").isFrozen());
+    }
+
+    @Test
+    public void testDeepFreezeCopyOnWrite() throws Exception {
+        JsonObject template = JsonElement.readFrom("{\"a\":{\"b\":1},\"l\":[{\"c\":2}]}")
+                .asJsonObject().deepFreeze();
+        String json = template.toString();
+        JsonObject copy = template.copyOnWrite().deepFreeze();
+        JsonArray list = template.getJsonArray("l").copyOnWrite().deepFreeze();
+        try {
+            copy.getJsonObject("a").put("b", 2);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            list.getJsonObject(0).put("c", 3);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertSame(template.get("a"), copy.get("a"));
+        assertEquals(json, copy.toString());
+        assertEquals(json, template.toString());
+    }
+
+    @Test
+    public void testWritingCopyOnWriteKeepsChildrenShared() throws Exception {
+        JsonArray template = JsonElement.readFrom("[{\"a\":1},[2],\"s\"]").asJsonArray().deepFreeze();
+        JsonArray copy = template.copyOnWrite();
+        JsonObject holder = new JsonObject().put("l", template).deepFreeze().copyOnWrite();
+        assertEquals(template.toString(), copy.toString());
+        assertEquals("{\"l\":" + template + "}", holder.toString());
+        JsonTreeReader reader = new JsonTreeReader(copy);
+        reader.beginArray();
+        assertSame(template.get(0), reader.nextJsonElement());
+        assertSame(template.get(1), reader.nextJsonElement());
+        reader = new JsonTreeReader(holder);
+        reader.beginObject();
+        reader.nextName();
+        assertSame(template, reader.nextJsonElement());
+    }
+
+    @Test
+    public void testPersistentVersions() throws Exception {
+        JsonObject v1 = JsonElement.readFrom("{\"a\":{\"b\":[1,2,3]},\"c\":\"d\"}").asJsonObject();
+        JsonObject a = v1.getJsonObject("a");
+        JsonObject v2 = v1.with("a", a.with("b", a.getJsonArray("b").withIndex(1, new JsonString("x"))));
+        JsonObject v3 = v2.without("c").with("e", new JsonArray().withAppended(null));
+
+        // the mutable originals are left as they are
+        assertFalse(v1.isFrozen());
+        assertFalse(a.isFrozen());
+        assertTrue(v2.isFrozen());
+        assertTrue(v3.isFrozen());
+        assertTrue(v2.getJsonObject("a").getJsonArray("b").isFrozen());
+        v1.put("f", 1);
+        a.getJsonArray("b").put(4);
+        v1.remove("f");
+        assertEquals("{\"a\":{\"b\":[1,2,3,4]},\"c\":\"d\"}", v1.toString());
+        assertEquals("{\"a\":{\"b\":[1,\"x\",3]},\"c\":\"d\"}", v2.toString());
+        assertEquals("{\"a\":{\"b\":[1,\"x\",3]},\"e\":[null]}", v3.toString());
+        assertSame(v1.get("c"), v2.get("c"));
+        assertSame(v2.get("a"), v3.get("a"));
+        try {
+            v2.put("f", 1);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        JsonObject frozen = v2.getJsonObject("a");
+        assertSame(frozen, v2.without("c").get("a"));
+        assertSame(frozen, v2.with("a", frozen).get("a"));
+        try {
+            v1.getJsonObject("a").getJsonArray("b").withIndex(4, new JsonNull());
+            fail();
+        } catch (JsonException expected) {
+        }
+    }
+
+    @Test
+    public void testParallelWrite() throws Exception {
+        JsonObject small = new JsonObject().put("b", 1).put("a", new JsonArray().put(2)).put("c", "x");
+        JsonObject large = new JsonObject();
+        for (int i = 999; i >= 0; i--) {
+            large.put("k" + (i * 7919 % 1000), new JsonObject().put("v", i).put("s", "q\"" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            small.writeTo(out, executor, 1, 2);
+            assertEquals("{\"b\":1,\"a\":[2],\"c\":\"x\"}", out.toString("UTF-8"));
+
+            out = new ByteArrayOutputStream();
+            large.writeTo(out, executor, 7, 3);
+            assertEquals(large.toString(), out.toString("UTF-8"));
+            assertEquals(large, JsonElement.readFrom(out.toString("UTF-8")));
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
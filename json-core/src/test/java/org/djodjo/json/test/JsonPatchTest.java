@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonDiff;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonNumber;
+import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonPatch;
+import org.djodjo.json.JsonString;
+import org.djodjo.json.exception.JsonException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class JsonPatchTest extends TestCase {
+
+    private static String apply(String doc, String patch) throws Exception {
+        JsonPatch parsed = JsonPatch.fromJson(JsonElement.readFrom(patch).asJsonArray());
+        return parsed.apply(JsonElement.readFrom(doc)).toString();
+    }
+
+    @Test
+    public void testRfcOperations() throws Exception {
+        assertEquals("{\"foo\":\"bar\",\"baz\":\"qux\"}",
+                apply("{\"foo\":\"bar\"}", "[{\"op\":\"add\",\"path\":\"/baz\",\"value\":\"qux\"}]"));
+        assertEquals("{\"foo\":[\"bar\",\"qux\",\"baz\"]}",
+                apply("{\"foo\":[\"bar\",\"baz\"]}", "[{\"op\":\"add\",\"path\":\"/foo/1\",\"value\":\"qux\"}]"));
+        assertEquals("{\"foo\":\"bar\"}",
+                apply("{\"baz\":\"qux\",\"foo\":\"bar\"}", "[{\"op\":\"remove\",\"path\":\"/baz\"}]"));
+        assertEquals("{\"baz\":\"boo\",\"foo\":\"bar\"}",
+                apply("{\"baz\":\"qux\",\"foo\":\"bar\"}", "[{\"op\":\"replace\",\"path\":\"/baz\",\"value\":\"boo\"}]"));
+        assertEquals("{\"foo\":{\"bar\":\"baz\"},\"qux\":{\"corge\":\"grault\",\"thud\":\"fred\"}}",
+                apply("{\"foo\":{\"bar\":\"baz\",\"waldo\":\"fred\"},\"qux\":{\"corge\":\"grault\"}}",
+                        "[{\"op\":\"move\",\"from\":\"/foo/waldo\",\"path\":\"/qux/thud\"}]"));
+        assertEquals("{\"foo\":[\"all\",\"cows\",\"eat\",\"grass\"]}",
+                apply("{\"foo\":[\"all\",\"grass\",\"cows\",\"eat\"]}",
+                        "[{\"op\":\"move\",\"from\":\"/foo/1\",\"path\":\"/foo/3\"}]"));
+        assertEquals("{\"foo\":[\"bar\",[\"abc\",\"def\"]]}",
+                apply("{\"foo\":[\"bar\"]}", "[{\"op\":\"add\",\"path\":\"/foo/-\",\"value\":[\"abc\",\"def\"]}]"));
+        assertEquals("{\"a\":{\"b\":1},\"c\":{\"b\":1}}",
+                apply("{\"a\":{\"b\":1}}", "[{\"op\":\"copy\",\"from\":\"/a\",\"path\":\"/c\"}]"));
+        assertEquals("{\"baz\":\"qux\",\"foo\":[\"a\",2,\"c\"]}",
+                apply("{\"baz\":\"qux\",\"foo\":[\"a\",2,\"c\"]}", "[{\"op\":\"test\",\"path\":\"/baz\",\"value\":\"qux\"},"
+                        + "{\"op\":\"test\",\"path\":\"/foo/1\",\"value\":2}]"));
+        String[][] failing = {
+                {"{\"baz\":\"qux\"}", "[{\"op\":\"test\",\"path\":\"/baz\",\"value\":\"bar\"}]"},
+                {"{\"foo\":\"bar\"}", "[{\"op\":\"add\",\"path\":\"/baz/bat\",\"value\":\"qux\"}]"},
+                {"{\"foo\":\"bar\"}", "[{\"op\":\"replace\",\"path\":\"/baz\",\"value\":\"qux\"}]"},
+                {"{\"foo\":\"bar\"}", "[{\"op\":\"remove\",\"path\":\"/baz\"}]"},
+                {"{\"foo\":\"bar\"}", "[{\"op\":\"unknown\",\"path\":\"/foo\"}]"},
+        };
+        for (String[] test : failing) {
+            try {
+                apply(test[0], test[1]);
+                fail(test[1]);
+            } catch (JsonException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testCopiesDoNotAlias() throws Exception {
+        JsonObject doc = JsonElement.readFrom("{\"a\":{\"b\":[1]}}").asJsonObject();
+        new JsonPatch().copy("/a", "/c").apply(doc);
+        doc.getJsonObject("c").getJsonArray("b").put(2);
+        assertEquals("{\"a\":{\"b\":[1]},\"c\":{\"b\":[1,2]}}", doc.toString());
+
+        JsonPatch patch = new JsonPatch().add("/x", new JsonArray().put(1));
+        JsonObject first = new JsonObject();
+        JsonObject second = new JsonObject();
+        patch.apply(first);
+        patch.apply(second);
+        first.getJsonArray("x").put(2);
+        assertEquals("{\"x\":[1]}", second.toString());
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        JsonElement source = JsonElement.readFrom("{\"id\":1,\"name\":\"a/b\",\"tags\":[\"x\",\"y\",\"z\"],"
+                + "\"items\":[{\"sku\":1},{\"sku\":2},{\"sku\":3}],\"old\":true}");
+        JsonElement target = JsonElement.readFrom("{\"id\":1,\"name\":\"c\",\"tags\":[\"x\",\"new\",\"y\",\"z\"],"
+                + "\"items\":[{\"sku\":1},{\"sku\":3}],\"extra\":{\"a/b\":null}}");
+        JsonPatch patch = JsonDiff.diff(source, target);
+        assertEquals("[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"c\"},"
+                + "{\"op\":\"add\",\"path\":\"/tags/1\",\"value\":\"new\"},"
+                + "{\"op\":\"remove\",\"path\":\"/items/1\"},"
+                + "{\"op\":\"remove\",\"path\":\"/old\"},"
+                + "{\"op\":\"add\",\"path\":\"/extra\",\"value\":{\"a/b\":null}}]", patch.toString());
+        assertEquals(target, patch.apply(source));
+        assertTrue(JsonDiff.diff(target, target).isEmpty());
+        assertEquals("[{\"op\":\"replace\",\"path\":\"\",\"value\":[1]}]",
+                JsonDiff.diff(new JsonObject(), new JsonArray().put(1)).toString());
+    }
+
+    @Test
+    public void testDiffThenApplyRoundTrips() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            JsonElement source = randomTree(random, 3);
+            JsonElement target = randomTree(random, 3);
+            JsonPatch patch = JsonDiff.diff(source, target);
+            JsonPatch parsed = JsonPatch.fromJson(JsonElement.readFrom(patch.toString()).asJsonArray());
+            assertEquals(target, parsed.apply(source));
+        }
+        // too many differences to align, diffed index by index
+        JsonArray source = new JsonArray();
+        JsonArray target = new JsonArray();
+        for (int i = 0; i < 3000; i++) {
+            source.put(i);
+            target.put(i % 2 == 0 ? i : -i);
+        }
+        target.put(1);
+        assertEquals(target, JsonDiff.diff(source, target).apply(source));
+    }
+
+    private static JsonElement randomTree(Random random, int depth) throws JsonException {
+        if (random.nextBoolean()) {
+            JsonObject object = new JsonObject();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                object.put("k" + random.nextInt(6), randomValue(random, depth - 1));
+            }
+            return object;
+        }
+        JsonArray array = new JsonArray();
+        for (int i = random.nextInt(6); i > 0; i--) {
+            array.put(randomValue(random, depth - 1));
+        }
+        return array;
+    }
+
+    private static JsonElement randomValue(Random random, int depth) throws JsonException {
+        if (depth > 0 && random.nextInt(3) == 0) {
+            return randomTree(random, depth);
+        }
+        int value = random.nextInt(4);
+        return value == 3 ? new JsonString("s") : JsonNumber.valueOf(value);
+    }
+}
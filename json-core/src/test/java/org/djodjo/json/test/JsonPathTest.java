@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonPath;
+import org.djodjo.json.exception.JsonException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+@RunWith(JUnit4.class)
+public class JsonPathTest extends TestCase {
+
+    private static final String STORE = "{\"store\":{\"book\":["
+            + "{\"category\":\"reference\",\"author\":\"Nigel Rees\",\"price\":8.95},"
+            + "{\"category\":\"fiction\",\"author\":\"Evelyn Waugh\",\"price\":12.99},"
+            + "{\"category\":\"fiction\",\"author\":\"Herman Melville\",\"isbn\":\"0-553-21311-3\",\"price\":8.99},"
+            + "{\"category\":\"fiction\",\"author\":\"J. R. R. Tolkien\",\"isbn\":\"0-395-19395-8\",\"price\":22.99}],"
+            + "\"bicycle\":{\"color\":\"red\",\"price\":19.95}},\"limit\":10}";
+
+    private static String query(String path, JsonElement doc) {
+        return new JsonArray(JsonPath.compile(path).read(doc)).toString();
+    }
+
+    @Test
+    public void testSelectors() throws Exception {
+        JsonElement doc = JsonElement.readFrom(STORE);
+        assertEquals("[\"Nigel Rees\"]", query("$.store.book[0].author", doc));
+        assertEquals("[\"J. R. R. Tolkien\"]", query("$['store']['book'][-1].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Herman Melville\"]", query("$.store.book[0,2].author", doc));
+        assertEquals("[\"Evelyn Waugh\",\"Herman Melville\"]", query("$.store.book[1:3].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Herman Melville\"]", query("$.store.book[::2].author", doc));
+        assertEquals(4, JsonPath.compile("$.store.book[*]").read(doc).size());
+        assertEquals("[8.95,12.99,8.99,22.99,19.95]", query("$..price", doc));
+        assertEquals("[\"red\",19.95]", query("$.store.bicycle.*", doc));
+        assertEquals("[]", query("$.store.book[9].author", doc));
+        assertEquals("[]", query("$.limit.x", doc));
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        JsonElement doc = JsonElement.readFrom(STORE);
+        assertEquals("[\"Herman Melville\",\"J. R. R. Tolkien\"]", query("$.store.book[?(@.isbn)].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Herman Melville\"]", query("$.store.book[?(@.price < 10)].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Herman Melville\"]", query("$.store.book[?(10 > @.price)].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Herman Melville\"]", query("$.store.book[?(@.price < $.limit)].author", doc));
+        assertEquals("[\"Herman Melville\"]",
+                query("$.store.book[?(@.category == 'fiction' && @.price < 10)].author", doc));
+        assertEquals("[\"Nigel Rees\",\"J. R. R. Tolkien\"]",
+                query("$.store.book[?(@.price > 20 || @.category != \"fiction\")].author", doc));
+        assertEquals("[\"Nigel Rees\",\"Evelyn Waugh\"]", query("$.store.book[?(!@.isbn)].author", doc));
+        assertEquals("[\"Evelyn Waugh\"]", query("$.store.book[?(@.author =~ /.*waugh/i)].author", doc));
+        assertEquals("[\"red\"]", query("$.store[?(@.color == 'red')].color", doc));
+        assertEquals("[]", query("$.store.book[?(@.price == '8.95')]", doc));
+        assertEquals("[8.95,8.99]", query("$..book[?(@.price <= 8.99)].price", doc));
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        String[] invalid = {"store", "$.", "$[", "$.a[?(@.b ==)]", "$[1:2:0]", "$.a[?(@.b =~ /(/)]", "$['a"};
+        for (String path : invalid) {
+            try {
+                JsonPath.compile(path);
+                fail(path);
+            } catch (JsonException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        JsonArray orders = new JsonArray();
+        for (int i = 0; i < 50000; i++) {
+            JsonObject order = new JsonObject().put("id", i).put("total", i % 500);
+            order.put("items", new JsonArray().put(new JsonObject().put("sku", "s" + i)));
+            orders.put(order);
+        }
+        JsonObject doc = new JsonObject().put("orders", orders);
+        doc.deepFreeze();
+        JsonPath path = JsonPath.compile("$.orders[?(@.total > 400)].items[*].sku");
+        List<JsonElement> expected = path.read(doc);
+        assertEquals(9900, expected.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, path.read(doc, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
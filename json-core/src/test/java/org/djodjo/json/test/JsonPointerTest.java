@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonPointer;
+import org.djodjo.json.JsonString;
+import org.djodjo.json.exception.JsonException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JsonPointerTest extends TestCase {
+
+    @Test
+    public void testRfcExamples() throws Exception {
+        JsonElement doc = JsonElement.readFrom("{\"foo\":[\"bar\",\"baz\"],\"\":0,\"a/b\":1,\"c%d\":2,"
+                + "\"e^f\":3,\"g|h\":4,\"i\\\\j\":5,\"k\\\"l\":6,\" \":7,\"m~n\":8}");
+        assertSame(doc, JsonPointer.compile("").get(doc));
+        assertEquals("[\"bar\",\"baz\"]", JsonPointer.compile("/foo").get(doc).toString());
+        assertEquals("bar", JsonPointer.compile("/foo/0").get(doc).asString());
+        assertEquals(0, JsonPointer.compile("/").get(doc).asInt());
+        assertEquals(1, JsonPointer.compile("/a~1b").get(doc).asInt());
+        assertEquals(5, JsonPointer.compile("/i\\j").get(doc).asInt());
+        assertEquals(6, JsonPointer.compile("/k\"l").get(doc).asInt());
+        assertEquals(8, JsonPointer.compile("/m~0n").get(doc).asInt());
+        assertNull(JsonPointer.compile("/foo/2").opt(doc));
+        assertNull(JsonPointer.compile("/foo/01").opt(doc));
+        assertNull(JsonPointer.compile("/foo/0/x").opt(doc));
+        try {
+            JsonPointer.compile("foo");
+            fail();
+        } catch (JsonException expected) {
+        }
+        try {
+            JsonPointer.compile("/a~2");
+            fail();
+        } catch (JsonException expected) {
+        }
+    }
+
+    @Test
+    public void testUpdates() throws Exception {
+        JsonElement doc = JsonElement.readFrom("{\"a\":{\"b\":[1,2,3]}}");
+        JsonPointer second = JsonPointer.compile("/a/b/1");
+        assertEquals(2, second.set(doc, new JsonString("x")).asInt());
+        JsonPointer.compile("/a/b/0").add(doc, new JsonString("first"));
+        JsonPointer.compile("/a/b/-").add(doc, null);
+        JsonPointer.compile("/a/c").set(doc, new JsonString("new"));
+        assertEquals("{\"a\":{\"b\":[\"first\",1,\"x\",3,null],\"c\":\"new\"}}", doc.toString());
+        assertEquals("first", JsonPointer.compile("/a/b/0").remove(doc).asString());
+        assertEquals("new", JsonPointer.compile("/a/c").remove(doc).asString());
+        assertEquals("{\"a\":{\"b\":[1,\"x\",3,null]}}", doc.toString());
+        try {
+            JsonPointer.compile("/a/b/4").set(doc, null);
+            fail();
+        } catch (JsonException expected) {
+        }
+        try {
+            JsonPointer.compile("/x/y").add(doc, null);
+            fail();
+        } catch (JsonException expected) {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonReader;
+import org.djodjo.json.JsonToken;
+import org.djodjo.json.JsonTreeReader;
+import org.djodjo.json.JsonTreeWriter;
+import org.djodjo.json.JsonWriter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringReader;
+
+@RunWith(JUnit4.class)
+public class JsonTreeTest extends TestCase {
+
+    private static final String JSON = "{\"a\":[1,2.5,\"x\",true,null,{}],\"b\":{\"c\":[],\"d\":-7}}";
+
+    @Test
+    public void testReader() throws Exception {
+        JsonElement doc = JsonElement.readFrom(JSON);
+        assertEquals(doc, JsonElement.readFrom(new JsonTreeReader(doc)));
+
+        JsonReader reader = new JsonTreeReader(doc);
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        assertEquals(2.5, reader.nextDouble());
+        assertEquals("x", reader.peekValue());
+        assertEquals("x", reader.nextString());
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        reader.skipValue();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        try {
+            reader.beginArray();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        reader.beginObject();
+        assertEquals("c", reader.nextName());
+        reader.skipValue();
+        assertEquals("d", reader.nextName());
+        assertEquals(-7L, reader.nextLong());
+        reader.endObject();
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+
+        JsonTreeReader tree = new JsonTreeReader(doc);
+        tree.beginObject();
+        tree.nextName();
+        assertSame(doc.asJsonObject().get("a"), tree.nextJsonElement());
+    }
+
+    @Test
+    public void testNumberTextParity() throws Exception {
+        String json = "[[1.50,1e3,-0,7],{\"n\":1.50}]";
+        JsonElement doc = JsonElement.readFrom(json);
+        JsonReader tree = new JsonTreeReader(doc);
+        JsonReader serialized = new JsonReader(new StringReader(doc.toString()));
+        JsonReader text = new JsonReader(new StringReader(json));
+        tree.beginArray();
+        tree.beginArray();
+        serialized.beginArray();
+        serialized.beginArray();
+        text.beginArray();
+        text.beginArray();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(serialized.peekValue(), tree.peekValue());
+            assertEquals(Double.parseDouble(text.nextString()), Double.parseDouble(tree.peekValue()));
+            assertEquals(serialized.nextString(), tree.nextString());
+        }
+        tree.endArray();
+        text.endArray();
+        assertEquals("1.5", new JsonTreeReader(doc.asJsonArray().getJsonArray(0).get(0)).nextString());
+
+        // numbers outside primitive arrays keep their text
+        tree.beginObject();
+        text.beginObject();
+        tree.nextName();
+        text.nextName();
+        assertEquals(text.nextString(), tree.nextString());
+    }
+
+    @Test
+    public void testWriter() throws Exception {
+        JsonElement doc = JsonElement.readFrom(JSON);
+        JsonTreeWriter writer = new JsonTreeWriter();
+        doc.write(writer);
+        assertEquals(doc, writer.get());
+
+        writer = new JsonTreeWriter();
+        writer.beginArray()
+                .value("s").value(3L).value(0.5).value(false).nullValue()
+                .jsonValue("{\"k\":[1]}")
+                .beginObject().name(new JsonWriter.SerializedName("n")).value(1L).endObject()
+                .endArray();
+        assertEquals("[\"s\",3,0.5,false,null,{\"k\":[1]},{\"n\":1}]", writer.get().toString());
+
+        writer = new JsonTreeWriter();
+        writer.beginObject();
+        try {
+            writer.value(1L);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            writer.get();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        writer.name("x").value(Double.valueOf(1.25)).endObject();
+        assertEquals(new JsonObject().put("x", 1.25), writer.get());
+    }
+}
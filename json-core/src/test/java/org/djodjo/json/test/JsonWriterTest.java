@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.ByteBufferWriter;
+import org.djodjo.json.JsonArray;
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonReformatter;
+import org.djodjo.json.JsonWriter;
+import org.djodjo.json.exception.MalformedJsonException;
+import org.djodjo.json.util.ByteBufferPool;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class JsonWriterTest extends TestCase {
+
+    @Test
+    public void testSerializedName() throws IOException {
+        JsonWriter.SerializedName plain = new JsonWriter.SerializedName("name");
+        JsonWriter.SerializedName escaped = new JsonWriter.SerializedName("a\"b\n\u00e9");
+
+        StringWriter sw = new StringWriter();
+        JsonWriter writer = new JsonWriter(sw);
+        writer.beginObject();
+        writer.name(plain).value("x");
+        writer.name(escaped).value(1);
+        writer.endObject();
+        writer.close();
+
+        StringWriter expected = new StringWriter();
+        writer = new JsonWriter(expected);
+        writer.beginObject();
+        writer.name("name").value("x");
+        writer.name("a\"b\n\u00e9").value(1);
+        writer.endObject();
+        writer.close();
+
+        assertEquals(expected.toString(), sw.toString());
+        assertEquals("a\"b\n\u00e9", escaped.getValue());
+        assertEquals(plain, new JsonWriter.SerializedName("name"));
+    }
+
+    @Test
+    public void testSerializedNameOutsideObject() throws IOException {
+        JsonWriter writer = new JsonWriter(new StringWriter());
+        writer.beginArray();
+        try {
+            writer.name(new JsonWriter.SerializedName("a"));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testJsonValue() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginArray().jsonValue("{\"a\":[1]}").jsonValue("2").endArray();
+        assertEquals("[{\"a\":[1]},2]", out.toString());
+        try {
+            new JsonWriter(new StringWriter()).jsonValue("1");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        JsonWriter lenient = new JsonWriter(out = new StringWriter());
+        lenient.setLenient(true);
+        lenient.jsonValue("1");
+        assertEquals("1", out.toString());
+    }
+
+    @Test
+    public void testByteBufferWriterFlushPerElement() throws IOException {
+        final List<String> chunks = new ArrayList<String>();
+        ByteBufferPool pool = new ByteBufferPool(16, 4);
+        ByteBufferWriter out = new ByteBufferWriter(pool, new ByteBufferWriter.Sink() {
+            @Override
+            public void write(ByteBuffer[] buffers, int count, ByteBufferPool pool) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                for (int i = 0; i < count; i++) {
+                    while (buffers[i].hasRemaining()) {
+                        bytes.write(buffers[i].get());
+                    }
+                    pool.release(buffers[i]);
+                }
+                chunks.add(bytes.toString("UTF-8"));
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        }, ByteBufferWriter.FlushPolicy.byTopLevelElement());
+
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        new JsonObject().put("name", "\u00e9\u20ac\ud83d\ude00 a long value to span buffers").write(writer);
+        writer.value(1);
+        writer.endArray();
+        writer.close();
+
+        assertEquals(Arrays.asList("[{\"name\":\"\u00e9\u20ac\ud83d\ude00 a long value to span buffers\"}", ",1", "]"), chunks);
+    }
+
+    @Test
+    public void testByteBufferWriterChannel() throws IOException {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            array.put(new JsonObject().put("id", i).put("v", "\u00fc" + i));
+        }
+        File file = File.createTempFile("json", ".json");
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            ByteBufferWriter out = new ByteBufferWriter(new ByteBufferPool(64, 8), fos.getChannel(),
+                    ByteBufferWriter.FlushPolicy.anyOf(ByteBufferWriter.FlushPolicy.bySize(256),
+                            ByteBufferWriter.FlushPolicy.byDeadline(1, TimeUnit.SECONDS)));
+            array.writeTo(out);
+            out.close();
+            String written = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+            assertEquals(array, JsonElement.readFrom(written));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDeepIndent() throws IOException {
+        StringWriter sw = new StringWriter();
+        JsonWriter writer = new JsonWriter(sw);
+        writer.setIndent("  ");
+        StringBuilder expected = new StringBuilder();
+        int depth = 12;
+        for (int i = 0; i < depth; i++) {
+            writer.beginArray();
+            expected.append("[\n");
+            for (int j = 0; j <= i; j++) {
+                expected.append("  ");
+            }
+        }
+        writer.value(true);
+        expected.append("true");
+        for (int i = depth - 1; i >= 0; i--) {
+            writer.endArray();
+            expected.append("\n");
+            for (int j = 0; j < i; j++) {
+                expected.append("  ");
+            }
+            expected.append("]");
+        }
+        writer.close();
+        assertEquals(expected.toString(), sw.toString());
+    }
+
+    @Test
+    public void testReformat() throws IOException {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            longString.append("a \\\" ");
+        }
+        String input = " { \"a\" : [ 1 , 2.50 , -3e10 ] ,\n\t\"b\":{ } , \"c\" : [ ] ,"
+                + "\"d\" : \"" + longString + "\" , \"e\":[true,false,null,{\"f\":\"x y\"}] } ";
+
+        StringWriter minified = new StringWriter();
+        JsonReformatter.minify(new StringReader(input), minified);
+        assertEquals("{\"a\":[1,2.50,-3e10],\"b\":{},\"c\":[],\"d\":\"" + longString
+                + "\",\"e\":[true,false,null,{\"f\":\"x y\"}]}", minified.toString());
+
+        String integers = "{\"a\":[1,2,{\"b\":[],\"c\":{}}],\"d\":\"e\\\"f\",\"g\":[[[null]]]}";
+        StringWriter pretty = new StringWriter();
+        JsonReformatter.reformat(new StringReader(integers), pretty, "  ");
+        StringWriter expected = new StringWriter();
+        JsonWriter writer = new JsonWriter(expected);
+        writer.setIndent("  ");
+        JsonElement.readFrom(integers).write(writer);
+        assertEquals(expected.toString(), pretty.toString());
+    }
+
+    @Test
+    public void testReformatMalformed() throws IOException {
+        try {
+            JsonReformatter.minify(new StringReader("[1,2}"), new StringWriter());
+            fail();
+        } catch (MalformedJsonException expected) {
+        }
+        try {
+            JsonReformatter.minify(new StringReader("[\"abc"), new StringWriter());
+            fail();
+        } catch (MalformedJsonException expected) {
+        }
+        try {
+            JsonReformatter.minify(new StringReader("{\"a\":[1]"), new StringWriter());
+            fail();
+        } catch (MalformedJsonException expected) {
+        }
+        String[] lenient = {"[1] [2]", "1 2", "\"a\" \"b\"", "[1] ,", "[1 // c\n]", "[1 /* c */]",
+                "[1] # c", "['a b']", "[a b]", "{name:1}", "{\"a\"=>1}", "{\"a\":1;\"b\":2}", "[nul]", "[truex]",
+                "", " \n ", "[1 2]", "{\"a\":1 \"b\":2}", "[1,]", "[1,,2]", "[,1]", "{\"a\" 1}", "{:1}",
+                "[\"a\":1]", "{\"a\":}", "{\"a\"}", "{\"a\":1,}", "{,}", "{1:2}", "{\"a\"::1}", "[1]:"};
+        for (String input : lenient) {
+            try {
+                JsonReformatter.minify(new StringReader(input), new StringWriter());
+                fail(input);
+            } catch (MalformedJsonException expected) {
+            }
+        }
+        StringWriter scalar = new StringWriter();
+        JsonReformatter.minify(new StringReader(" -1.5e+3 "), scalar);
+        assertEquals("-1.5e+3", scalar.toString());
+    }
+}
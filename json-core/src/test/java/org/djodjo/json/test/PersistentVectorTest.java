@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.test;
+
+import junit.framework.TestCase;
+
+import org.djodjo.json.util.PersistentVector;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class PersistentVectorTest extends TestCase {
+
+    @Test
+    public void testBehavesLikeArrayList() {
+        Random random = new Random(7);
+        for (int size : new int[]{0, 1, 31, 32, 33, 1056, 1057, 40000}) {
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < size; i++) {
+                expected.add(i);
+            }
+            PersistentVector<Integer> vector = PersistentVector.from(expected);
+            PersistentVector<Integer> appended = PersistentVector.empty();
+            for (Integer i : expected) {
+                appended = appended.plus(i);
+            }
+            assertEquals(expected, vector);
+            assertEquals(expected, appended);
+
+            PersistentVector<Integer> before = vector;
+            for (int i = 0; i < 200; i++) {
+                if (random.nextBoolean() && !expected.isEmpty()) {
+                    int index = random.nextInt(expected.size());
+                    expected.set(index, -i);
+                    vector = vector.with(index, -i);
+                } else {
+                    expected.add(i);
+                    vector = vector.plus(i);
+                }
+            }
+            assertEquals(expected, vector);
+            assertEquals(size, before.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals(Integer.valueOf(i), before.get(i));
+            }
+        }
+    }
+}
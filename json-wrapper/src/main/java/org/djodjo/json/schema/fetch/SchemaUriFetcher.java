@@ -19,6 +19,7 @@ package org.djodjo.json.schema.fetch;
 
 import org.djodjo.json.JsonElement;
 import org.djodjo.json.JsonObject;
+import org.djodjo.json.JsonPointer;
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.schema.Schema;
 import org.djodjo.json.schema.SchemaV4;
@@ -90,13 +91,12 @@ public class SchemaUriFetcher implements SchemaFetcher {
             String fragment = schemaUri.getFragment();
             JsonObject schemaJson = JsonElement.readFrom(new InputStreamReader(schemaUri.toURL().openStream())).asJsonObject();
             if(fragment!=null && !fragment.trim().isEmpty()) {
-                String[] pointers = fragment.split("/");
-                for (String pointer : pointers) {
-                    if (pointer != null && !pointer.trim().isEmpty()) {
-                        schemaJson = schemaJson.getJsonObject(pointer);
-
-                    }
+                JsonPointer pointer = JsonPointer.compile(fragment.startsWith("/") ? fragment : "/" + fragment);
+                JsonElement target = pointer.get(schemaJson);
+                if (!target.isJsonObject()) {
+                    throw new JsonException("Value at " + pointer + " is not a schema object");
                 }
+                schemaJson = target.asJsonObject();
             }
 
             String version = schemaJson.optString("$schema","");
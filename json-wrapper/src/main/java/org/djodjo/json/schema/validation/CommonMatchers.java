@@ -19,6 +19,7 @@ package org.djodjo.json.schema.validation;
 
 import org.djodjo.json.JsonArray;
 import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonType;
 import org.djodjo.json.Validator;
 import org.djodjo.json.schema.Schema;
 import org.hamcrest.Description;
@@ -26,6 +27,7 @@ import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -221,10 +223,13 @@ public class CommonMatchers {
 
     // ==> COMMON ==>
     public static Matcher<JsonElement> isOfType(final String type) {
+        final JsonType expected = JsonType.forJsonName(type);
         return new TypeSafeDiagnosingMatcher<JsonElement>() {
             @Override
             protected boolean matchesSafely(JsonElement item, Description mismatchDescription) {
-                if(type.equals(item.getJsonType()))
+                JsonType actual = item.type();
+                // only numbers need their value to tell "integer" from "number"
+                if(actual == JsonType.NUMBER ? type.equals(item.getJsonType()) : actual == expected)
                     return true;
                 else {
                     mismatchDescription.appendText(", mismatch type '" + item.getJsonType() + "'");
@@ -240,10 +245,20 @@ public class CommonMatchers {
     }
 
     public static Matcher<JsonElement> isOfType(final ArrayList<String> types) {
+        final EnumSet<JsonType> expected = EnumSet.noneOf(JsonType.class);
+        for (String type : types) {
+            JsonType jsonType = JsonType.forJsonName(type);
+            if (jsonType != null) {
+                expected.add(jsonType);
+            }
+        }
+        final boolean integer = types.contains(Schema.TYPE_INTEGER);
         return new TypeSafeDiagnosingMatcher<JsonElement>() {
             @Override
             protected boolean matchesSafely(JsonElement item, Description mismatchDescription) {
-                if(types.contains(item.getJsonType()) || (item.getJsonType().equals(Schema.TYPE_INTEGER) && types.contains(Schema.TYPE_NUMBER)))
+                JsonType actual = item.type();
+                if(expected.contains(actual)
+                        || (actual == JsonType.NUMBER && integer && item.getJsonType().equals(Schema.TYPE_INTEGER)))
                     return true;
                 else {
                     mismatchDescription.appendText(", mismatch type '" + item.getJsonType() + "'");
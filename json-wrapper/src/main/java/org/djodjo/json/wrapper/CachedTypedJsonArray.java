@@ -3,6 +3,7 @@ package org.djodjo.json.wrapper;
 
 import org.djodjo.json.JsonArray;
 import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonNull;
 
 import java.util.*;
 
@@ -13,6 +14,9 @@ import java.util.*;
  * is available for parsed elements.
  * This is useful when a big array of complex elements needs to be loaded from json
  * and only displayed multiple times.
+ * {@link #getJson()} converts every element back, except wrappers which still
+ * wrap the json element at their position, as changes to those are already
+ * in the json.
  */
 public abstract class CachedTypedJsonArray<T> extends TypedJsonArray<T> {
     //we need reference-equality in place of object-equality when comparing original json elements
@@ -28,12 +32,16 @@ public abstract class CachedTypedJsonArray<T> extends TypedJsonArray<T> {
 
     private synchronized void wrapElements() {
         wrapping = true;
-        elements.clear();
+        synchronized (elements) {
+            elements.clear();
+        }
         Thread t = new Thread(new Runnable() {
             @Override
             public void run() {
-                for (JsonElement je : getJson()) {
-                    elements.add(get(je, elements.size()));
+                for (JsonElement je : CachedTypedJsonArray.super.getJson()) {
+                    synchronized (elements) {
+                        elements.add(get(je, elements.size()));
+                    }
                 }
                 wrapping = false;
             }
@@ -183,11 +191,34 @@ public abstract class CachedTypedJsonArray<T> extends TypedJsonArray<T> {
 
     @Override
     public JsonArray getJson() {
-        this.json.asJsonArray().clear();
-        for(T el:elements) {
-            this.json.asJsonArray().put(to(el));
+        JsonArray json = super.getJson();
+        if (wrapping) {
+            //nothing can be changed until wrapped
+            return json;
+        }
+        synchronized (elements) {
+            int size = elements.size();
+            for (int i = 0; i < size; i++) {
+                T el = elements.get(i);
+                if (i < json.size() && el instanceof JsonElementWrapper
+                        && ((JsonElementWrapper) el).getJson() == json.get(i)) {
+                    continue;
+                }
+                JsonElement value = to(el);
+                if (value == null) {
+                    value = JsonNull.INSTANCE;
+                }
+                if (i < json.size()) {
+                    json.set(i, value);
+                } else {
+                    json.put(value);
+                }
+            }
+            while (json.size() > size) {
+                json.remove(json.size() - 1);
+            }
         }
-        return super.getJson();
+        return json;
     }
 
     private void blockUntilWrapped() {
@@ -20,7 +20,6 @@ package org.djodjo.json.wrapper;
 import org.djodjo.json.JsonArray;
 import org.djodjo.json.JsonElement;
 
-import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -64,10 +63,8 @@ public class JsonObjectArrayWrapper<T extends JsonObjectWrapper> extends JsonEle
 
     @Override
     public JsonArray getJson() {
-        if(super.getJson() == null) try {
-            this.json  = JsonElement.readFrom("[]");
-        } catch (IOException e) {
-            e.printStackTrace();
+        if(super.getJson() == null) {
+            this.json  = new JsonArray();
         }
         return super.getJson().asJsonArray();
     }
@@ -19,21 +19,17 @@ package org.djodjo.json.wrapper;
 
 
 import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonWriter;
 import org.djodjo.json.exception.JsonException;
 import org.djodjo.json.JsonObject;
 
-import java.io.IOException;
 
 public class JsonObjectWrapper extends JsonElementWrapper {
 
     @Override
     public JsonObject getJson() {
-        if(super.getJson() == null) try {
-            this.json  = JsonElement.readFrom("{ }");
-        } catch (JsonException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if(super.getJson() == null) {
+            this.json  = new JsonObject();
         }
         return super.getJson().asJsonObject();
     }
@@ -46,6 +42,37 @@ public class JsonObjectWrapper extends JsonElementWrapper {
         super(jsonObject);
     }
 
+    /**
+     * Returns the value mapped by {@code name}, or throws if no such mapping exists.
+     * Subclasses are expected to declare their keys as
+     * {@code static final} {@link JsonWriter.SerializedName} constants.
+     *
+     * @throws JsonException if no such mapping exists.
+     */
+    protected JsonElement get(JsonWriter.SerializedName name) throws JsonException {
+        JsonElement result = getJson().find(name);
+        if (result == null) {
+            throw JsonException.stackless("No value for ", name.getValue(), ", in: ", getJson());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value mapped by {@code name}, or null if no such mapping exists.
+     */
+    protected JsonElement opt(JsonWriter.SerializedName name) {
+        return getJson().find(name);
+    }
+
+    /**
+     * Maps {@code name} to {@code value}, clobbering any existing name/value
+     * mapping with the same name.
+     */
+    protected JsonObjectWrapper put(JsonWriter.SerializedName name, Object value) throws JsonException {
+        getJson().put(name.getValue(), value);
+        return this;
+    }
+
     /**
      * Merges JsonObjectWrapper with another.
      * If values are already present they are not changed.
@@ -19,9 +19,7 @@ package org.djodjo.json.wrapper;
 
 import org.djodjo.json.JsonArray;
 import org.djodjo.json.JsonElement;
-import org.djodjo.json.exception.JsonException;
 
-import java.io.IOException;
 import java.util.ArrayList;
 
 public class JsonStringArrayWrapper extends JsonElementWrapper {
@@ -48,12 +46,8 @@ public class JsonStringArrayWrapper extends JsonElementWrapper {
 
     @Override
     public JsonArray getJson() {
-        if(super.getJson() == null) try {
-            this.json  = JsonElement.readFrom("[ ]");
-        } catch (JsonException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if(super.getJson() == null) {
+            this.json  = new JsonArray();
         }
         return super.getJson().asJsonArray();
     }
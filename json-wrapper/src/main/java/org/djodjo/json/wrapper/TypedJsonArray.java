@@ -4,7 +4,6 @@ package org.djodjo.json.wrapper;
 import org.djodjo.json.JsonArray;
 import org.djodjo.json.JsonElement;
 
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -29,10 +28,8 @@ public abstract class TypedJsonArray<T> extends JsonElementWrapper implements Li
 
     @Override
     public JsonArray getJson() {
-        if (super.getJson() == null) try {
-            this.json = JsonElement.readFrom("[]");
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (super.getJson() == null) {
+            this.json = new JsonArray();
         }
         return super.getJson().asJsonArray();
     }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 Kalin Maldzhanski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.djodjo.json.wrapper;
+
+
+import org.djodjo.json.JsonElement;
+import org.djodjo.json.JsonString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class CachedTypedJsonArrayTest {
+
+    private static class Builders extends CachedTypedJsonArray<StringBuilder> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected StringBuilder get(JsonElement jsonElement, int pos) {
+            return new StringBuilder(jsonElement.asString());
+        }
+
+        @Override
+        protected JsonElement to(StringBuilder value) {
+            return new JsonString(value.toString());
+        }
+    }
+
+    private static class ObjectArray extends CachedTypedJsonArray<JsonObjectWrapper> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected JsonObjectWrapper get(JsonElement jsonElement, int pos) {
+            return new JsonObjectWrapper(jsonElement.asJsonObject());
+        }
+
+        @Override
+        protected JsonElement to(JsonObjectWrapper value) {
+            return value.getJson();
+        }
+    }
+
+    @Test
+    public void testElementsChangedInPlace() throws Exception {
+        Builders builders = new Builders();
+        builders.wrap(JsonElement.readFrom("[\"a\",\"b\"]"));
+        builders.iterator().next().append("x");
+        assertEquals("[\"ax\",\"b\"]", builders.getJson().toString());
+        builders.get(1).append("y");
+        builders.add(new StringBuilder("c"));
+        assertEquals("[\"ax\",\"by\",\"c\"]", builders.getJson().toString());
+        builders.remove(0);
+        assertEquals("[\"by\",\"c\"]", builders.getJson().toString());
+    }
+
+    @Test
+    public void testWrappersChangedInPlace() throws Exception {
+        ObjectArray objects = new ObjectArray();
+        objects.wrap(JsonElement.readFrom("[{\"a\":1},{\"b\":2}]"));
+        objects.iterator().next().getJson().put("c", 3);
+        objects.set(1, new JsonObjectWrapper(objects.get(1).getJson().put("d", 4)));
+        assertEquals("[{\"a\":1,\"c\":3},{\"b\":2,\"d\":4}]", objects.getJson().toString());
+    }
+}